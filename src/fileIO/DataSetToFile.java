@@ -5,6 +5,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 
 import model.DataSet;
+import model.DataSnapshot;
 
 /**
  * Takes a DataSet and writes it out to a file.
@@ -27,6 +28,8 @@ public class DataSetToFile
 	
 	/**
 	 * Writes the DataSet to the given file name.
+	 * The points are read from a snapshot, so a DataSet that hands out frozen snapshots
+	 * may keep changing while they are written.
 	 * File will be overwritten if it exists, otherwise it will be created.
 	 * @throws IOException if the named file exists but is a directory rather than a regular file, 
 	 * does not exist but cannot be created, or cannot be opened for any other reason
@@ -36,7 +39,6 @@ public class DataSetToFile
 		String filePath = FOLDER_TO_USE + "/" + fileToWriteTo + ".jjf";
 		fileStream = new FileWriter(filePath);
 		BufferedWriter writer = new BufferedWriter(fileStream);
-		Double[][] dataArray = toWrite.getDataAsArray();
 		
 		String file;
 		file = "Title=" + toWrite.getTitle() + "\n";
@@ -47,13 +49,17 @@ public class DataSetToFile
 		file += "Y-Min=" + toWrite.getYMin() + "\n";
 		file += "Y-Max=" + toWrite.getYMax() + "\n";
 		
-		for (int i = 0; i < dataArray.length; i++)
+		writer.write(file);
+		
+		DataSnapshot points = toWrite.snapshot();
+		for (int i = 0; i < points.size(); i++)
 		{
-			file += dataArray[i][0] + ",";
-			file += dataArray[i][1] + "\n";
+			writer.write(Double.toString(points.getX(i)));
+			writer.write(',');
+			writer.write(Double.toString(points.getY(i)));
+			writer.write('\n');
 		}
 		
-		writer.write(file);
 		writer.close();
 	}
 }
@@ -2,6 +2,7 @@ package fileIO;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.Arrays;
 import java.util.Scanner;
 
 import model.DataSet;
@@ -36,8 +37,20 @@ public class FileToDataSet
 	 * @throws InvalidRangeException If the file contains invalid range parameters
 	 */
 	public DataSet parse() throws InvalidRangeException
+	{
+		return parse(false);
+	}
+	
+	/**
+	 * Processes the file into a DataSet then returns it
+	 * @param keepOutOfRange True to keep the points outside the ranges in the file, see DataSet.setKeepOutOfRange
+	 * @return The DataSet we construct form the file
+	 * @throws InvalidRangeException If the file contains invalid range parameters
+	 */
+	public DataSet parse(boolean keepOutOfRange) throws InvalidRangeException
 	{
 		parseVariables();
+		output.setKeepOutOfRange(keepOutOfRange);
 		parseData();
 		
 		return output;
@@ -78,21 +91,29 @@ public class FileToDataSet
 	}
 
 	/**
-	 * Parses the data from the file and adds it to the output DataSet
+	 * Parses the data from the file and adds it to the output DataSet all at once
 	 */
 	private void parseData() 
 	{
 		String currentToken;
+		double[] xs = new double[16];
+		double[] ys = new double[16];
+		int count = 0;
 		
 		while(reader.hasNextLine())
 		{
 			currentToken = reader.nextLine();
-			Double x;
-			Double y;
-			x = Double.parseDouble(currentToken.split(",")[0]);
-			y = Double.parseDouble(currentToken.split(",")[1]);
-			output.add(x, y);
+			String[] values = currentToken.split(",");
+			if (count == xs.length)
+			{
+				xs = Arrays.copyOf(xs, count * 2);
+				ys = Arrays.copyOf(ys, count * 2);
+			}
+			xs[count] = Double.parseDouble(values[0]);
+			ys[count] = Double.parseDouble(values[1]);
+			count++;
 		}
 		reader.close();
+		output.addAll(Arrays.copyOf(xs, count), Arrays.copyOf(ys, count));
 	}
 }
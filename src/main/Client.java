@@ -2,6 +2,7 @@ package main;
 
 import model.DataSet;
 import model.InvalidRangeException;
+import model.PersistentPointStore;
 
 import view.ScatterPlotView;
 import view.TableView;
@@ -23,7 +24,8 @@ public class Client
 {
 	/**
 	 * Main method for a Document-View that shows a DataSet.
-	 * Creates a default DataSet then displays it as a ScatterPlot
+	 * Creates a default DataSet, keeping its points for undo and keeping points outside
+	 * its ranges so they come back when the ranges are widened, then displays it as a ScatterPlot
 	 * and as a Table.
 	 * ScatterPlot is much more robust and allows for all the data
 	 * in the DataSet to be edited, saved and loaded by the user.
@@ -33,7 +35,8 @@ public class Client
 	 */
 	public static void main(String[] args) throws InvalidRangeException 
 	{
-	    DataSet theSet = new DataSet();
+	    DataSet theSet = new DataSet("", "", "", 0.0, 10.0, 0.0, 10.0, new PersistentPointStore());
+	    theSet.setKeepOutOfRange(true);
 	    ScatterPlotView scatterPlotView = new ScatterPlotView(theSet);
 	    theSet.attach(scatterPlotView);
 	    scatterPlotView.createAndDisplay();
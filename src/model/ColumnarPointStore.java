@@ -0,0 +1,210 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * The default PointStore. Keeps the points in two parallel primitive columns,
+ * one for X and one for Y, so a point costs 16 bytes and no objects.
+ * The columns grow by half of their size whenever they fill up.
+ *
+ * Frozen views share the columns instead of copying them. The store remembers how many
+ * leading slots a view can see and copies the columns before its first change to one of
+ * those, so points appended at the end never cost a copy however many views there are.
+ * @author Julian Jocque
+ */
+public class ColumnarPointStore extends PointStore
+{
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private double[] xs;
+	private double[] ys;
+	private int size;
+	private int sharedPrefix;
+
+	/**
+	 * Default constructor, makes an empty store with room for a few points
+	 */
+	public ColumnarPointStore()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Makes an empty store with room for the given number of points
+	 * @param capacity How many points fit before the columns have to grow
+	 */
+	public ColumnarPointStore(int capacity)
+	{
+		xs = new double[Math.max(capacity, 1)];
+		ys = new double[Math.max(capacity, 1)];
+		size = 0;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public double getX(int index)
+	{
+		checkIndex(index, size);
+		return xs[index];
+	}
+
+	@Override
+	public double getY(int index)
+	{
+		checkIndex(index, size);
+		return ys[index];
+	}
+
+	@Override
+	public void insert(int index, double x, double y)
+	{
+		checkIndex(index, size + 1);
+		unshare(index);
+		ensureCapacity(size + 1);
+		System.arraycopy(xs, index, xs, index + 1, size - index);
+		System.arraycopy(ys, index, ys, index + 1, size - index);
+		xs[index] = x;
+		ys[index] = y;
+		size++;
+	}
+
+	@Override
+	public void remove(int index)
+	{
+		checkIndex(index, size);
+		unshare(index);
+		System.arraycopy(xs, index + 1, xs, index, size - index - 1);
+		System.arraycopy(ys, index + 1, ys, index, size - index - 1);
+		size--;
+	}
+
+	/**
+	 * Shifts the remaining points down in one copy
+	 */
+	@Override
+	public void removeFirst(int count)
+	{
+		checkIndex(count, size + 1);
+		unshare(0);
+		System.arraycopy(xs, count, xs, 0, size - count);
+		System.arraycopy(ys, count, ys, 0, size - count);
+		size -= count;
+	}
+
+	/**
+	 * Only shifts the points between the two indices
+	 */
+	@Override
+	public void move(int from, int to, double x, double y)
+	{
+		checkIndex(from, size);
+		checkIndex(to, size);
+		unshare(Math.min(from, to));
+		if (from < to)
+		{
+			System.arraycopy(xs, from + 1, xs, from, to - from);
+			System.arraycopy(ys, from + 1, ys, from, to - from);
+		}
+		else if (to < from)
+		{
+			System.arraycopy(xs, to, xs, to + 1, from - to);
+			System.arraycopy(ys, to, ys, to + 1, from - to);
+		}
+		xs[to] = x;
+		ys[to] = y;
+	}
+
+	@Override
+	public void clear()
+	{
+		size = 0;
+	}
+
+	/**
+	 * Copies only the filled part of the columns
+	 */
+	@Override
+	public PointStore copy()
+	{
+		ColumnarPointStore copy = new ColumnarPointStore(0);
+		copy.setAll(Arrays.copyOf(xs, size), Arrays.copyOf(ys, size), size);
+		return copy;
+	}
+
+	/**
+	 * Shares the columns with the view, which copies them itself before it is ever changed
+	 */
+	@Override
+	public PointStore frozenView()
+	{
+		ColumnarPointStore view = new ColumnarPointStore(0);
+		view.setAll(xs, ys, size);
+		view.sharedPrefix = Integer.MAX_VALUE;
+		sharedPrefix = Math.max(sharedPrefix, size);
+		return view;
+	}
+
+	/**
+	 * Takes the given columns as this store's own, no points are copied
+	 */
+	@Override
+	public void setAll(double[] xs, double[] ys, int count)
+	{
+		this.xs = xs;
+		this.ys = ys;
+		size = count;
+		sharedPrefix = 0;
+	}
+
+	/**
+	 * Copies the columns before a change from the given index on if a frozen view
+	 * can still see that slot, so the view keeps the points it was made with
+	 * @param from Lowest index the change writes to
+	 */
+	private void unshare(int from)
+	{
+		if (from < sharedPrefix)
+		{
+			xs = Arrays.copyOf(xs, Math.max(xs.length, 1));
+			ys = Arrays.copyOf(ys, Math.max(ys.length, 1));
+			sharedPrefix = 0;
+		}
+	}
+
+	/**
+	 * Grows the columns so that they hold at least the given number of points
+	 * @param needed The number of points the columns must be able to hold
+	 */
+	private void ensureCapacity(int needed)
+	{
+		if (needed > xs.length)
+		{
+			int newCapacity = Math.max(needed, xs.length + (xs.length >> 1));
+			double[] newXs = new double[newCapacity];
+			double[] newYs = new double[newCapacity];
+			System.arraycopy(xs, 0, newXs, 0, size);
+			System.arraycopy(ys, 0, newYs, 0, size);
+			xs = newXs;
+			ys = newYs;
+			sharedPrefix = 0;
+		}
+	}
+
+	/**
+	 * Checks that the given index is at least 0 and less than the given bound
+	 * @param index The index to check
+	 * @param bound One past the largest allowed index
+	 */
+	private static void checkIndex(int index, int bound)
+	{
+		if (index < 0 || index >= bound)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index);
+		}
+	}
+}
@@ -0,0 +1,844 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A PointStore that keeps its points compressed in blocks, for very long series.
+ *
+ * Points are split into blocks of up to 1024. Each full block is encoded into a bit stream
+ * the way Gorilla encodes time series: X values as the delta of the delta between their
+ * bit patterns in sort order, which is one bit a point for evenly spaced values, and Y values
+ * as the XOR with the Y before, which only spends bits on the digits that changed. Both are
+ * lossless. The last block is left open as plain columns so appending stays cheap, and is
+ * encoded once it fills up.
+ *
+ * Every block remembers its last X, so binary searches only decode the one block
+ * they end in. Reading a point decodes its whole block, and the last few blocks decoded are
+ * cached so reading points in order decodes each block once. Inserting or removing in the
+ * middle encodes the block it lands in again.
+ *
+ * A DataSet on this store finds duplicates by binary search rather than a hash set,
+ * which would otherwise cost many times what the points do.
+ * @author Julian Jocque
+ */
+public class CompressedPointStore extends PointStore
+{
+	private static final int BLOCK_SIZE = 1024;
+	private static final int CACHED_BLOCKS = 4;
+
+	private Block[] blocks;
+	private int[] starts;
+	private int blockCount;
+	private int size;
+	private int lastBlock;
+	private final Decoded[] cache;
+	private int nextCacheSlot;
+
+	/**
+	 * Default constructor, makes an empty store
+	 */
+	public CompressedPointStore()
+	{
+		blocks = new Block[4];
+		starts = new int[4];
+		blockCount = 0;
+		size = 0;
+		cache = new Decoded[CACHED_BLOCKS];
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public double getX(int index)
+	{
+		checkIndex(index, size);
+		int block = blockHolding(index);
+		Block holding = blocks[block];
+		if (holding.isOpen())
+		{
+			return holding.xs[index - starts[block]];
+		}
+		return decoded(holding).xs[index - starts[block]];
+	}
+
+	@Override
+	public double getY(int index)
+	{
+		checkIndex(index, size);
+		int block = blockHolding(index);
+		Block holding = blocks[block];
+		if (holding.isOpen())
+		{
+			return holding.ys[index - starts[block]];
+		}
+		return decoded(holding).ys[index - starts[block]];
+	}
+
+	/**
+	 * Skips every block whose last X is too small, then searches one block
+	 */
+	@Override
+	public int lowerBound(double x)
+	{
+		int low = 0;
+		int high = blockCount;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (blocks[middle].lastX < x)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		if (low == blockCount)
+		{
+			return size;
+		}
+		double[] xs = xsOf(blocks[low]);
+		int within = 0;
+		int end = blocks[low].count;
+		while (within < end)
+		{
+			int middle = (within + end) >>> 1;
+			if (xs[middle] < x)
+			{
+				within = middle + 1;
+			}
+			else
+			{
+				end = middle;
+			}
+		}
+		return starts[low] + within;
+	}
+
+	/**
+	 * Skips every block whose last X is not greater, then searches one block
+	 */
+	@Override
+	public int upperBound(double x)
+	{
+		int low = 0;
+		int high = blockCount;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (blocks[middle].lastX > x)
+			{
+				high = middle;
+			}
+			else
+			{
+				low = middle + 1;
+			}
+		}
+		if (low == blockCount)
+		{
+			return size;
+		}
+		double[] xs = xsOf(blocks[low]);
+		int within = 0;
+		int end = blocks[low].count;
+		while (within < end)
+		{
+			int middle = (within + end) >>> 1;
+			if (xs[middle] > x)
+			{
+				end = middle;
+			}
+			else
+			{
+				within = middle + 1;
+			}
+		}
+		return starts[low] + within;
+	}
+
+	@Override
+	public void insert(int index, double x, double y)
+	{
+		checkIndex(index, size + 1);
+		if (index == size && blockCount > 0 && blocks[blockCount - 1].isOpen()
+				&& blocks[blockCount - 1].count < BLOCK_SIZE)
+		{
+			Block last = blocks[blockCount - 1];
+			last.append(x, y);
+			size++;
+			if (last.count == BLOCK_SIZE)
+			{
+				blocks[blockCount - 1] = Block.encode(last.xs, last.ys, 0, BLOCK_SIZE);
+			}
+			return;
+		}
+		if (blockCount == 0 || (index == size && !blocks[blockCount - 1].isOpen()))
+		{
+			Block open = Block.open();
+			open.append(x, y);
+			replaceBlocks(blockCount, 0, new Block[] {open});
+			return;
+		}
+		int block = (index == size) ? blockCount - 1 : blockHolding(index);
+		Block holding = blocks[block];
+		int count = holding.count;
+		double[] xs = new double[count + 1];
+		double[] ys = new double[count + 1];
+		double[] oldXs = xsOf(holding);
+		double[] oldYs = ysOf(holding);
+		int at = index - starts[block];
+		System.arraycopy(oldXs, 0, xs, 0, at);
+		System.arraycopy(oldYs, 0, ys, 0, at);
+		xs[at] = x;
+		ys[at] = y;
+		System.arraycopy(oldXs, at, xs, at + 1, count - at);
+		System.arraycopy(oldYs, at, ys, at + 1, count - at);
+		replaceBlocks(block, 1, makeBlocks(xs, ys, count + 1, block == blockCount - 1));
+	}
+
+	@Override
+	public void remove(int index)
+	{
+		checkIndex(index, size);
+		int block = blockHolding(index);
+		Block holding = blocks[block];
+		int count = holding.count;
+		if (count == 1)
+		{
+			replaceBlocks(block, 1, new Block[0]);
+			return;
+		}
+		double[] xs = new double[count - 1];
+		double[] ys = new double[count - 1];
+		double[] oldXs = xsOf(holding);
+		double[] oldYs = ysOf(holding);
+		int at = index - starts[block];
+		System.arraycopy(oldXs, 0, xs, 0, at);
+		System.arraycopy(oldYs, 0, ys, 0, at);
+		System.arraycopy(oldXs, at + 1, xs, at, count - at - 1);
+		System.arraycopy(oldYs, at + 1, ys, at, count - at - 1);
+		replaceBlocks(block, 1, makeBlocks(xs, ys, count - 1, holding.isOpen()));
+	}
+
+	/**
+	 * Drops whole blocks from the front and only encodes the first block kept again
+	 */
+	@Override
+	public void removeFirst(int count)
+	{
+		checkIndex(count, size + 1);
+		if (count == 0)
+		{
+			return;
+		}
+		if (count == size)
+		{
+			clear();
+			return;
+		}
+		int block = blockHolding(count);
+		Block holding = blocks[block];
+		int skip = count - starts[block];
+		Block[] kept;
+		if (skip > 0)
+		{
+			double[] xs = Arrays.copyOfRange(xsOf(holding), skip, holding.count);
+			double[] ys = Arrays.copyOfRange(ysOf(holding), skip, holding.count);
+			kept = makeBlocks(xs, ys, xs.length, holding.isOpen());
+		}
+		else
+		{
+			kept = new Block[] {holding};
+		}
+		replaceBlocks(0, block + 1, kept);
+	}
+
+	@Override
+	public void clear()
+	{
+		blocks = new Block[4];
+		starts = new int[4];
+		blockCount = 0;
+		size = 0;
+	}
+
+	/**
+	 * Shares the encoded blocks, which never change, and only copies the open one
+	 */
+	@Override
+	public PointStore copy()
+	{
+		CompressedPointStore copy = new CompressedPointStore();
+		copy.blocks = Arrays.copyOf(blocks, Math.max(blockCount, 1));
+		copy.starts = Arrays.copyOf(starts, Math.max(blockCount, 1));
+		copy.blockCount = blockCount;
+		copy.size = size;
+		if (blockCount > 0 && blocks[blockCount - 1].isOpen())
+		{
+			copy.blocks[blockCount - 1] = blocks[blockCount - 1].copyOpen();
+		}
+		return copy;
+	}
+
+	/**
+	 * Encodes the given columns block by block, the arrays are not kept
+	 */
+	@Override
+	public void setAll(double[] xs, double[] ys, int count)
+	{
+		clear();
+		int full = count / BLOCK_SIZE;
+		Block[] made = new Block[full + (count % BLOCK_SIZE == 0 ? 0 : 1)];
+		for (int i = 0; i < full; i++)
+		{
+			made[i] = Block.encode(xs, ys, i * BLOCK_SIZE, BLOCK_SIZE);
+		}
+		if (made.length > full)
+		{
+			Block open = Block.open();
+			for (int i = full * BLOCK_SIZE; i < count; i++)
+			{
+				open.append(xs[i], ys[i]);
+			}
+			made[full] = open;
+		}
+		replaceBlocks(0, 0, made);
+	}
+
+	@Override
+	public boolean wantsPointIndex()
+	{
+		return false;
+	}
+
+	/**
+	 * Gives roughly how many bytes the points take, for seeing how well they compress
+	 * @return The bytes used by the blocks
+	 */
+	public long getEncodedBytes()
+	{
+		long bytes = 0;
+		for (int i = 0; i < blockCount; i++)
+		{
+			Block block = blocks[i];
+			bytes += block.isOpen() ? 16L * block.xs.length : 8L * block.bits.length;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Splits points into blocks, encoding all of them except perhaps an open last one
+	 * @param xs X values of the points
+	 * @param ys Y values of the points
+	 * @param count How many points there are
+	 * @param lastOpen Whether the last block should be left open
+	 * @return The blocks, none of them empty
+	 */
+	private static Block[] makeBlocks(double[] xs, double[] ys, int count, boolean lastOpen)
+	{
+		if (count == 0)
+		{
+			return new Block[0];
+		}
+		int pieces = (count > BLOCK_SIZE) ? 2 : 1;
+		Block[] made = new Block[pieces];
+		int from = 0;
+		for (int piece = 0; piece < pieces; piece++)
+		{
+			int to = (piece == pieces - 1) ? count : count / 2;
+			if (lastOpen && piece == pieces - 1)
+			{
+				Block open = Block.open();
+				for (int i = from; i < to; i++)
+				{
+					open.append(xs[i], ys[i]);
+				}
+				made[piece] = open;
+			}
+			else
+			{
+				made[piece] = Block.encode(xs, ys, from, to - from);
+			}
+			from = to;
+		}
+		return made;
+	}
+
+	/**
+	 * Replaces some blocks with others, then works out where every block from there on starts
+	 * @param from Index of the first block to replace
+	 * @param count How many blocks to replace
+	 * @param replacements The blocks to put in their place
+	 */
+	private void replaceBlocks(int from, int count, Block[] replacements)
+	{
+		int newCount = blockCount - count + replacements.length;
+		if (newCount > blocks.length)
+		{
+			int capacity = Math.max(newCount, blocks.length + (blocks.length >> 1));
+			blocks = Arrays.copyOf(blocks, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+		}
+		System.arraycopy(blocks, from + count, blocks, from + replacements.length, blockCount - from - count);
+		System.arraycopy(replacements, 0, blocks, from, replacements.length);
+		for (int i = newCount; i < blockCount; i++)
+		{
+			blocks[i] = null;
+		}
+		blockCount = newCount;
+		int start = (from == 0) ? 0 : starts[from - 1] + blocks[from - 1].count;
+		for (int i = from; i < blockCount; i++)
+		{
+			starts[i] = start;
+			start += blocks[i].count;
+		}
+		size = start;
+	}
+
+	/**
+	 * Finds the block holding the point at the given index, trying the block found last
+	 * before binary searching since points are mostly read in order
+	 * @param index Index of a point
+	 * @return Index of the block
+	 */
+	private int blockHolding(int index)
+	{
+		int last = lastBlock;
+		if (last < blockCount && starts[last] <= index && index < starts[last] + blocks[last].count)
+		{
+			return last;
+		}
+		int low = 0;
+		int high = blockCount - 1;
+		while (low < high)
+		{
+			int middle = (low + high + 1) >>> 1;
+			if (starts[middle] <= index)
+			{
+				low = middle;
+			}
+			else
+			{
+				high = middle - 1;
+			}
+		}
+		lastBlock = low;
+		return low;
+	}
+
+	/**
+	 * Gives the X values of a block, decoding it if needed
+	 * @param block The block
+	 * @return The X values, at least as long as the block's count
+	 */
+	private double[] xsOf(Block block)
+	{
+		return block.isOpen() ? block.xs : decoded(block).xs;
+	}
+
+	/**
+	 * Gives the Y values of a block, decoding it if needed
+	 * @param block The block
+	 * @return The Y values, at least as long as the block's count
+	 */
+	private double[] ysOf(Block block)
+	{
+		return block.isOpen() ? block.ys : decoded(block).ys;
+	}
+
+	/**
+	 * Gives an encoded block decoded, from the cache if it was decoded lately
+	 * @param block The encoded block
+	 * @return Its points
+	 */
+	private Decoded decoded(Block block)
+	{
+		for (int i = 0; i < CACHED_BLOCKS; i++)
+		{
+			Decoded cached = cache[i];
+			if (cached != null && cached.block == block)
+			{
+				return cached;
+			}
+		}
+		Decoded made = new Decoded(block);
+		cache[nextCacheSlot] = made;
+		nextCacheSlot = (nextCacheSlot + 1) % CACHED_BLOCKS;
+		return made;
+	}
+
+	/**
+	 * Checks that the given index is at least 0 and less than the given bound
+	 * @param index The index to check
+	 * @param bound One past the largest allowed index
+	 */
+	private static void checkIndex(int index, int bound)
+	{
+		if (index < 0 || index >= bound)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index);
+		}
+	}
+
+	/**
+	 * A block of points. Open blocks hold plain columns and may still grow,
+	 * encoded blocks hold a bit stream and never change.
+	 */
+	private static final class Block
+	{
+		private int count;
+		private double lastX;
+		private double[] xs;
+		private double[] ys;
+		private long[] bits;
+
+		/**
+		 * Makes an empty open block
+		 * @return The new block
+		 */
+		private static Block open()
+		{
+			Block block = new Block();
+			block.xs = new double[16];
+			block.ys = new double[16];
+			return block;
+		}
+
+		/**
+		 * Encodes some points into a new block
+		 * @param xs X values of the points
+		 * @param ys Y values of the points
+		 * @param from Index of the first point to encode
+		 * @param count How many points to encode, at least one
+		 * @return The new block
+		 */
+		private static Block encode(double[] xs, double[] ys, int from, int count)
+		{
+			BitWriter out = new BitWriter(count);
+			long previousKey = sortKey(xs[from]);
+			long previousDelta = 0;
+			long previousY = Double.doubleToRawLongBits(ys[from]);
+			int leading = -1;
+			int trailing = 0;
+			out.write(previousKey, 64);
+			out.write(previousY, 64);
+			for (int i = from + 1; i < from + count; i++)
+			{
+				long key = sortKey(xs[i]);
+				long delta = key - previousKey;
+				writeDeltaOfDelta(out, delta - previousDelta);
+				previousKey = key;
+				previousDelta = delta;
+
+				long y = Double.doubleToRawLongBits(ys[i]);
+				long xor = y ^ previousY;
+				previousY = y;
+				if (xor == 0)
+				{
+					out.write(0, 1);
+					continue;
+				}
+				int newLeading = Long.numberOfLeadingZeros(xor);
+				int newTrailing = Long.numberOfTrailingZeros(xor);
+				if (leading >= 0 && newLeading >= leading && newTrailing >= trailing)
+				{
+					out.write(0b01, 2);
+					out.write(xor >>> trailing, 64 - leading - trailing);
+				}
+				else
+				{
+					leading = newLeading;
+					trailing = newTrailing;
+					int meaningful = 64 - leading - trailing;
+					out.write(0b11, 2);
+					out.write(leading, 6);
+					out.write(meaningful - 1, 6);
+					out.write(xor >>> trailing, meaningful);
+				}
+			}
+			Block block = new Block();
+			block.count = count;
+			block.lastX = xs[from + count - 1];
+			block.bits = out.toArray();
+			return block;
+		}
+
+		/**
+		 * Writes the change in the gap between X keys with as few bits as it needs.
+		 * The change is zigzag encoded so small negative changes are small too.
+		 * @param out Where to write
+		 * @param deltaOfDelta The change in the gap
+		 */
+		private static void writeDeltaOfDelta(BitWriter out, long deltaOfDelta)
+		{
+			long zigzag = (deltaOfDelta << 1) ^ (deltaOfDelta >> 63);
+			if (zigzag == 0)
+			{
+				out.write(0, 1);
+			}
+			else if ((zigzag >>> 7) == 0)
+			{
+				out.write(0b01, 2);
+				out.write(zigzag, 7);
+			}
+			else if ((zigzag >>> 12) == 0)
+			{
+				out.write(0b011, 3);
+				out.write(zigzag, 12);
+			}
+			else if ((zigzag >>> 32) == 0)
+			{
+				out.write(0b0111, 4);
+				out.write(zigzag, 32);
+			}
+			else
+			{
+				out.write(0b1111, 4);
+				out.write(zigzag, 64);
+			}
+		}
+
+		/**
+		 * Reads back a change written by writeDeltaOfDelta
+		 * @param in Where to read from
+		 * @return The change in the gap
+		 */
+		private static long readDeltaOfDelta(BitReader in)
+		{
+			int width;
+			if (in.read(1) == 0)
+			{
+				return 0;
+			}
+			else if (in.read(1) == 0)
+			{
+				width = 7;
+			}
+			else if (in.read(1) == 0)
+			{
+				width = 12;
+			}
+			else if (in.read(1) == 0)
+			{
+				width = 32;
+			}
+			else
+			{
+				width = 64;
+			}
+			long zigzag = in.read(width);
+			return (zigzag >>> 1) ^ -(zigzag & 1);
+		}
+
+		/**
+		 * Decodes this block's points into the given columns
+		 * @param xs Where the X values go
+		 * @param ys Where the Y values go
+		 */
+		private void decode(double[] xs, double[] ys)
+		{
+			BitReader in = new BitReader(bits);
+			long key = in.read(64);
+			long delta = 0;
+			long y = in.read(64);
+			int leading = 0;
+			int trailing = 0;
+			xs[0] = fromSortKey(key);
+			ys[0] = Double.longBitsToDouble(y);
+			for (int i = 1; i < count; i++)
+			{
+				delta += readDeltaOfDelta(in);
+				key += delta;
+				xs[i] = fromSortKey(key);
+
+				if (in.read(1) == 1)
+				{
+					if (in.read(1) == 1)
+					{
+						leading = (int)in.read(6);
+						int meaningful = (int)in.read(6) + 1;
+						trailing = 64 - leading - meaningful;
+					}
+					y ^= in.read(64 - leading - trailing) << trailing;
+				}
+				ys[i] = Double.longBitsToDouble(y);
+			}
+		}
+
+		/**
+		 * Adds a point to the end of an open block
+		 * @param x X value of the point
+		 * @param y Y value of the point
+		 */
+		private void append(double x, double y)
+		{
+			if (count == xs.length)
+			{
+				xs = Arrays.copyOf(xs, Math.min(BLOCK_SIZE, 2 * count));
+				ys = Arrays.copyOf(ys, Math.min(BLOCK_SIZE, 2 * count));
+			}
+			xs[count] = x;
+			ys[count] = y;
+			lastX = x;
+			count++;
+		}
+
+		/**
+		 * Makes a copy of an open block that can grow separately
+		 * @return The copy
+		 */
+		private Block copyOpen()
+		{
+			Block copy = new Block();
+			copy.count = count;
+			copy.lastX = lastX;
+			copy.xs = xs.clone();
+			copy.ys = ys.clone();
+			return copy;
+		}
+
+		/**
+		 * Checks whether this block is still open
+		 * @return true if it holds plain columns, false if it is encoded
+		 */
+		private boolean isOpen()
+		{
+			return bits == null;
+		}
+
+		/**
+		 * Maps a double to a long that sorts the same way as the double,
+		 * so sorted X values give small, steady gaps between keys
+		 * @param x The value
+		 * @return Its key
+		 */
+		private static long sortKey(double x)
+		{
+			long bits = Double.doubleToRawLongBits(x);
+			return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+		}
+
+		/**
+		 * Turns a key from sortKey back into its double
+		 * @param key The key
+		 * @return The value
+		 */
+		private static double fromSortKey(long key)
+		{
+			return Double.longBitsToDouble(key ^ ((key >> 63) & Long.MAX_VALUE));
+		}
+	}
+
+	/**
+	 * The points of an encoded block, kept in the cache. Never changed once made,
+	 * so threads reading the same store may share it.
+	 */
+	private static final class Decoded
+	{
+		private final Block block;
+		private final double[] xs;
+		private final double[] ys;
+
+		private Decoded(Block block)
+		{
+			this.block = block;
+			xs = new double[block.count];
+			ys = new double[block.count];
+			block.decode(xs, ys);
+		}
+	}
+
+	/**
+	 * Writes values of any width up to 64 bits one after another into longs
+	 */
+	private static final class BitWriter
+	{
+		private long[] words;
+		private int length;
+
+		/**
+		 * Makes a writer with room for about the given number of points
+		 * @param points How many points will be written
+		 */
+		private BitWriter(int points)
+		{
+			words = new long[Math.max(4, points / 2)];
+		}
+
+		/**
+		 * Writes the lowest bits of a value
+		 * @param value The value
+		 * @param width How many of its lowest bits to write, from 1 to 64
+		 */
+		private void write(long value, int width)
+		{
+			if (width < 64)
+			{
+				value &= (1L << width) - 1;
+			}
+			int word = length >>> 6;
+			int offset = length & 63;
+			if (word + 1 >= words.length)
+			{
+				words = Arrays.copyOf(words, words.length * 2);
+			}
+			words[word] |= value << offset;
+			if (offset + width > 64)
+			{
+				words[word + 1] |= value >>> (64 - offset);
+			}
+			length += width;
+		}
+
+		/**
+		 * Gives the bits written so far, trimmed to the words used
+		 * @return The bits
+		 */
+		private long[] toArray()
+		{
+			return Arrays.copyOf(words, (length + 63) >>> 6);
+		}
+	}
+
+	/**
+	 * Reads back the values a BitWriter wrote, in the same order and widths
+	 */
+	private static final class BitReader
+	{
+		private final long[] words;
+		private int position;
+
+		private BitReader(long[] words)
+		{
+			this.words = words;
+		}
+
+		/**
+		 * Reads the next value
+		 * @param width How many bits it has, from 1 to 64
+		 * @return The value
+		 */
+		private long read(int width)
+		{
+			int word = position >>> 6;
+			int offset = position & 63;
+			long value = words[word] >>> offset;
+			if (offset + width > 64)
+			{
+				value |= words[word + 1] << (64 - offset);
+			}
+			if (width < 64)
+			{
+				value &= (1L << width) - 1;
+			}
+			position += width;
+			return value;
+		}
+	}
+}
@@ -0,0 +1,600 @@
+package model;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+
+import view.DataView;
+
+/**
+ * A DataSet that may be changed from any number of threads while Swing paints it.
+ *
+ * Every change and every direct read takes this DataSet's lock, so writers see each other's
+ * changes in order. Views should read through snapshot, which hands out frozen copies of the
+ * points published through a volatile reference. A painter asking again before anything
+ * changed gets the same snapshot back without taking the lock at all, and only a painter
+ * asking after a change pays for one copy, however many changes happened in between.
+ * Snapshots carry the ranges too, so changing a range also gives a new snapshot.
+ * Snapshots take a frozen view of the store, which for the default ColumnarPointStore shares
+ * the columns and so takes constant time; a painter never holds writers up for longer than
+ * a change takes. A store given to the constructor may have a dearer frozen view, which
+ * snapshot pays for under the lock.
+ *
+ * Views are never updated on the writing thread. Changes are coalesced into a single
+ * DATA_CHANGED update that runs later on the Swing event thread, so writers never wait
+ * for views and views never see a half finished change.
+ * @author Julian Jocque
+ */
+public class ConcurrentDataSet extends DataSet
+{
+	private static final Object TIE_LOCK = new Object();
+
+	private volatile DataSnapshot published;
+	private AtomicBoolean updateQueued;
+	private Runnable updateViews;
+
+	/**
+	 * Default constructor, creates an empty DataSet the same as DataSet's
+	 * @throws InvalidRangeException If either of the min values
+	 * are greater than the max values or if max are less than min.
+	 */
+	public ConcurrentDataSet() throws InvalidRangeException
+	{
+		super();
+		setUpViewUpdates();
+	}
+
+	/**
+	 * Creates a DataSet with given Title, X Label and Y Label the same as DataSet's
+	 * @throws InvalidRangeException If either of the min values
+	 * are greater than the max values or if max are less than min.
+	 */
+	public ConcurrentDataSet(String title, String xLabel, String yLabel,
+			Double xMin, Double xMax, Double yMin, Double yMax) throws InvalidRangeException
+	{
+		super(title, xLabel, yLabel, xMin, xMax, yMin, yMax);
+		setUpViewUpdates();
+	}
+
+	/**
+	 * Creates a DataSet that keeps its points in the given store the same as DataSet's
+	 * @throws InvalidRangeException If either of the min values
+	 * are greater than the max values or if max are less than min.
+	 */
+	public ConcurrentDataSet(String title, String xLabel, String yLabel,
+			Double xMin, Double xMax, Double yMin, Double yMax, PointStore store) throws InvalidRangeException
+	{
+		super(title, xLabel, yLabel, xMin, xMax, yMin, yMax, store);
+		setUpViewUpdates();
+	}
+
+	/**
+	 * Makes the task that updates the views on the Swing event thread
+	 */
+	private void setUpViewUpdates()
+	{
+		updateQueued = new AtomicBoolean();
+		updateViews = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				updateQueued.set(false);
+				ConcurrentDataSet.super.notifyListeners(
+						new DataChangeEvent(ConcurrentDataSet.this, DataChangeEvent.Type.DATA_CHANGED));
+			}
+		};
+	}
+
+	/**
+	 * Queues one update of every view on the Swing event thread,
+	 * unless one is already waiting to run
+	 */
+	@Override
+	protected void notifyListeners(DataChangeEvent change)
+	{
+		if (updateQueued == null)
+		{
+			// Still inside the DataSet constructor, no view can be attached yet
+			return;
+		}
+		if (updateQueued.compareAndSet(false, true))
+		{
+			SwingUtilities.invokeLater(updateViews);
+		}
+	}
+
+	/**
+	 * Gives a frozen snapshot of the points. Does not lock if the points have not
+	 * changed since the last snapshot was taken, and with the default store only
+	 * locks for as long as sharing the columns takes.
+	 */
+	@Override
+	public DataSnapshot snapshot()
+	{
+		DataSnapshot current = published;
+		if (current != null && current.getVersion() == getVersion())
+		{
+			return current;
+		}
+		synchronized (this)
+		{
+			current = published;
+			if (current == null || current.getVersion() != getVersion())
+			{
+				current = frozenSnapshot();
+				published = current;
+			}
+			return current;
+		}
+	}
+
+	@Override
+	public synchronized void attach(DataView toAttach)
+	{
+		super.attach(toAttach);
+	}
+
+	@Override
+	public synchronized void detach(DataView toDetach)
+	{
+		super.detach(toDetach);
+	}
+
+	/**
+	 * Starts a batch, see DataSet. The batch covers changes from every thread,
+	 * not just the one that started it.
+	 */
+	@Override
+	public synchronized void beginBatch()
+	{
+		super.beginBatch();
+	}
+
+	@Override
+	public synchronized void endBatch()
+	{
+		super.endBatch();
+	}
+
+	@Override
+	public synchronized boolean add(Double point1, Double point2)
+	{
+		return super.add(point1, point2);
+	}
+
+	@Override
+	public synchronized int addAll(double[] xs, double[] ys)
+	{
+		return super.addAll(xs, ys);
+	}
+
+	@Override
+	public synchronized int replaceAll(double[] xs, double[] ys)
+	{
+		return super.replaceAll(xs, ys);
+	}
+
+	@Override
+	public synchronized void close()
+	{
+		super.close();
+	}
+
+	@Override
+	public synchronized void beginEdit()
+	{
+		super.beginEdit();
+	}
+
+	@Override
+	public synchronized void endEdit()
+	{
+		super.endEdit();
+	}
+
+	@Override
+	public synchronized boolean undo()
+	{
+		return super.undo();
+	}
+
+	@Override
+	public synchronized boolean redo()
+	{
+		return super.redo();
+	}
+
+	@Override
+	public synchronized boolean canUndo()
+	{
+		return super.canUndo();
+	}
+
+	@Override
+	public synchronized boolean canRedo()
+	{
+		return super.canRedo();
+	}
+
+	@Override
+	public synchronized void setUndoLimit(int undoLimit)
+	{
+		super.setUndoLimit(undoLimit);
+	}
+
+	@Override
+	public synchronized int getUndoLimit()
+	{
+		return super.getUndoLimit();
+	}
+
+	@Override
+	public synchronized void setMaxPoints(int maxPoints)
+	{
+		super.setMaxPoints(maxPoints);
+	}
+
+	@Override
+	public synchronized int getMaxPoints()
+	{
+		return super.getMaxPoints();
+	}
+
+	@Override
+	public synchronized void setWindowWidth(double windowWidth)
+	{
+		super.setWindowWidth(windowWidth);
+	}
+
+	@Override
+	public synchronized double getWindowWidth()
+	{
+		return super.getWindowWidth();
+	}
+
+	@Override
+	public synchronized void remove(Double point1, Double point2)
+	{
+		super.remove(point1, point2);
+	}
+
+	@Override
+	public synchronized boolean move(int index, Double newX, Double newY)
+	{
+		return super.move(index, newX, newY);
+	}
+
+	@Override
+	public synchronized boolean move(Double oldX, Double oldY, Double newX, Double newY)
+	{
+		return super.move(oldX, oldY, newX, newY);
+	}
+
+	@Override
+	public synchronized DataPoint getPoint(int index)
+	{
+		return super.getPoint(index);
+	}
+
+	@Override
+	public synchronized double getX(int index)
+	{
+		return super.getX(index);
+	}
+
+	@Override
+	public synchronized double getY(int index)
+	{
+		return super.getY(index);
+	}
+
+	/**
+	 * Visits a snapshot of the points, so the lock is not held while visiting
+	 */
+	@Override
+	public void forEach(PointVisitor visitor)
+	{
+		snapshot().forEach(visitor);
+	}
+
+	@Override
+	public synchronized int[] indexRange(double xLo, double xHi)
+	{
+		return super.indexRange(xLo, xHi);
+	}
+
+	/**
+	 * Visits a snapshot of the points in the range, so the lock is not held while visiting
+	 */
+	@Override
+	public void forEachInXRange(double xLo, double xHi, PointVisitor visitor)
+	{
+		snapshot().forEachInXRange(xLo, xHi, visitor);
+	}
+
+	@Override
+	public synchronized void setKeepOutOfRange(boolean keepOutOfRange)
+	{
+		super.setKeepOutOfRange(keepOutOfRange);
+	}
+
+	@Override
+	public synchronized boolean isKeepingOutOfRange()
+	{
+		return super.isKeepingOutOfRange();
+	}
+
+	@Override
+	public synchronized int[] visibleRange()
+	{
+		return super.visibleRange();
+	}
+
+	/**
+	 * Visits a snapshot of the points in the ranges as they were when this was called,
+	 * so the lock is not held while visiting
+	 */
+	@Override
+	public void forEachVisible(final PointVisitor visitor)
+	{
+		final double xLo;
+		final double xHi;
+		final double yLo;
+		final double yHi;
+		synchronized (this)
+		{
+			xLo = getXMin();
+			xHi = getXMax();
+			yLo = getYMin();
+			yHi = getYMax();
+		}
+		snapshot().forEachInXRange(xLo, xHi, new PointVisitor()
+		{
+			@Override
+			public void visit(double x, double y)
+			{
+				if (Double.compare(y, yLo) >= 0 && Double.compare(y, yHi) <= 0)
+				{
+					visitor.visit(x, y);
+				}
+			}
+		});
+	}
+
+	@Override
+	public synchronized DataPoint nearest(double x, double y)
+	{
+		return super.nearest(x, y);
+	}
+
+	@Override
+	public synchronized DataPoint nearestVisible(double x, double y)
+	{
+		return super.nearestVisible(x, y);
+	}
+
+	@Override
+	public synchronized DataPoint[] kNearest(double x, double y, int k)
+	{
+		return super.kNearest(x, y, k);
+	}
+
+	/**
+	 * Visits while holding the lock, since the spatial index is not copied into snapshots
+	 */
+	@Override
+	public synchronized void withinRect(double xLo, double yLo, double xHi, double yHi, PointVisitor visitor)
+	{
+		super.withinRect(xLo, yLo, xHi, yHi, visitor);
+	}
+
+	@Override
+	public synchronized LodLevel levelOfDetail(double maxBucketWidth)
+	{
+		return super.levelOfDetail(maxBucketWidth);
+	}
+
+	@Override
+	public synchronized LodLevel levelOfDetail(double maxBucketWidth, double xLo, double xHi)
+	{
+		return super.levelOfDetail(maxBucketWidth, xLo, xHi);
+	}
+
+	/**
+	 * Checks the version and reads the pyramid under one lock, so the level is of the points
+	 * at that version
+	 */
+	@Override
+	synchronized LodLevel levelOfDetail(double maxBucketWidth, long atVersion)
+	{
+		return super.levelOfDetail(maxBucketWidth, atVersion);
+	}
+
+	@Override
+	public synchronized PointStatistics getStatistics()
+	{
+		return super.getStatistics();
+	}
+
+	@Override
+	public synchronized Double[][] getDataAsArray()
+	{
+		return super.getDataAsArray();
+	}
+
+	@Override
+	public synchronized void load(String fileToLoad) throws FileNotFoundException, InvalidRangeException
+	{
+		super.load(fileToLoad);
+	}
+
+	/**
+	 * Writes the points from a snapshot without holding the lock, so changes carry on
+	 * while the file is written. On a PersistentPointStore the snapshot costs nothing.
+	 */
+	@Override
+	public void save(String fileName) throws IOException
+	{
+		super.save(fileName);
+	}
+
+	/**
+	 * Compares with both DataSets locked. When the other is a ConcurrentDataSet too the two
+	 * locks are always taken in the same order, so two threads comparing the same pair
+	 * from opposite sides cannot each hold one lock and wait for the other.
+	 */
+	@Override
+	public boolean equals(Object other)
+	{
+		if (other == this || !(other instanceof ConcurrentDataSet))
+		{
+			synchronized (this)
+			{
+				return super.equals(other);
+			}
+		}
+		int thisHash = System.identityHashCode(this);
+		int otherHash = System.identityHashCode(other);
+		if (thisHash == otherHash)
+		{
+			synchronized (TIE_LOCK)
+			{
+				return equalsLocked(this, other, other);
+			}
+		}
+		return (thisHash < otherHash) ? equalsLocked(this, other, other) : equalsLocked(other, this, other);
+	}
+
+	/**
+	 * Compares this DataSet with another while holding both locks, first before second
+	 * @param first The lock to take first
+	 * @param second The lock to take second
+	 * @param other The DataSet to compare with
+	 * @return true if they are equal, otherwise false
+	 */
+	private boolean equalsLocked(Object first, Object second, Object other)
+	{
+		synchronized (first)
+		{
+			synchronized (second)
+			{
+				return super.equals(other);
+			}
+		}
+	}
+
+	@Override
+	public synchronized int hashCode()
+	{
+		return super.hashCode();
+	}
+
+	@Override
+	public synchronized long getFingerprint()
+	{
+		return super.getFingerprint();
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return super.toString();
+	}
+
+	@Override
+	public synchronized int sizeOfData()
+	{
+		return super.sizeOfData();
+	}
+
+	@Override
+	public synchronized String getTitle()
+	{
+		return super.getTitle();
+	}
+
+	@Override
+	public synchronized void setTitle(String title)
+	{
+		super.setTitle(title);
+	}
+
+	@Override
+	public synchronized String getXLabel()
+	{
+		return super.getXLabel();
+	}
+
+	@Override
+	public synchronized void setXLabel(String xLabel)
+	{
+		super.setXLabel(xLabel);
+	}
+
+	@Override
+	public synchronized String getYLabel()
+	{
+		return super.getYLabel();
+	}
+
+	@Override
+	public synchronized void setYLabel(String yLabel)
+	{
+		super.setYLabel(yLabel);
+	}
+
+	@Override
+	public synchronized Double getXMax()
+	{
+		return super.getXMax();
+	}
+
+	@Override
+	public synchronized void setXMax(Double xMax) throws InvalidRangeException
+	{
+		super.setXMax(xMax);
+		published = null;
+	}
+
+	@Override
+	public synchronized Double getXMin()
+	{
+		return super.getXMin();
+	}
+
+	@Override
+	public synchronized void setXMin(Double xMin) throws InvalidRangeException
+	{
+		super.setXMin(xMin);
+		published = null;
+	}
+
+	@Override
+	public synchronized Double getYMax()
+	{
+		return super.getYMax();
+	}
+
+	@Override
+	public synchronized void setYMax(Double yMax) throws InvalidRangeException
+	{
+		super.setYMax(yMax);
+		published = null;
+	}
+
+	@Override
+	public synchronized Double getYMin()
+	{
+		return super.getYMin();
+	}
+
+	@Override
+	public synchronized void setYMin(Double yMin) throws InvalidRangeException
+	{
+		super.setYMin(yMin);
+		published = null;
+	}
+}
@@ -0,0 +1,178 @@
+package model;
+
+/**
+ * Describes one change to a DataSet so views can update only what changed.
+ *
+ * Point events give the indices of the affected points, and the smallest box
+ * holding every position a point was at or moved to, so a view can tell which
+ * part of itself needs redrawing even for points that are gone.
+ * @author Julian Jocque
+ */
+public class DataChangeEvent
+{
+	/**
+	 * The kinds of change a DataSet can report
+	 */
+	public enum Type
+	{
+		/** Points were added, fromIndex to toIndex are the new points */
+		POINTS_INSERTED,
+		/** Points were removed, fromIndex to toIndex are where they used to be */
+		POINTS_REMOVED,
+		/** One point moved from fromIndex to toIndex, both counted without the other */
+		POINT_MOVED,
+		/** The acceptable range of X or Y values changed */
+		RANGE_CHANGED,
+		/** The title or an axis label changed */
+		METADATA_CHANGED,
+		/** Anything may have changed, views should redraw everything */
+		DATA_CHANGED
+	}
+
+	private final DataSet source;
+	private final Type type;
+	private final int fromIndex;
+	private final int toIndex;
+	private final double minX;
+	private final double maxX;
+	private final double minY;
+	private final double maxY;
+
+	/**
+	 * Creates an event that is not about particular points
+	 * @param source The DataSet that changed
+	 * @param type What kind of change happened
+	 */
+	public DataChangeEvent(DataSet source, Type type)
+	{
+		this(source, type, -1, -1, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+	}
+
+	/**
+	 * Creates an event about a run of points
+	 * @param source The DataSet that changed
+	 * @param type What kind of change happened
+	 * @param fromIndex First index affected
+	 * @param toIndex Last index affected
+	 * @param minX Smallest X of any affected position
+	 * @param maxX Largest X of any affected position
+	 * @param minY Smallest Y of any affected position
+	 * @param maxY Largest Y of any affected position
+	 */
+	public DataChangeEvent(DataSet source, Type type, int fromIndex, int toIndex,
+			double minX, double maxX, double minY, double maxY)
+	{
+		this.source = source;
+		this.type = type;
+		this.fromIndex = fromIndex;
+		this.toIndex = toIndex;
+		this.minX = minX;
+		this.maxX = maxX;
+		this.minY = minY;
+		this.maxY = maxY;
+	}
+
+	/**
+	 * Combines this event with one that happened after it into a single event
+	 * @param later The event that happened after this one
+	 * @return An event covering both changes
+	 */
+	DataChangeEvent merge(DataChangeEvent later)
+	{
+		if (type == later.type && (type == Type.RANGE_CHANGED || type == Type.METADATA_CHANGED))
+		{
+			return this;
+		}
+		return new DataChangeEvent(source, Type.DATA_CHANGED);
+	}
+
+	/**
+	 * Getter for the DataSet that changed
+	 * @return The DataSet that changed
+	 */
+	public DataSet getSource()
+	{
+		return source;
+	}
+
+	/**
+	 * Getter for the kind of change
+	 * @return What kind of change happened
+	 */
+	public Type getType()
+	{
+		return type;
+	}
+
+	/**
+	 * Checks whether this event is about particular points
+	 * @return true if the indices and bounds of this event are set
+	 */
+	public boolean hasPoints()
+	{
+		return fromIndex >= 0;
+	}
+
+	/**
+	 * Getter for the first index affected
+	 * @return The first index affected, or -1 if this event is not about particular points
+	 */
+	public int getFromIndex()
+	{
+		return fromIndex;
+	}
+
+	/**
+	 * Getter for the last index affected
+	 * @return The last index affected, or -1 if this event is not about particular points
+	 */
+	public int getToIndex()
+	{
+		return toIndex;
+	}
+
+	/**
+	 * Getter for the smallest X of any affected position
+	 * @return The smallest X, or NaN if this event is not about particular points
+	 */
+	public double getMinX()
+	{
+		return minX;
+	}
+
+	/**
+	 * Getter for the largest X of any affected position
+	 * @return The largest X, or NaN if this event is not about particular points
+	 */
+	public double getMaxX()
+	{
+		return maxX;
+	}
+
+	/**
+	 * Getter for the smallest Y of any affected position
+	 * @return The smallest Y, or NaN if this event is not about particular points
+	 */
+	public double getMinY()
+	{
+		return minY;
+	}
+
+	/**
+	 * Getter for the largest Y of any affected position
+	 * @return The largest Y, or NaN if this event is not about particular points
+	 */
+	public double getMaxY()
+	{
+		return maxY;
+	}
+
+	/**
+	 * Gives this event as a string, used for debugging
+	 * @return The type of this event and the indices it covers
+	 */
+	public String toString()
+	{
+		return type + "[" + fromIndex + "," + toIndex + "]";
+	}
+}
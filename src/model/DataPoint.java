@@ -1,40 +1,70 @@
 package model;
 
+import java.util.Comparator;
+
 /**
- * Represents one data point. A data point is a pair of Doubles.
- * Either or both points may be null.
+ * Represents one data point. A data point is a pair of doubles.
+ * DataPoints never change once made, so they may be shared and used as keys.
  * @author Julian Jocque
  *
  */
-public class DataPoint implements Comparable<DataPoint>
+public final class DataPoint implements Comparable<DataPoint>
 {
-	private Double x;
-	private Double y;
-	
 	/**
-	 * Default constructor, makes a DataPoint with null data.
+	 * Orders DataPoints by increasing X, the same way compareTo does
 	 */
-	public DataPoint()
+	public static final Comparator<DataPoint> BY_X = new Comparator<DataPoint>()
 	{
-		this.x = null;
-		this.y = null;
-	}
+		@Override
+		public int compare(DataPoint first, DataPoint second)
+		{
+			return compareX(first.x, second.x);
+		}
+	};
+
+	private final double x;
+	private final double y;
 	
 	/**
-	 * Constructs a DataPoint with given Number x and y.
+	 * Constructs a DataPoint with given x and y.
 	 * @param x The left side of the DataPoint
 	 * @param y The right side of the DataPoint
 	 */
-	public DataPoint(Double x, Double y)
+	public DataPoint(double x, double y)
 	{
 		this.x = x;
 		this.y = y;
 	}
 	
 	/**
-	 * Tests if this DataPoint is the same as another object
+	 * Compares two X values the way points are ordered everywhere, without boxing them.
+	 * Used by the sorts so that they order points the same way DataPoints do.
+	 * @param first The first X value
+	 * @param second The second X value
+	 * @return 1 if first is greater than second, 0 if they are equal, otherwise -1
+	 */
+	public static int compareX(double first, double second)
+	{
+		if (first > second)
+		{
+			return 1;
+		}
+		else if (first == second)
+		{
+			return 0;
+		}
+		else
+		{
+			return -1;
+		}
+	}
+	
+	/**
+	 * Tests if this DataPoint is the same as another object.
+	 * Values are compared the way Double.equals compares them.
 	 * @return true if the data contained is the same, otherwise false
 	 */
+	@Override
 	public boolean equals(Object o)
 	{
 		if (this == o)
@@ -45,35 +75,19 @@ public class DataPoint implements Comparable<DataPoint>
 		{
 			return false;
 		}
-		else if(this.getX() == null || this.getY() == null
-				|| ((DataPoint)o).getX() == null || ((DataPoint)o).getY() == null)
-		{
-			Double thisX = this.getX();
-			Double thisY = this.getY();
-			Double otherX = ((DataPoint)o).getX();
-			Double otherY = ((DataPoint)o).getY();
-			if (thisY != null && (thisX == otherX) && thisY.equals(otherY))
-			{
-				return true;
-			}
-			else if (thisX != null && (thisY == otherY) && thisX.equals(otherX))
-			{
-				return true;
-			}
-			else if ((thisX == otherX) && (thisY == otherY))
-			{
-				return true;
-			}
-			else
-			{
-				return false;
-			}
-		}
-		else
-		{
-			return this.getX().equals(((DataPoint) o).getX()) 
-					&& this.getY().equals(((DataPoint)o).getY());
-		}
+		DataPoint other = (DataPoint)o;
+		return Double.doubleToLongBits(x) == Double.doubleToLongBits(other.x)
+				&& Double.doubleToLongBits(y) == Double.doubleToLongBits(other.y);
+	}
+
+	/**
+	 * Gives a hash code agreeing with equals
+	 * @return The hash code of this DataPoint
+	 */
+	@Override
+	public int hashCode()
+	{
+		return 31 * Double.hashCode(x) + Double.hashCode(y);
 	}
 
 	/**
@@ -83,100 +97,49 @@ public class DataPoint implements Comparable<DataPoint>
 	 * No \n at the end of the string.
 	 * @return The DataPoint as a string.
 	 */
+	@Override
 	public String toString()
 	{
-		String toReturn = "(" + this.getX() + "," + this.getY() + ")";
-		return toReturn;
+		return "(" + x + "," + y + ")";
 	}
 	
 	/**
 	 * Gets the Y value of this DataPoint
 	 * @return The Y value.
 	 */
-	public Double getY() 
+	public double getY() 
 	{
-		return this.y;
+		return y;
 	}
 
 	/**
 	 * Getter for the X value of this DataPoint
 	 * @return The X value.
 	 */
-	public Double getX() 
-	{
-		return this.x;
-	}
-	
-	/**
-	 * Sets the right side value of this DataPoint
-	 */
-	public void setX(Double newX)
-	{
-		this.x = newX;
-	}
-	
-	/**
-	 * Sets the left side value of this DataPoint
-	 */
-	public void setY(Double newY)
+	public double getX() 
 	{
-		this.y = newY;
+		return x;
 	}
 
 	/**
-	 * Compares this DataPoint to another DataPoint.
-	 * Null is a valid value and considered the lowest value possible.
+	 * Compares this DataPoint to another DataPoint by X.
 	 * @param other The DataPoint we are comparing to.
 	 * @return 1 is the X value of this DataPoint is greater than the X value of other,
 	 * 0 if the X values are equal and -1 if the X value of this DataPoint is less than
 	 * the X value of the other DataPoint.
 	 */
+	@Override
 	public int compareTo(DataPoint other) 
 	{
-		Double thisNumber = this.getX();
-		Double otherNumber = ((DataPoint)other).getX();
-		double thisValue;
-		double otherValue;
-		
-		if (thisNumber == null && otherNumber == null)
-		{
-			return 0;
-		}
-		else if (thisNumber != null && otherNumber == null)
-		{
-			return 1;
-		}
-		else if (thisNumber == null && otherNumber != null)
-		{
-			return -1;
-		}
-
-		otherValue = other.getX().doubleValue();
-		thisValue = this.getX().doubleValue();
-
-		if (thisValue > otherValue)
-		{
-			return 1;
-		}
-		else if (thisValue == otherValue)
-		{
-			return 0;
-		}
-		else
-		{
-			return -1;
-		}
+		return compareX(x, other.x);
 	}
 	
 	/**
-	 * Swaps the X and Y values
+	 * Gives a DataPoint with the X and Y values swapped
+	 * @return A new DataPoint, this one is unchanged
 	 */
-	public void swap()
+	public DataPoint swapped()
 	{
-		Double temp = x;
-		x = y;
-		y = temp;
+		return new DataPoint(y, x);
 	}
-
-	
 }
@@ -2,13 +2,17 @@ package model;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import fileIO.FileToDataSet;
 import fileIO.DataSetToFile;
 
 import view.DataView;
+import view.IncrementalDataView;
 
 /**
  * A DataModel to be observed by Views
@@ -17,13 +21,43 @@ import view.DataView;
  * Data is always sorted by increasing X values of the data points.
  * Data has labels for the X and Y values as well as a title.
  * Data has a range of acceptable values for X and Y.
+ * A DataSet may instead keep points outside that range, in which case the range is only
+ * the window that is shown, the points inside it are found by range queries when asked for,
+ * and changing the range never adds or drops a point.
  * Only allows one instance of a particular pair in the DataModel.
+ * Points are held in a PointStore, DataPoints are only made when asked for.
+ * Duplicates are found with a hash set of the points, unless the store would rather save the memory,
+ * such as one keeping its points off the heap, in which case they are found by binary search.
+ * Points are rounded the way the store keeps them before anything else looks at them.
+ * A DataSet may be bounded to its newest points, either by count or by a window of X values,
+ * in which case the oldest points are evicted as new ones arrive.
+ * A DataSet on a PersistentPointStore can undo and redo changes to its points,
+ * since keeping each old version only costs sharing its tree.
  * @author Julian Jocque
  */
 public class DataSet
 {
-	private ArrayList<DataView> listeners;
-	private ArrayList<DataPoint> data;
+	private static final int DEFAULT_UNDO_LIMIT = 100;
+	
+	private List<DataView> listeners;
+	private int batchDepth;
+	private DataChangeEvent pendingChange;
+	private PointStore data;
+	private PointHashSet pointIndex;
+	private RunningStatistics statistics;
+	private long pointFingerprint;
+	private boolean pointFingerprintCounted;
+	private PointGrid spatialIndex;
+	private LodPyramid pyramid;
+	private Deque<PointStore> undoVersions;
+	private Deque<PointStore> redoVersions;
+	private int undoLimit;
+	private int editDepth;
+	private boolean undoRemembered;
+	private volatile long version;
+	private int maxPoints;
+	private double windowWidth;
+	private boolean keepingOutOfRange;
 	private String title;
 	private String xLabel;
 	private String yLabel;
@@ -41,8 +75,16 @@ public class DataSet
 	 */
 	public DataSet() throws InvalidRangeException
 	{
-		listeners = new ArrayList<DataView>();
-		data = new ArrayList<DataPoint>();
+		listeners = new CopyOnWriteArrayList<DataView>();
+		data = new ColumnarPointStore();
+		pointIndex = new PointHashSet();
+		statistics = new RunningStatistics();
+		pointFingerprintCounted = true;
+		undoVersions = new ArrayDeque<PointStore>();
+		redoVersions = new ArrayDeque<PointStore>();
+		undoLimit = DEFAULT_UNDO_LIMIT;
+		maxPoints = 0;
+		windowWidth = Double.POSITIVE_INFINITY;
 		setTitle("");
 		setXLabel("");
 		setYLabel("");
@@ -62,8 +104,40 @@ public class DataSet
 	 */
 	public DataSet(String title, String xLabel, String yLabel, Double xMin, Double xMax, Double yMin, Double yMax) throws InvalidRangeException
 	{
-		listeners = new ArrayList<DataView>();
-		data = new ArrayList<DataPoint>();
+		this(title, xLabel, yLabel, xMin, xMax, yMin, yMax, new ColumnarPointStore());
+	}
+	
+	/**
+	 * Creates a DataSet with given Title, X Label and Y Label that keeps its points in the given store,
+	 * for example an OffHeapPointStore for very large data or a PersistentPointStore for undo.
+	 * Any points already in the store become this DataSet's points, they must be sorted by X
+	 * without duplicates. Their statistics are only counted when first asked for, so opening
+	 * a store that is already full, such as a MappedPointStore, does not read its points.
+	 * The DataSet owns the store from then on and closes it in close.
+	 * @param title The title to set
+	 * @param xLabel The name of X data
+	 * @param yLabel The name of the Y data
+	 * @param store Where to keep the points
+	 * @throws InvalidRangeException If either of the min values
+	 * are greater than the max values or if max are less than min.
+	 */
+	public DataSet(String title, String xLabel, String yLabel, Double xMin, Double xMax, Double yMin, Double yMax,
+			PointStore store) throws InvalidRangeException
+	{
+		listeners = new CopyOnWriteArrayList<DataView>();
+		data = store;
+		pointIndex = store.wantsPointIndex() ? new PointHashSet() : null;
+		statistics = (store.size() == 0) ? new RunningStatistics() : null;
+		pointFingerprintCounted = store.size() == 0;
+		for (int i = 0; pointIndex != null && i < store.size(); i++)
+		{
+			pointIndex.add(store.getX(i), store.getY(i));
+		}
+		undoVersions = new ArrayDeque<PointStore>();
+		redoVersions = new ArrayDeque<PointStore>();
+		undoLimit = DEFAULT_UNDO_LIMIT;
+		maxPoints = 0;
+		windowWidth = Double.POSITIVE_INFINITY;
 		setTitle(title);
 		setXLabel(xLabel);
 		setYLabel(yLabel);
@@ -90,60 +164,1149 @@ public class DataSet
 	}
 	
 	/**
-	 * Updates all listeners attached to this DataModel
+	 * Starts a batch of changes. Until the matching endBatch, changes to this DataSet
+	 * are applied straight away but views are not updated.
+	 * Batches may be nested, views are updated once when the outermost batch ends.
+	 * Call endBatch in a finally block so a failed change cannot leave the batch open.
+	 */
+	public void beginBatch()
+	{
+		batchDepth++;
+	}
+	
+	/**
+	 * Ends a batch of changes started with beginBatch. If this ends the outermost batch
+	 * and anything changed during it, all views are updated once.
+	 * @throws IllegalStateException If there is no batch to end
+	 */
+	public void endBatch()
+	{
+		if (batchDepth == 0)
+		{
+			throw new IllegalStateException("endBatch called without beginBatch");
+		}
+		batchDepth--;
+		if (batchDepth == 0 && editDepth == 0)
+		{
+			undoRemembered = false;
+		}
+		if (batchDepth == 0 && pendingChange != null)
+		{
+			DataChangeEvent change = pendingChange;
+			pendingChange = null;
+			fireChange(change);
+		}
+	}
+	
+	/**
+	 * Tells all listeners attached to this DataModel about a change,
+	 * or remembers it for later if a batch is open.
+	 * @param change The change to tell them about
 	 */
-	private void updateListeners()
+	private void fireChange(DataChangeEvent change)
+	{
+		if (batchDepth > 0)
+		{
+			pendingChange = (pendingChange == null) ? change : pendingChange.merge(change);
+			return;
+		}
+		notifyListeners(change);
+	}
+	
+	/**
+	 * Hands a change to every attached view straight away.
+	 * Views that are not IncrementalDataViews are just told to update.
+	 * @param change The change to hand out
+	 */
+	protected void notifyListeners(DataChangeEvent change)
 	{
 		for (DataView listener : listeners)
 		{
-			listener.update();
+			if (listener instanceof IncrementalDataView)
+			{
+				((IncrementalDataView)listener).dataChanged(change);
+			}
+			else
+			{
+				listener.update();
+			}
 		}
 	}
 	
+	/**
+	 * Tells all listeners about a change that is not about particular points
+	 * @param type What kind of change happened
+	 */
+	private void fireChange(DataChangeEvent.Type type)
+	{
+		fireChange(new DataChangeEvent(this, type));
+	}
+	
+	/**
+	 * Tells all listeners about a change to the single point at the given index
+	 * @param type What kind of change happened
+	 * @param index Index of the point
+	 * @param x X value of the point
+	 * @param y Y value of the point
+	 */
+	private void firePointChange(DataChangeEvent.Type type, int index, double x, double y)
+	{
+		fireChange(new DataChangeEvent(this, type, index, index, x, x, y, y));
+	}
+	
 	/**
 	 * Adds the given two data points to the DataSet if they are not already represented
-	 * and if they are within the acceptable range of values as a pair then sorts the data.
+	 * and if they are within the acceptable range of values as a pair.
+	 * The point is inserted where it keeps the data sorted, after any points with the same X.
+	 * Views are only updated if the point was added.
+	 * If this DataSet is bounded the oldest points are evicted in the same update,
+	 * which may include the new point if it is older than all the others.
 	 * @return True if the point was added successfully, otherwise false
 	 */
 	public boolean add(Double point1, Double point2)
 	{
-		DataPoint toAdd = new DataPoint(point1, point2);
-		
-		boolean willAdd = isLegalPoint(toAdd);
+		point1 = stored(point1);
+		point2 = stored(point2);
+		boolean willAdd = isLegalPoint(point1, point2);
 		
 		if (willAdd)
 		{
-			data.add(toAdd);
+			double x = point1.doubleValue();
+			double y = point2.doubleValue();
+			beginBatch();
+			try
+			{
+				rememberForUndo();
+				int index = data.upperBound(x);
+				data.insert(index, x, y);
+				if (pointIndex != null)
+				{
+					pointIndex.add(x, y);
+				}
+				pointAdded(x, y);
+				version++;
+				firePointChange(DataChangeEvent.Type.POINTS_INSERTED, index, x, y);
+				evictOldest();
+			}
+			finally
+			{
+				endBatch();
+			}
 		}
-		Collections.sort(data);
-		updateListeners();
 		return willAdd;
 	}
 	
+	/**
+	 * Adds every legal pair from the given columns to this DataSet at once.
+	 * Pairs are checked the same way add checks them, and a pair given twice is only added once.
+	 * The new points are sorted once then merged into the data, and views are only updated once,
+	 * including for any points evicted to keep this DataSet within its bounds.
+	 * @param xs X values of the pairs to add
+	 * @param ys Y values of the pairs to add, the same length as xs
+	 * @return The number of pairs that were added
+	 */
+	public int addAll(double[] xs, double[] ys)
+	{
+		checkSameLength(xs, ys);
+		beginBatch();
+		try
+		{
+			int added = insertAll(xs, ys);
+			if (added > 0)
+			{
+				version++;
+				fireChange(DataChangeEvent.Type.DATA_CHANGED);
+				evictOldest();
+			}
+			return added;
+		}
+		finally
+		{
+			endBatch();
+		}
+	}
+	
+	/**
+	 * Replaces all the points in this DataSet with the legal pairs from the given columns.
+	 * Works like addAll except the current points are dropped first.
+	 * @param xs X values of the new pairs
+	 * @param ys Y values of the new pairs, the same length as xs
+	 * @return The number of pairs now in this DataSet
+	 */
+	public int replaceAll(double[] xs, double[] ys)
+	{
+		checkSameLength(xs, ys);
+		beginBatch();
+		try
+		{
+			rememberForUndo();
+			data.clear();
+			pointsCleared();
+			insertAll(xs, ys);
+			version++;
+			fireChange(DataChangeEvent.Type.DATA_CHANGED);
+			evictOldest();
+			return data.size();
+		}
+		finally
+		{
+			endBatch();
+		}
+	}
+	
+	/**
+	 * Bounds this DataSet to its newest points by count. Whenever there are more than
+	 * the given number of points, the ones with the smallest X values are evicted.
+	 * Bounding a DataSet moves its points into a RingPointStore, so evicting is cheap
+	 * and memory stays the same however long points keep arriving.
+	 * @param maxPoints The most points to keep, or 0 for no limit
+	 * @throws IllegalArgumentException If maxPoints is negative
+	 */
+	public void setMaxPoints(int maxPoints)
+	{
+		if (maxPoints < 0)
+		{
+			throw new IllegalArgumentException("Max points must not be negative: " + maxPoints);
+		}
+		this.maxPoints = maxPoints;
+		useRingStore();
+		evictOldest();
+	}
+	
+	/**
+	 * Getter for the most points this DataSet keeps
+	 * @return The point limit, or 0 if there is none
+	 */
+	public int getMaxPoints()
+	{
+		return maxPoints;
+	}
+	
+	/**
+	 * Bounds this DataSet to a window of X values ending at its newest point.
+	 * Points with X values less than the largest X minus the width are evicted.
+	 * Like setMaxPoints this moves the points into a RingPointStore.
+	 * @param windowWidth How far back from the largest X to keep points,
+	 * or Double.POSITIVE_INFINITY for no window
+	 * @throws IllegalArgumentException If windowWidth is negative or NaN
+	 */
+	public void setWindowWidth(double windowWidth)
+	{
+		if (!(windowWidth >= 0))
+		{
+			throw new IllegalArgumentException("Window width must not be negative: " + windowWidth);
+		}
+		this.windowWidth = windowWidth;
+		useRingStore();
+		evictOldest();
+	}
+	
+	/**
+	 * Getter for the width of the window of X values this DataSet keeps
+	 * @return The window width, or Double.POSITIVE_INFINITY if there is none
+	 */
+	public double getWindowWidth()
+	{
+		return windowWidth;
+	}
+	
+	/**
+	 * Moves the points into a RingPointStore if this DataSet is bounded and they are in the
+	 * default store. A point limit sizes the ring so it never has to grow.
+	 * Points in any other store, such as one off the heap or one kept for undo, stay where they are.
+	 */
+	private void useRingStore()
+	{
+		if (!(data instanceof ColumnarPointStore) || (maxPoints == 0 && windowWidth == Double.POSITIVE_INFINITY))
+		{
+			return;
+		}
+		int size = data.size();
+		RingPointStore ring = new RingPointStore(maxPoints > 0 ? maxPoints + 1 : size);
+		double[] xs = new double[size];
+		double[] ys = new double[size];
+		for (int i = 0; i < size; i++)
+		{
+			xs[i] = data.getX(i);
+			ys[i] = data.getY(i);
+		}
+		ring.setAll(xs, ys, size);
+		data = ring;
+	}
+	
+	/**
+	 * Evicts the oldest points until this DataSet is within its point limit and window.
+	 * Evicted points always come from the front, so the rest stay sorted,
+	 * and views are told about them as one removed range. A ring that a bulk add grew
+	 * past the limit is shrunk back, so memory stays flat however the points arrive.
+	 * @return The number of points evicted
+	 */
+	private int evictOldest()
+	{
+		int size = data.size();
+		int count = 0;
+		if (maxPoints > 0 && size > maxPoints)
+		{
+			count = size - maxPoints;
+		}
+		if (windowWidth != Double.POSITIVE_INFINITY && size > 0)
+		{
+			count = Math.max(count, data.lowerBound(data.getX(size - 1) - windowWidth));
+		}
+		if (count == 0)
+		{
+			return 0;
+		}
+		
+		rememberForUndo();
+		double minY = Double.POSITIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < count; i++)
+		{
+			double y = data.getY(i);
+			if (pointIndex != null)
+			{
+				pointIndex.remove(data.getX(i), y);
+			}
+			pointRemoved(data.getX(i), y);
+			minY = Math.min(minY, y);
+			maxY = Math.max(maxY, y);
+		}
+		double minX = data.getX(0);
+		double maxX = data.getX(count - 1);
+		data.removeFirst(count);
+		if (data instanceof RingPointStore)
+		{
+			((RingPointStore)data).trimToCapacity(maxPoints > 0 ? maxPoints + 1 : 2 * data.size());
+		}
+		version++;
+		fireChange(new DataChangeEvent(this, DataChangeEvent.Type.POINTS_REMOVED, 0, count - 1,
+				minX, maxX, minY, maxY));
+		return count;
+	}
+	
+	/**
+	 * Checks that two columns hold the same number of values
+	 * @param xs The X column
+	 * @param ys The Y column
+	 * @throws IllegalArgumentException If the columns are different lengths
+	 */
+	private static void checkSameLength(double[] xs, double[] ys)
+	{
+		if (xs.length != ys.length)
+		{
+			throw new IllegalArgumentException("Got " + xs.length + " X values but "
+					+ ys.length + " Y values");
+		}
+	}
+	
+	/**
+	 * Adds the legal pairs from the given columns without updating views.
+	 * Legal pairs are gathered in one pass, sorted, then merged with the current points,
+	 * which come first when X values are equal just as if each pair had been added in turn.
+	 * Without a hash set of the points, pairs given twice are caught by one just for this call.
+	 * Points kept off the heap are merged in place so the heap never holds all of them.
+	 * When there are no current points, as when loading, the pairs are built in with buildAll.
+	 * @param xs X values of the pairs to add
+	 * @param ys Y values of the pairs to add
+	 * @return The number of pairs that were added
+	 */
+	private int insertAll(double[] xs, double[] ys)
+	{
+		if (data.size() == 0)
+		{
+			return buildAll(xs, ys);
+		}
+		double[] newXs = new double[xs.length];
+		double[] newYs = new double[ys.length];
+		PointHashSet seen = (pointIndex != null) ? pointIndex : new PointHashSet();
+		int added = 0;
+		for (int i = 0; i < xs.length; i++)
+		{
+			double x = data.storedValue(xs[i]);
+			double y = data.storedValue(ys[i]);
+			if (isAccepted(x, y) && (pointIndex != null || indexOf(x, y) == -1) && seen.add(x, y))
+			{
+				pointAdded(x, y);
+				newXs[added] = x;
+				newYs[added] = y;
+				added++;
+			}
+		}
+		if (added == 0)
+		{
+			return 0;
+		}
+		rememberForUndo();
+		PointSorter.sort(newXs, newYs, added);
+		
+		int existing = data.size();
+		if (existing == 0)
+		{
+			data.setAll(newXs, newYs, added);
+			return added;
+		}
+		if (data.isOffHeap())
+		{
+			mergeInPlace(newXs, newYs, added);
+			return added;
+		}
+		double[] mergedXs = new double[existing + added];
+		double[] mergedYs = new double[existing + added];
+		int oldIndex = 0;
+		int newIndex = 0;
+		for (int out = 0; out < mergedXs.length; out++)
+		{
+			if (newIndex == added || (oldIndex < existing && data.getX(oldIndex) <= newXs[newIndex]))
+			{
+				mergedXs[out] = data.getX(oldIndex);
+				mergedYs[out] = data.getY(oldIndex++);
+			}
+			else
+			{
+				mergedXs[out] = newXs[newIndex];
+				mergedYs[out] = newYs[newIndex++];
+			}
+		}
+		data.setAll(mergedXs, mergedYs, mergedXs.length);
+		return added;
+	}
+	
+	/**
+	 * Fills the empty store with the legal pairs from the given columns. Rather than looking
+	 * each pair up in a hash set, the pairs are sorted and repeats are found next to each other,
+	 * both split across every core for large loads. The hash set of the points, if there is one,
+	 * is then filled with the pairs kept.
+	 * @param xs X values of the pairs to add
+	 * @param ys Y values of the pairs to add
+	 * @return The number of pairs that were added
+	 */
+	private int buildAll(double[] xs, double[] ys)
+	{
+		double[] newXs = new double[xs.length];
+		double[] newYs = new double[ys.length];
+		int accepted = 0;
+		for (int i = 0; i < xs.length; i++)
+		{
+			double x = data.storedValue(xs[i]);
+			double y = data.storedValue(ys[i]);
+			if (isAccepted(x, y))
+			{
+				newXs[accepted] = x;
+				newYs[accepted++] = y;
+			}
+		}
+		int added = PointSorter.sortUnique(newXs, newYs, accepted);
+		if (added == 0)
+		{
+			return 0;
+		}
+		rememberForUndo();
+		if (pointIndex != null)
+		{
+			pointIndex.ensureCapacity(added);
+		}
+		for (int i = 0; i < added; i++)
+		{
+			if (pointIndex != null)
+			{
+				pointIndex.add(newXs[i], newYs[i]);
+			}
+			pointAdded(newXs[i], newYs[i]);
+		}
+		data.setAll(newXs, newYs, added);
+		return added;
+	}
+	
+	/**
+	 * Merges sorted points into the store without copying the store's points out of it.
+	 * The new points are appended, then the merge runs backwards from the end so that
+	 * every place written has already been read. Moving a point onto its own index sets it.
+	 * @param newXs X values of the points to merge, sorted
+	 * @param newYs Y values of the points to merge
+	 * @param added How many points to merge
+	 */
+	private void mergeInPlace(double[] newXs, double[] newYs, int added)
+	{
+		int existing = data.size();
+		for (int i = 0; i < added; i++)
+		{
+			data.insert(existing + i, newXs[i], newYs[i]);
+		}
+		int oldIndex = existing - 1;
+		int newIndex = added - 1;
+		for (int out = existing + added - 1; newIndex >= 0; out--)
+		{
+			if (oldIndex >= 0 && data.getX(oldIndex) > newXs[newIndex])
+			{
+				data.move(out, out, data.getX(oldIndex), data.getY(oldIndex));
+				oldIndex--;
+			}
+			else
+			{
+				data.move(out, out, newXs[newIndex], newYs[newIndex]);
+				newIndex--;
+			}
+		}
+	}
+	
+	/**
+	 * Keeps the statistics, fingerprint, spatial index and level of detail pyramid up to date
+	 * with a point that was added
+	 * @param x X value of the point
+	 * @param y Y value of the point
+	 */
+	private void pointAdded(double x, double y)
+	{
+		if (statistics != null)
+		{
+			statistics.add(x, y);
+		}
+		pointFingerprint += fingerprintOf(x, y);
+		if (spatialIndex != null)
+		{
+			spatialIndex.add(x, y);
+		}
+		if (pyramid != null && !pyramid.add(x, y))
+		{
+			pyramid = null;
+		}
+	}
+	
+	/**
+	 * Keeps the statistics, fingerprint, spatial index and level of detail pyramid up to date
+	 * with a point that was removed
+	 * @param x X value of the point
+	 * @param y Y value of the point
+	 */
+	private void pointRemoved(double x, double y)
+	{
+		if (statistics != null)
+		{
+			statistics.remove(x, y);
+		}
+		pointFingerprint -= fingerprintOf(x, y);
+		if (spatialIndex != null)
+		{
+			spatialIndex.remove(x, y);
+		}
+		if (pyramid != null)
+		{
+			pyramid.remove(x);
+		}
+	}
+	
+	/**
+	 * Empties the duplicate index, resets the statistics and fingerprint and drops the spatial index
+	 * and pyramid after every point was removed. They are built again when they are next needed.
+	 */
+	private void pointsCleared()
+	{
+		if (pointIndex != null)
+		{
+			pointIndex.clear();
+		}
+		statistics = new RunningStatistics();
+		pointFingerprint = 0;
+		pointFingerprintCounted = true;
+		spatialIndex = null;
+		pyramid = null;
+	}
+	
+	/**
+	 * Gives the spatial index, building it first if there is none
+	 * or the points have changed too much since it was built
+	 * @return The spatial index over the current points
+	 */
+	private PointGrid spatialIndex()
+	{
+		if (spatialIndex == null || spatialIndex.isStale(data.size()))
+		{
+			spatialIndex = PointGrid.build(data);
+		}
+		return spatialIndex;
+	}
+	
 	/**
 	 * Checks the given point can be added to this DataSet legally
-	 * @param checking The point to check
+	 * @param x The X value of the point to check
+	 * @param y The Y value of the point to check
 	 * @return True if it can be added, else false.
 	 */
-	private boolean isLegalPoint(DataPoint checking) 
+	private boolean isLegalPoint(Double x, Double y) 
 	{
-		Double x = checking.getX();
-		Double y = checking.getY();
-		
 		return (x != null && y != null && 
-				(!data.contains(checking)) && 
-				(x.compareTo(getXMin()) != -1 && x.compareTo(getXMax()) != 1) &&
-				(y.compareTo(getYMin()) != -1 && y.compareTo(getYMax()) != 1));
+				isAccepted(x.doubleValue(), y.doubleValue()) &&
+				!containsPoint(x.doubleValue(), y.doubleValue()));
+	}
+	
+	/**
+	 * Checks the given pair may be stored. That is any pair of numbers when keeping points
+	 * outside the range, else only pairs within the range.
+	 * @param x The X value to check
+	 * @param y The Y value to check
+	 * @return True if the pair may be stored, else false
+	 */
+	private boolean isAccepted(double x, double y)
+	{
+		if (keepingOutOfRange)
+		{
+			return !Double.isNaN(x) && !Double.isNaN(y);
+		}
+		return isInRange(x, y);
+	}
+	
+	/**
+	 * Rounds a value the way the store keeps it
+	 * @param value The value to round, may be null
+	 * @return The value as it would be stored, or null if it was null
+	 */
+	private Double stored(Double value)
+	{
+		if (value == null || data.storedValue(value.doubleValue()) == value.doubleValue())
+		{
+			return value;
+		}
+		return data.storedValue(value.doubleValue());
+	}
+	
+	/**
+	 * Checks whether the given pair is already in this DataSet
+	 * @param x The X value of the pair
+	 * @param y The Y value of the pair
+	 * @return True if the pair is already here, else false
+	 */
+	private boolean containsPoint(double x, double y)
+	{
+		if (pointIndex != null)
+		{
+			return pointIndex.contains(x, y);
+		}
+		return indexOf(x, y) != -1;
+	}
+	
+	/**
+	 * Checks the given pair lies within the acceptable range of values
+	 * @param x The X value to check
+	 * @param y The Y value to check
+	 * @return True if both values are within their range, else false
+	 */
+	private boolean isInRange(double x, double y)
+	{
+		return Double.compare(x, xMin) >= 0 && Double.compare(x, xMax) <= 0 &&
+				Double.compare(y, yMin) >= 0 && Double.compare(y, yMax) <= 0;
+	}
+	
+	/**
+	 * Finds where the given pair is held in this DataSet.
+	 * Pairs match when their values are equal in the same way Doubles are.
+	 * Only the points sharing the pair's X value are looked at.
+	 * @param x The X value of the pair to find
+	 * @param y The Y value of the pair to find
+	 * @return The index of the pair, or -1 if it is not in this DataSet
+	 */
+	private int indexOf(double x, double y)
+	{
+		long xBits = Double.doubleToLongBits(x);
+		long yBits = Double.doubleToLongBits(y);
+		int end = data.upperBound(x);
+		for (int i = data.lowerBound(x); i < end; i++)
+		{
+			if (Double.doubleToLongBits(data.getX(i)) == xBits
+					&& Double.doubleToLongBits(data.getY(i)) == yBits)
+			{
+				return i;
+			}
+		}
+		return -1;
 	}
 
 	/**
-	 * Removes the given two data points from the DataSet
+	 * Removes the given two data points from the DataSet.
+	 * Views are only updated if the pair was in the DataSet.
 	 */
 	public void remove(Double point1, Double point2)
 	{
-		DataPoint toRemove = new DataPoint(point1, point2);
-		data.remove(toRemove);
-		updateListeners();
+		if (point1 != null && point2 != null)
+		{
+			double x = data.storedValue(point1.doubleValue());
+			double y = data.storedValue(point2.doubleValue());
+			int index = indexOf(x, y);
+			if (index != -1)
+			{
+				rememberForUndo();
+				data.remove(index);
+				if (pointIndex != null)
+				{
+					pointIndex.remove(x, y);
+				}
+				pointRemoved(x, y);
+				version++;
+				firePointChange(DataChangeEvent.Type.POINTS_REMOVED, index, x, y);
+			}
+		}
+	}
+	
+	/**
+	 * Moves the point at the given index to new values, keeping the data sorted.
+	 * The new pair must be legal the same way it would be for add, except that it may
+	 * match the point being moved. If it is not legal the point stays where it was.
+	 * Views are told about one moved point, unless moving it evicted points from a bounded DataSet.
+	 * @param index Index of the point to move
+	 * @param newX New X value of the point
+	 * @param newY New Y value of the point
+	 * @return True if the point was moved, otherwise false
+	 */
+	public boolean move(int index, Double newX, Double newY)
+	{
+		if (index < 0 || index >= data.size() || newX == null || newY == null)
+		{
+			return false;
+		}
+		newX = stored(newX);
+		newY = stored(newY);
+		double oldX = data.getX(index);
+		double oldY = data.getY(index);
+		double x = newX.doubleValue();
+		double y = newY.doubleValue();
+		if (Double.doubleToLongBits(x) == Double.doubleToLongBits(oldX)
+				&& Double.doubleToLongBits(y) == Double.doubleToLongBits(oldY))
+		{
+			return true;
+		}
+		if (!isLegalPoint(newX, newY))
+		{
+			return false;
+		}
+		
+		int newIndex = data.upperBound(x);
+		if (newIndex > index)
+		{
+			newIndex--;
+		}
+		beginBatch();
+		try
+		{
+			rememberForUndo();
+			data.move(index, newIndex, x, y);
+			if (pointIndex != null)
+			{
+				pointIndex.remove(oldX, oldY);
+				pointIndex.add(x, y);
+			}
+			pointRemoved(oldX, oldY);
+			pointAdded(x, y);
+			version++;
+			fireChange(new DataChangeEvent(this, DataChangeEvent.Type.POINT_MOVED, index, newIndex,
+					Math.min(oldX, x), Math.max(oldX, x), Math.min(oldY, y), Math.max(oldY, y)));
+			evictOldest();
+		}
+		finally
+		{
+			endBatch();
+		}
+		return true;
+	}
+	
+	/**
+	 * Moves the given pair to new values, see move(int, Double, Double)
+	 * @param oldX X value of the pair to move
+	 * @param oldY Y value of the pair to move
+	 * @param newX New X value of the pair
+	 * @param newY New Y value of the pair
+	 * @return True if the pair was found and moved, otherwise false
+	 */
+	public boolean move(Double oldX, Double oldY, Double newX, Double newY)
+	{
+		if (oldX == null || oldY == null)
+		{
+			return false;
+		}
+		return move(indexOf(data.storedValue(oldX.doubleValue()), data.storedValue(oldY.doubleValue())), newX, newY);
+	}
+	
+	/**
+	 * Gives the point at the given index as a DataPoint.
+	 * The DataPoint is a copy of the values, later changes to this DataSet do not show in it.
+	 * @param index Index of the point, points are sorted by increasing X
+	 * @return The point at that index
+	 */
+	public DataPoint getPoint(int index)
+	{
+		return new DataPoint(data.getX(index), data.getY(index));
+	}
+	
+	/**
+	 * Getter for the X value of the point at the given index.
+	 * Reads straight from the data, nothing is copied.
+	 * @param index Index of the point, from 0 to sizeOfData() - 1
+	 * @return The X value of that point
+	 */
+	public double getX(int index)
+	{
+		return data.getX(index);
+	}
+	
+	/**
+	 * Getter for the Y value of the point at the given index.
+	 * Reads straight from the data, nothing is copied.
+	 * @param index Index of the point, from 0 to sizeOfData() - 1
+	 * @return The Y value of that point
+	 */
+	public double getY(int index)
+	{
+		return data.getY(index);
+	}
+	
+	/**
+	 * Gives every point to the given visitor in order of increasing X.
+	 * Nothing is copied, so the DataSet must not be changed until this returns.
+	 * @param visitor The visitor to give the points to
+	 */
+	public void forEach(PointVisitor visitor)
+	{
+		int size = data.size();
+		for (int i = 0; i < size; i++)
+		{
+			visitor.visit(data.getX(i), data.getY(i));
+		}
+	}
+	
+	/**
+	 * Finds the points with X values from xLo to xHi, both included, with two binary searches.
+	 * Since the points are sorted by X they are the ones from the first index up to
+	 * but not including the second.
+	 * @param xLo The smallest X value to include
+	 * @param xHi The largest X value to include
+	 * @return The first index in the range and the index just past it,
+	 * which are the same if no point is in the range
+	 */
+	public int[] indexRange(double xLo, double xHi)
+	{
+		int from = data.lowerBound(xLo);
+		int to = Math.max(from, data.upperBound(xHi));
+		return new int[] {from, to};
+	}
+	
+	/**
+	 * Gives every point with an X value from xLo to xHi, both included, to the given
+	 * visitor in order of increasing X. Points outside the range are never looked at.
+	 * Nothing is copied, so the DataSet must not be changed until this returns.
+	 * @param xLo The smallest X value to visit
+	 * @param xHi The largest X value to visit
+	 * @param visitor The visitor to give the points to
+	 */
+	public void forEachInXRange(double xLo, double xHi, PointVisitor visitor)
+	{
+		int[] range = indexRange(xLo, xHi);
+		for (int i = range[0]; i < range[1]; i++)
+		{
+			visitor.visit(data.getX(i), data.getY(i));
+		}
+	}
+	
+	/**
+	 * Sets whether points outside the X and Y ranges are kept. When they are, the ranges
+	 * are just the window that is shown: widening them brings back points that were hidden,
+	 * with no need to load them again, and changing them costs nothing however many points there are.
+	 * Points already outside the ranges are not dropped when this is turned off.
+	 * @param keepOutOfRange True to keep every point, false to turn away points outside the ranges
+	 */
+	public void setKeepOutOfRange(boolean keepOutOfRange)
+	{
+		keepingOutOfRange = keepOutOfRange;
+	}
+	
+	/**
+	 * Checks whether points outside the X and Y ranges are kept
+	 * @return True if every point is kept, false if points outside the ranges are turned away
+	 */
+	public boolean isKeepingOutOfRange()
+	{
+		return keepingOutOfRange;
+	}
+	
+	/**
+	 * Finds the points whose X values are within the X range, see indexRange.
+	 * Their Y values may still be outside the Y range.
+	 * @return The first index in the X range and the index just past it
+	 */
+	public int[] visibleRange()
+	{
+		return indexRange(xMin, xMax);
+	}
+	
+	/**
+	 * Gives every point within both ranges to the given visitor in order of increasing X.
+	 * Only points within the X range are looked at, those outside the Y range are skipped.
+	 * Nothing is copied, so the DataSet must not be changed until this returns.
+	 * @param visitor The visitor to give the points to
+	 */
+	public void forEachVisible(PointVisitor visitor)
+	{
+		int[] range = visibleRange();
+		for (int i = range[0]; i < range[1]; i++)
+		{
+			double y = data.getY(i);
+			if (Double.compare(y, yMin) >= 0 && Double.compare(y, yMax) <= 0)
+			{
+				visitor.visit(data.getX(i), y);
+			}
+		}
+	}
+	
+	/**
+	 * Finds the point closest to the given position by straight line distance in data units.
+	 * Uses a spatial index which is built the first time it is needed,
+	 * then kept up to date as points change. Points in a store off the heap are not indexed,
+	 * since the index would copy them all onto the heap; they are searched outwards
+	 * from the position along the sorted X values instead.
+	 * @param x X value of the position
+	 * @param y Y value of the position
+	 * @return The closest point, or null if there are no points
+	 */
+	public DataPoint nearest(double x, double y)
+	{
+		double[] found = nearestPoints(x, y, 1, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+				Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+		return found.length == 0 ? null : new DataPoint(found[0], found[1]);
+	}
+	
+	/**
+	 * Finds the point closest to the given position out of those that are shown.
+	 * While points outside the ranges are kept, only points inside the X and Y ranges count,
+	 * so a view picking points with the mouse never picks one it is not drawing.
+	 * Otherwise every point is inside the ranges and this is the same as nearest.
+	 * @param x X value of the position
+	 * @param y Y value of the position
+	 * @return The closest point shown, or null if no point is shown
+	 */
+	public DataPoint nearestVisible(double x, double y)
+	{
+		if (!keepingOutOfRange)
+		{
+			return nearest(x, y);
+		}
+		double[] found = nearestPoints(x, y, 1, xMin, yMin, xMax, yMax);
+		return found.length == 0 ? null : new DataPoint(found[0], found[1]);
+	}
+	
+	/**
+	 * Finds the k points closest to the given position, see nearest
+	 * @param x X value of the position
+	 * @param y Y value of the position
+	 * @param k How many points to find
+	 * @return The closest points, closest first, fewer than k if there are not that many
+	 */
+	public DataPoint[] kNearest(double x, double y, int k)
+	{
+		double[] found = nearestPoints(x, y, Math.max(k, 0), Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+				Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+		DataPoint[] points = new DataPoint[found.length / 2];
+		for (int i = 0; i < points.length; i++)
+		{
+			points[i] = new DataPoint(found[2 * i], found[2 * i + 1]);
+		}
+		return points;
+	}
+	
+	/**
+	 * Gives every point inside the given rectangle, edges included, to the given visitor.
+	 * Uses the same spatial index as nearest, so only points near the rectangle are looked at,
+	 * or for a store off the heap only points within its X values.
+	 * Points are not visited in order of X. Nothing is copied, so the DataSet
+	 * must not be changed until this returns.
+	 * @param xLo Smallest X value of the rectangle
+	 * @param yLo Smallest Y value of the rectangle
+	 * @param xHi Largest X value of the rectangle
+	 * @param yHi Largest Y value of the rectangle
+	 * @param visitor The visitor to give the points to
+	 */
+	public void withinRect(double xLo, double yLo, double xHi, double yHi, PointVisitor visitor)
+	{
+		if (data.isOffHeap())
+		{
+			SortedScan.withinRect(data, xLo, yLo, xHi, yHi, visitor);
+		}
+		else
+		{
+			spatialIndex().withinRect(xLo, yLo, xHi, yHi, visitor);
+		}
+	}
+	
+	/**
+	 * Finds the k points closest to the given position inside the given rectangle,
+	 * with the spatial index or, for a store off the heap, by scanning along X
+	 * @param x X value of the position
+	 * @param y Y value of the position
+	 * @param k How many points to find
+	 * @param xLo Smallest X value of the rectangle
+	 * @param yLo Smallest Y value of the rectangle
+	 * @param xHi Largest X value of the rectangle
+	 * @param yHi Largest Y value of the rectangle
+	 * @return The points found interleaved as x, y, closest first
+	 */
+	private double[] nearestPoints(double x, double y, int k, double xLo, double yLo, double xHi, double yHi)
+	{
+		if (data.isOffHeap())
+		{
+			return SortedScan.nearest(data, x, y, k, xLo, yLo, xHi, yHi);
+		}
+		return spatialIndex().nearest(x, y, k, xLo, yLo, xHi, yHi);
+	}
+	
+	/**
+	 * Gives a summary of the points in buckets of X values no wider than the given width,
+	 * for drawing very many points in a few pixels. Buckets cover the X values of the points,
+	 * and each bucket has its count, Y extremes and first and last point.
+	 * The summaries come from a pyramid of levels which is built the first time one is
+	 * asked for, then kept up to date as points change.
+	 * @param maxBucketWidth The widest a bucket may be, usually the width of a pixel in X
+	 * @return The coarsest level with buckets that narrow, or null if there are no points
+	 * or even the finest level is too coarse, in which case the points should be used directly
+	 */
+	public LodLevel levelOfDetail(double maxBucketWidth)
+	{
+		if (pyramid == null)
+		{
+			pyramid = LodPyramid.build(data);
+		}
+		return pyramid == null ? null : pyramid.level(maxBucketWidth, data);
+	}
+	
+	/**
+	 * Gives a summary of the points between two X values in buckets no wider than the given width,
+	 * see levelOfDetail. When even the finest level of the pyramid is too coarse, as it is once
+	 * a view is zoomed in far enough, the points between the values are summarised on the spot
+	 * with one pass over them, so a dense view never has to fall back to every point.
+	 * @param maxBucketWidth The widest a bucket may be, usually the width of a pixel in X
+	 * @param xLo Smallest X value in view
+	 * @param xHi Largest X value in view
+	 * @return A level covering at least the X values in view, or null if there are no points
+	 * there or the view needs too many buckets to summarise
+	 */
+	public LodLevel levelOfDetail(double maxBucketWidth, double xLo, double xHi)
+	{
+		LodLevel level = levelOfDetail(maxBucketWidth);
+		if (level != null || data.size() == 0)
+		{
+			return level;
+		}
+		return LodPyramid.summarise(data, xLo, xHi, maxBucketWidth);
+	}
+	
+	/**
+	 * Gives a level of the pyramid, see levelOfDetail, but only while the points are
+	 * still at the given version, so a snapshot never gets a summary of other points
+	 * @param maxBucketWidth The widest a bucket may be
+	 * @param atVersion The version the points must be at
+	 * @return The level, or null if the points have changed since that version,
+	 * there are no points or even the finest level is too coarse
+	 */
+	LodLevel levelOfDetail(double maxBucketWidth, long atVersion)
+	{
+		return atVersion == version ? levelOfDetail(maxBucketWidth) : null;
+	}
+	
+	/**
+	 * Gives a read-only view of the points and ranges as they are now.
+	 * A plain DataSet is not thread safe, so the snapshot reads the live points and
+	 * is only good until this DataSet next changes. ConcurrentDataSet gives a frozen copy.
+	 * @return A snapshot of the points
+	 */
+	public DataSnapshot snapshot()
+	{
+		return new DataSnapshot(data, data.size(), version, this);
+	}
+	
+	/**
+	 * Gives a snapshot over a frozen view of the points, unaffected by later changes
+	 * @return A frozen snapshot of the points
+	 */
+	DataSnapshot frozenSnapshot()
+	{
+		return new DataSnapshot(data.frozenView(), data.size(), version, this);
+	}
+	
+	/**
+	 * Gives summary statistics of the points: count, bounds, sums, means, variances and covariance.
+	 * They are kept up to date as points change, so this does not walk the points
+	 * unless the smallest or largest Y value was removed since it was last called,
+	 * or this DataSet was made from a store that already held points and they were never counted.
+	 * @return The statistics of the points as they are now
+	 */
+	public PointStatistics getStatistics()
+	{
+		if (statistics == null)
+		{
+			statistics = new RunningStatistics();
+			for (int i = 0; i < data.size(); i++)
+			{
+				statistics.add(data.getX(i), data.getY(i));
+			}
+		}
+		return statistics.toStatistics(data);
+	}
+	
+	/**
+	 * Gives a 64 bit fingerprint of the points, title, labels and ranges. DataSets that are equal
+	 * have the same fingerprint, and a change to any of them almost surely changes it, so a cache
+	 * can keep the fingerprint it was made from to tell whether anything changed since.
+	 * Unlike the version, undoing back to earlier points gives back the earlier fingerprint.
+	 *
+	 * Each point is hashed on its own and the hashes are summed, so the sum is kept up to date
+	 * as points are added and removed and this does not walk the points, unless this DataSet was
+	 * made from a store that already held points or a change was just undone or redone.
+	 * @return The fingerprint of this DataSet as it is now
+	 */
+	public long getFingerprint()
+	{
+		if (!pointFingerprintCounted)
+		{
+			pointFingerprint = 0;
+			for (int i = 0; i < data.size(); i++)
+			{
+				pointFingerprint += fingerprintOf(data.getX(i), data.getY(i));
+			}
+			pointFingerprintCounted = true;
+		}
+		long fingerprint = pointFingerprint;
+		fingerprint = 31 * fingerprint + title.hashCode();
+		fingerprint = 31 * fingerprint + xLabel.hashCode();
+		fingerprint = 31 * fingerprint + yLabel.hashCode();
+		fingerprint = 31 * fingerprint + Objects.hashCode(xMin);
+		fingerprint = 31 * fingerprint + Objects.hashCode(xMax);
+		fingerprint = 31 * fingerprint + Objects.hashCode(yMin);
+		fingerprint = 31 * fingerprint + Objects.hashCode(yMax);
+		return fingerprint;
+	}
+	
+	/**
+	 * Hashes one point for the fingerprint, comparing values the way equals does.
+	 * The hash is mixed well enough that sums of different sets of points rarely collide.
+	 * @param x X value of the point
+	 * @param y Y value of the point
+	 * @return The hash of the point
+	 */
+	private static long fingerprintOf(double x, double y)
+	{
+		long h = Double.doubleToLongBits(x) * 0x9E3779B97F4A7C15L + Double.doubleToLongBits(y);
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+	
+	/**
+	 * Getter for the version of the points, which goes up every time the points change.
+	 * Changes to the title, labels or ranges do not change the version.
+	 * @return The current version
+	 */
+	public long getVersion()
+	{
+		return version;
 	}
 	
 	/**
@@ -154,12 +1317,11 @@ public class DataSet
 	 */
 	public Double[][] getDataAsArray()
 	{
-		Object[] dataAsPoints = data.toArray();
-		Double[][] dataAsDoubles = new Double[dataAsPoints.length][2];
-		for (int row = 0; row < dataAsPoints.length; row++)
+		Double[][] dataAsDoubles = new Double[data.size()][2];
+		for (int row = 0; row < dataAsDoubles.length; row++)
 		{
-			dataAsDoubles[row][0] = ((DataPoint)dataAsPoints[row]).getX();
-			dataAsDoubles[row][1] = ((DataPoint)dataAsPoints[row]).getY();
+			dataAsDoubles[row][0] = data.getX(row);
+			dataAsDoubles[row][1] = data.getY(row);
 		}
 		return dataAsDoubles;
 	}
@@ -173,12 +1335,19 @@ public class DataSet
 	public void load(String fileToLoad) throws FileNotFoundException, InvalidRangeException
 	{
 		FileToDataSet loader = new FileToDataSet(fileToLoad);
-		DataSet newSet = loader.parse();
-		
-		eraseCurrentData();
+		DataSet newSet = loader.parse(keepingOutOfRange);
 		
-		setData(newSet);
-		updateListeners();
+		beginBatch();
+		try
+		{
+			eraseCurrentData();
+			setData(newSet);
+			fireChange(DataChangeEvent.Type.DATA_CHANGED);
+		}
+		finally
+		{
+			endBatch();
+		}
 	}
 	
 	/**
@@ -188,9 +1357,6 @@ public class DataSet
 	 */
 	private void setData(DataSet newSet) throws InvalidRangeException 
 	{
-
-		Double[][] newData = newSet.getDataAsArray();
-		
 		setTitle(newSet.getTitle());
 		setXLabel(newSet.getXLabel());
 		setYLabel(newSet.getYLabel());
@@ -199,12 +1365,14 @@ public class DataSet
 		setXMax(newSet.getXMax());
 		setYMax(newSet.getYMax());
 		
-		for (int i = 0; i < newData.length; i++)
+		double[] newXs = new double[newSet.data.size()];
+		double[] newYs = new double[newSet.data.size()];
+		for (int i = 0; i < newXs.length; i++)
 		{
-			Double x = newData[i][0];
-			Double y = newData[i][1];
-			data.add(new DataPoint(x, y));
+			newXs[i] = newSet.data.getX(i);
+			newYs[i] = newSet.data.getY(i);
 		}
+		replaceAll(newXs, newYs);
 	}
 
 	/**
@@ -212,7 +1380,10 @@ public class DataSet
 	 */
 	private void eraseCurrentData() 
 	{
-		data = new ArrayList<DataPoint>();
+		rememberForUndo();
+		data.clear();
+		pointsCleared();
+		version++;
 		title = "";
 		xLabel = "";
 		yLabel = "";
@@ -222,6 +1393,182 @@ public class DataSet
 		yMax = null;
 	}
 
+	/**
+	 * Starts an edit, grouping every change until the matching endEdit into one undo step.
+	 * Unlike a batch, views are still updated as each change happens, so a point being
+	 * dragged can be drawn as it moves and still be undone in one go. Edits may be nested.
+	 */
+	public void beginEdit()
+	{
+		editDepth++;
+	}
+	
+	/**
+	 * Ends an edit started with beginEdit
+	 * @throws IllegalStateException If there is no edit to end
+	 */
+	public void endEdit()
+	{
+		if (editDepth == 0)
+		{
+			throw new IllegalStateException("endEdit called without beginEdit");
+		}
+		editDepth--;
+		if (editDepth == 0 && batchDepth == 0)
+		{
+			undoRemembered = false;
+		}
+	}
+	
+	/**
+	 * Puts the points back the way they were before the last change, or the last edit or batch.
+	 * Only the points are put back, not the title, labels or ranges, and unless points outside
+	 * the ranges are kept, any put back point outside the current ranges is left out.
+	 * The spatial index, pyramid and statistics are worked out again when next needed.
+	 * @return true if there was a change to undo, else false
+	 */
+	public boolean undo()
+	{
+		if (undoVersions.isEmpty())
+		{
+			return false;
+		}
+		redoVersions.push(data);
+		restore(undoVersions.pop());
+		return true;
+	}
+	
+	/**
+	 * Makes the last change that was undone again
+	 * @return true if there was a change to redo, else false
+	 */
+	public boolean redo()
+	{
+		if (redoVersions.isEmpty())
+		{
+			return false;
+		}
+		undoVersions.push(data);
+		restore(redoVersions.pop());
+		return true;
+	}
+	
+	/**
+	 * Checks whether there is a change to undo
+	 * @return true if undo would change the points
+	 */
+	public boolean canUndo()
+	{
+		return !undoVersions.isEmpty();
+	}
+	
+	/**
+	 * Checks whether there is an undone change to redo
+	 * @return true if redo would change the points
+	 */
+	public boolean canRedo()
+	{
+		return !redoVersions.isEmpty();
+	}
+	
+	/**
+	 * Sets how many changes can be undone, the oldest are forgotten past that.
+	 * Changes are only remembered while the points are in a PersistentPointStore.
+	 * @param undoLimit The most changes to remember, 0 to remember none
+	 * @throws IllegalArgumentException If undoLimit is negative
+	 */
+	public void setUndoLimit(int undoLimit)
+	{
+		if (undoLimit < 0)
+		{
+			throw new IllegalArgumentException("Undo limit must not be negative: " + undoLimit);
+		}
+		this.undoLimit = undoLimit;
+		while (undoVersions.size() > undoLimit)
+		{
+			undoVersions.removeLast();
+		}
+	}
+	
+	/**
+	 * Getter for how many changes can be undone
+	 * @return The most changes remembered for undo
+	 */
+	public int getUndoLimit()
+	{
+		return undoLimit;
+	}
+	
+	/**
+	 * Remembers the points as they are for undo, just before they change.
+	 * Only the first change of an edit or batch is remembered, so the whole of it is undone at once.
+	 * Any changes that were undone can no longer be redone.
+	 */
+	private void rememberForUndo()
+	{
+		if (!data.isPersistent() || undoLimit == 0 || undoRemembered)
+		{
+			return;
+		}
+		undoVersions.push(data.copy());
+		if (undoVersions.size() > undoLimit)
+		{
+			undoVersions.removeLast();
+		}
+		redoVersions.clear();
+		undoRemembered = batchDepth > 0 || editDepth > 0;
+	}
+	
+	/**
+	 * Makes the given version of the points the current one and updates every view
+	 * @param points The version to use
+	 */
+	private void restore(PointStore points)
+	{
+		data = points;
+		if (!keepingOutOfRange)
+		{
+			dropOutOfRange();
+		}
+		statistics = null;
+		pointFingerprintCounted = false;
+		spatialIndex = null;
+		pyramid = null;
+		version++;
+		fireChange(DataChangeEvent.Type.DATA_CHANGED);
+	}
+	
+	/**
+	 * Removes every point outside the X and Y ranges from the store, without telling views.
+	 * Points past either end of the X range go in one removal each.
+	 */
+	private void dropOutOfRange()
+	{
+		data.removeFirst(data.lowerBound(xMin));
+		int end = data.upperBound(xMax);
+		for (int i = data.size() - 1; i >= 0; i--)
+		{
+			double y = data.getY(i);
+			if (i >= end || y < yMin || y > yMax)
+			{
+				data.remove(i);
+			}
+		}
+	}
+	
+	/**
+	 * Releases the memory the points are held in, which matters for stores that keep them
+	 * off the heap. The points are gone afterwards and the DataSet should not be used again.
+	 */
+	public void close()
+	{
+		undoVersions.clear();
+		redoVersions.clear();
+		data.close();
+		pointsCleared();
+		version++;
+	}
+	
 	/**
 	 * Saves the current DataSet to the given file name.
 	 * File extension is automatically appended.
@@ -236,7 +1583,8 @@ public class DataSet
 	}
 	
 	/**
-	 * Checks if this DataSet is equal to another Object
+	 * Checks if this DataSet is equal to another Object.
+	 * DataSets with different fingerprints are told apart without looking at their points.
 	 * @return true if they are equal, otherwise false
 	 */
 	public boolean equals(Object other)
@@ -249,11 +1597,25 @@ public class DataSet
 		{
 			return false;
 		}
+		else if (this.getFingerprint() != ((DataSet)other).getFingerprint())
+		{
+			return false;
+		}
 		else
 		{
 			return this.isAllSameData((DataSet)other);
 		}
 	}
+	
+	/**
+	 * Gives a hash code agreeing with equals, taken from the fingerprint
+	 * @return The hash code of this DataSet
+	 */
+	public int hashCode()
+	{
+		long fingerprint = getFingerprint();
+		return (int)(fingerprint ^ (fingerprint >>> 32));
+	}
 
 	/**
 	 * Checks that all the data in this DataSet is the same
@@ -279,13 +1641,15 @@ public class DataSet
 			return false;
 		}
 		
-		boolean dataAllSame = true;
-		for (int i = 0; i < this.sizeOfData();i++)
+		for (int i = 0; i < this.sizeOfData(); i++)
 		{
-			dataAllSame = (this.getDataAsArray()[i][0].equals(other.getDataAsArray()[i][0]) 
-					&& this.getDataAsArray()[i][1].equals(other.getDataAsArray()[i][1]));
+			if (Double.doubleToLongBits(this.getX(i)) != Double.doubleToLongBits(other.getX(i))
+					|| Double.doubleToLongBits(this.getY(i)) != Double.doubleToLongBits(other.getY(i)))
+			{
+				return false;
+			}
 		}
-		return dataAllSame;
+		return true;
 	}
 
 	/**
@@ -322,8 +1686,8 @@ public class DataSet
 		toReturn += "Data: ";
 		for (int i = 0; i < data.size(); i++)
 		{
-			toReturn += "(" + data.get(i).getX() + "," + 
-					data.get(i).getY() + ")\n";
+			toReturn += "(" + data.getX(i) + "," + 
+					data.getY(i) + ")\n";
 		}
 		return toReturn;
 	}
@@ -358,7 +1722,7 @@ public class DataSet
 		else {
 			this.title = title;
 		}
-		updateListeners();
+		fireChange(DataChangeEvent.Type.METADATA_CHANGED);
 	}
 	
 	/**
@@ -381,7 +1745,7 @@ public class DataSet
 		else {
 			this.xLabel = xLabel;
 		}
-		updateListeners();
+		fireChange(DataChangeEvent.Type.METADATA_CHANGED);
 	}
 	
 	/**
@@ -404,7 +1768,7 @@ public class DataSet
 		else {
 			this.yLabel = yLabel;
 		}
-		updateListeners();
+		fireChange(DataChangeEvent.Type.METADATA_CHANGED);
 	}
 	
 	/**
@@ -431,7 +1795,7 @@ public class DataSet
 		else {
 			this.xMax = xMax;
 		}
-		updateListeners();
+		fireChange(DataChangeEvent.Type.RANGE_CHANGED);
 	}
 	
 	/**
@@ -459,7 +1823,7 @@ public class DataSet
 		{
 			this.xMin = xMin;
 		}
-		updateListeners();
+		fireChange(DataChangeEvent.Type.RANGE_CHANGED);
 	}
 	
 	/**
@@ -488,7 +1852,7 @@ public class DataSet
 		{
 			this.yMax = yMax;
 		}
-		updateListeners();
+		fireChange(DataChangeEvent.Type.RANGE_CHANGED);
 	}
 	
 	/**
@@ -516,6 +1880,6 @@ public class DataSet
 		{
 			this.yMin = yMin;
 		}
-		updateListeners();
+		fireChange(DataChangeEvent.Type.RANGE_CHANGED);
 	}
 }
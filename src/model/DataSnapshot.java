@@ -0,0 +1,206 @@
+package model;
+
+/**
+ * A read-only view of the points of a DataSet at one version, along with the ranges
+ * the DataSet had when the snapshot was taken, so a view can draw from one consistent state.
+ *
+ * A plain DataSet is only meant to be used from one thread, so its snapshots read
+ * the live points and are only good until the DataSet next changes.
+ * A ConcurrentDataSet gives snapshots with their own copy of the points, which
+ * stay the same however much the DataSet changes afterwards.
+ * @author Julian Jocque
+ */
+public final class DataSnapshot
+{
+	private final PointStore points;
+	private final int size;
+	private final long version;
+	private final DataSet owner;
+	private final double xMin;
+	private final double xMax;
+	private final double yMin;
+	private final double yMax;
+
+	/**
+	 * Creates a snapshot over the given points, reading the ranges from the DataSet they belong to
+	 * @param points The points to read from
+	 * @param size How many points the snapshot holds
+	 * @param version The version of the DataSet the points came from
+	 * @param owner The DataSet the points came from
+	 */
+	DataSnapshot(PointStore points, int size, long version, DataSet owner)
+	{
+		this.points = points;
+		this.size = size;
+		this.version = version;
+		this.owner = owner;
+		xMin = rangeValue(owner.getXMin());
+		xMax = rangeValue(owner.getXMax());
+		yMin = rangeValue(owner.getYMin());
+		yMax = rangeValue(owner.getYMax());
+	}
+
+	/**
+	 * Creates a snapshot over points worked out from another snapshot, such as a downsampled
+	 * line, with the same version and ranges as that snapshot
+	 * @param points The points to read from
+	 * @param size How many points the snapshot holds
+	 * @param from The snapshot the points were worked out from
+	 */
+	DataSnapshot(PointStore points, int size, DataSnapshot from)
+	{
+		this.points = points;
+		this.size = size;
+		version = from.version;
+		owner = null;
+		xMin = from.xMin;
+		xMax = from.xMax;
+		yMin = from.yMin;
+		yMax = from.yMax;
+	}
+
+	/**
+	 * Gives how many points are in this snapshot
+	 * @return The number of points
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Getter for the X value of the point at the given index
+	 * @param index Index of the point, points are sorted by increasing X
+	 * @return The X value of that point
+	 */
+	public double getX(int index)
+	{
+		return points.getX(index);
+	}
+
+	/**
+	 * Getter for the Y value of the point at the given index
+	 * @param index Index of the point, points are sorted by increasing X
+	 * @return The Y value of that point
+	 */
+	public double getY(int index)
+	{
+		return points.getY(index);
+	}
+
+	/**
+	 * Gives every point to the given visitor in order of increasing X
+	 * @param visitor The visitor to give the points to
+	 */
+	public void forEach(PointVisitor visitor)
+	{
+		for (int i = 0; i < size; i++)
+		{
+			visitor.visit(points.getX(i), points.getY(i));
+		}
+	}
+
+	/**
+	 * Finds the points with X values from xLo to xHi, both included, see DataSet.indexRange
+	 * @param xLo The smallest X value to include
+	 * @param xHi The largest X value to include
+	 * @return The first index in the range and the index just past it
+	 */
+	public int[] indexRange(double xLo, double xHi)
+	{
+		int from = Math.min(points.lowerBound(xLo), size);
+		int to = Math.max(from, Math.min(points.upperBound(xHi), size));
+		return new int[] {from, to};
+	}
+
+	/**
+	 * Gives every point with an X value from xLo to xHi to the given visitor in order of increasing X
+	 * @param xLo The smallest X value to visit
+	 * @param xHi The largest X value to visit
+	 * @param visitor The visitor to give the points to
+	 */
+	public void forEachInXRange(double xLo, double xHi, PointVisitor visitor)
+	{
+		int[] range = indexRange(xLo, xHi);
+		for (int i = range[0]; i < range[1]; i++)
+		{
+			visitor.visit(points.getX(i), points.getY(i));
+		}
+	}
+
+	/**
+	 * Gives a summary of the points between two X values in buckets no wider than the given
+	 * width, see DataSet.levelOfDetail. The pyramid of the DataSet is only used while the DataSet
+	 * is still at this snapshot's version, otherwise the points of this snapshot between
+	 * the values are summarised, so the summary always matches the points of the snapshot.
+	 * @param maxBucketWidth The widest a bucket may be, usually the width of a pixel in X
+	 * @param xLo Smallest X value in view
+	 * @param xHi Largest X value in view
+	 * @return A level covering at least the X values in view, or null if there are no points
+	 * there or the view needs too many buckets to summarise
+	 */
+	public LodLevel levelOfDetail(double maxBucketWidth, double xLo, double xHi)
+	{
+		LodLevel level = owner == null ? null : owner.levelOfDetail(maxBucketWidth, version);
+		if (level != null || size == 0)
+		{
+			return level;
+		}
+		return LodPyramid.summarise(points, xLo, xHi, maxBucketWidth);
+	}
+
+	/**
+	 * Getter for the min value of X when this snapshot was taken
+	 * @return The min value of X
+	 */
+	public double getXMin()
+	{
+		return xMin;
+	}
+
+	/**
+	 * Getter for the max value of X when this snapshot was taken
+	 * @return The max value of X
+	 */
+	public double getXMax()
+	{
+		return xMax;
+	}
+
+	/**
+	 * Getter for the min value of Y when this snapshot was taken
+	 * @return The min value of Y
+	 */
+	public double getYMin()
+	{
+		return yMin;
+	}
+
+	/**
+	 * Getter for the max value of Y when this snapshot was taken
+	 * @return The max value of Y
+	 */
+	public double getYMax()
+	{
+		return yMax;
+	}
+
+	/**
+	 * Getter for the version of the DataSet this snapshot was taken at
+	 * @return The version, as given by DataSet.getVersion
+	 */
+	public long getVersion()
+	{
+		return version;
+	}
+
+	/**
+	 * Gives the value of a range of the DataSet, which is only unset while it is loading
+	 * @param value The value of the range, may be null
+	 * @return The value, or NaN if it is not set
+	 */
+	private static double rangeValue(Double value)
+	{
+		return value == null ? Double.NaN : value;
+	}
+}
@@ -0,0 +1,218 @@
+package model;
+
+/**
+ * Cuts the points of a DataSet down to what a line through them needs at a given width in pixels.
+ *
+ * M4 keeps the first, last, lowest and highest point of every pixel column, which draws
+ * exactly the same pixels as the full line. Largest-Triangle-Three-Buckets keeps two points
+ * per column, choosing whichever makes the largest triangle with its neighbours, which keeps
+ * the shape of the line but may miss single spikes.
+ *
+ * The last result is kept and handed back until the points, the X values shown,
+ * the number of columns or the mode change.
+ * @author Julian Jocque
+ */
+public class Downsampler
+{
+	/**
+	 * The ways points can be downsampled
+	 */
+	public enum Mode
+	{
+		/** Points are not downsampled */
+		NONE,
+		/** First, last, lowest and highest point per pixel column */
+		M4,
+		/** Largest-Triangle-Three-Buckets with two buckets per pixel column */
+		LTTB
+	}
+
+	private DataSnapshot cached;
+	private long cachedVersion;
+	private double cachedXLo;
+	private double cachedXHi;
+	private int cachedColumns;
+	private Mode cachedMode;
+
+	/**
+	 * Downsamples the points with X values from xLo to xHi for drawing in the given number
+	 * of pixel columns. The points either side of that range are kept as they are,
+	 * so lines leaving the range still point the right way.
+	 * @param points The points to downsample
+	 * @param xLo The X value at the left of the first column
+	 * @param xHi The X value at the right of the last column
+	 * @param columns How many pixel columns the X values are drawn across
+	 * @param mode How to downsample
+	 * @return The downsampled points, sorted by X, or the given points if mode is NONE
+	 */
+	public DataSnapshot downsample(DataSnapshot points, double xLo, double xHi, int columns, Mode mode)
+	{
+		if (mode == Mode.NONE || columns < 1 || !(xLo < xHi))
+		{
+			return points;
+		}
+		if (cached != null && cachedVersion == points.getVersion() && cachedXLo == xLo
+				&& cachedXHi == xHi && cachedColumns == columns && cachedMode == mode)
+		{
+			return cached;
+		}
+		int[] range = points.indexRange(xLo, xHi);
+		ColumnarPointStore kept = new ColumnarPointStore(4 * columns + 2);
+		if (range[0] > 0)
+		{
+			kept.insert(0, points.getX(range[0] - 1), points.getY(range[0] - 1));
+		}
+		if (mode == Mode.M4)
+		{
+			m4(points, range[0], range[1], xLo, xHi, columns, kept);
+		}
+		else
+		{
+			largestTriangles(points, range[0], range[1], 2 * columns, kept);
+		}
+		if (range[1] < points.size())
+		{
+			kept.insert(kept.size(), points.getX(range[1]), points.getY(range[1]));
+		}
+
+		cached = new DataSnapshot(kept, kept.size(), points);
+		cachedVersion = points.getVersion();
+		cachedXLo = xLo;
+		cachedXHi = xHi;
+		cachedColumns = columns;
+		cachedMode = mode;
+		return cached;
+	}
+
+	/**
+	 * Keeps the first, last, lowest and highest point of each column, in order of X
+	 * @param points The points to downsample
+	 * @param from Index of the first point to look at
+	 * @param to Index just past the last point to look at
+	 * @param xLo The X value at the left of the first column
+	 * @param xHi The X value at the right of the last column
+	 * @param columns How many columns there are
+	 * @param kept Where the kept points go
+	 */
+	private static void m4(DataSnapshot points, int from, int to, double xLo, double xHi,
+			int columns, PointStore kept)
+	{
+		double columnWidth = (xHi - xLo) / columns;
+		int start = from;
+		while (start < to)
+		{
+			int column = column(points.getX(start), xLo, columnWidth, columns);
+			int lowest = start;
+			int highest = start;
+			int end = start + 1;
+			while (end < to && column(points.getX(end), xLo, columnWidth, columns) == column)
+			{
+				if (points.getY(end) < points.getY(lowest))
+				{
+					lowest = end;
+				}
+				if (points.getY(end) > points.getY(highest))
+				{
+					highest = end;
+				}
+				end++;
+			}
+			keep(points, start, kept);
+			keep(points, Math.min(lowest, highest), kept);
+			keep(points, Math.max(lowest, highest), kept);
+			keep(points, end - 1, kept);
+			start = end;
+		}
+	}
+
+	/**
+	 * Keeps the given number of points with Largest-Triangle-Three-Buckets. The first and
+	 * last points are always kept and the rest are split into equal buckets by index. From each
+	 * bucket the point kept is the one making the largest triangle with the point kept from
+	 * the bucket before and the average of the bucket after.
+	 * @param points The points to downsample
+	 * @param from Index of the first point to look at
+	 * @param to Index just past the last point to look at
+	 * @param threshold How many points to keep
+	 * @param kept Where the kept points go
+	 */
+	private static void largestTriangles(DataSnapshot points, int from, int to, int threshold, PointStore kept)
+	{
+		int count = to - from;
+		if (count <= threshold || threshold < 3)
+		{
+			for (int i = from; i < to; i++)
+			{
+				keep(points, i, kept);
+			}
+			return;
+		}
+		double bucketSize = (count - 2) / (double)(threshold - 2);
+		int previous = from;
+		keep(points, previous, kept);
+		for (int bucket = 0; bucket < threshold - 2; bucket++)
+		{
+			int bucketStart = from + 1 + (int)(bucket * bucketSize);
+			int bucketEnd = from + 1 + (int)((bucket + 1) * bucketSize);
+			int nextEnd = Math.min(from + 1 + (int)((bucket + 2) * bucketSize), to);
+			double averageX = 0;
+			double averageY = 0;
+			for (int i = bucketEnd; i < nextEnd; i++)
+			{
+				averageX += points.getX(i);
+				averageY += points.getY(i);
+			}
+			averageX /= nextEnd - bucketEnd;
+			averageY /= nextEnd - bucketEnd;
+
+			double previousX = points.getX(previous);
+			double previousY = points.getY(previous);
+			double largestArea = -1;
+			int chosen = bucketStart;
+			for (int i = bucketStart; i < bucketEnd; i++)
+			{
+				double area = Math.abs((previousX - averageX) * (points.getY(i) - previousY)
+						- (previousX - points.getX(i)) * (averageY - previousY));
+				if (area > largestArea)
+				{
+					largestArea = area;
+					chosen = i;
+				}
+			}
+			keep(points, chosen, kept);
+			previous = chosen;
+		}
+		keep(points, to - 1, kept);
+	}
+
+	/**
+	 * Adds a point to the end of the kept points unless it was the last one kept
+	 * @param points The points being downsampled
+	 * @param index Index of the point to keep
+	 * @param kept Where the kept points go
+	 */
+	private static void keep(DataSnapshot points, int index, PointStore kept)
+	{
+		double x = points.getX(index);
+		double y = points.getY(index);
+		int last = kept.size() - 1;
+		if (last >= 0 && kept.getX(last) == x && kept.getY(last) == y)
+		{
+			return;
+		}
+		kept.insert(kept.size(), x, y);
+	}
+
+	/**
+	 * Gives the pixel column an X value is drawn in
+	 * @param x The X value
+	 * @param xLo The X value at the left of the first column
+	 * @param columnWidth How wide a column is in X
+	 * @param columns How many columns there are
+	 * @return The column, from 0 to columns - 1
+	 */
+	private static int column(double x, double xLo, double columnWidth, int columns)
+	{
+		return (int)Math.max(0, Math.min(columns - 1, Math.floor((x - xLo) / columnWidth)));
+	}
+}
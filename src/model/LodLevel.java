@@ -0,0 +1,150 @@
+package model;
+
+/**
+ * One level of a DataSet's level of detail pyramid, a summary of the points in
+ * equally wide buckets of X values.
+ *
+ * For each bucket it gives how many points fell in it, the smallest and largest Y
+ * among them, and the first and last of them in order of X. Drawing a line from the first
+ * point through the Y extremes to the last point looks the same as drawing every point
+ * once a bucket is no wider than a pixel. A level is a copy and does not change with the DataSet.
+ * @author Julian Jocque
+ */
+public final class LodLevel
+{
+	private final double start;
+	private final double bucketWidth;
+	private final int[] counts;
+	private final double[] minYs;
+	private final double[] maxYs;
+	private final double[] firstXs;
+	private final double[] firstYs;
+	private final double[] lastXs;
+	private final double[] lastYs;
+
+	/**
+	 * Creates a level from columns already copied for it
+	 */
+	LodLevel(double start, double bucketWidth, int[] counts, double[] minYs, double[] maxYs,
+			double[] firstXs, double[] firstYs, double[] lastXs, double[] lastYs)
+	{
+		this.start = start;
+		this.bucketWidth = bucketWidth;
+		this.counts = counts;
+		this.minYs = minYs;
+		this.maxYs = maxYs;
+		this.firstXs = firstXs;
+		this.firstYs = firstYs;
+		this.lastXs = lastXs;
+		this.lastYs = lastYs;
+	}
+
+	/**
+	 * Gives how many buckets this level has
+	 * @return The number of buckets
+	 */
+	public int size()
+	{
+		return counts.length;
+	}
+
+	/**
+	 * Getter for how wide each bucket is in X
+	 * @return The width of a bucket
+	 */
+	public double getBucketWidth()
+	{
+		return bucketWidth;
+	}
+
+	/**
+	 * Getter for the smallest X value the given bucket covers
+	 * @param bucket Index of the bucket
+	 * @return Where the bucket starts
+	 */
+	public double getBucketStart(int bucket)
+	{
+		return start + bucket * bucketWidth;
+	}
+
+	/**
+	 * Gives the bucket an X value falls in, values off either end give the end buckets
+	 * @param x The X value
+	 * @return Index of the bucket, from 0 to size() - 1
+	 */
+	public int bucketAt(double x)
+	{
+		double bucket = Math.floor((x - start) / bucketWidth);
+		return (int)Math.max(0, Math.min(counts.length - 1, bucket));
+	}
+
+	/**
+	 * Gives how many points fell in the given bucket
+	 * @param bucket Index of the bucket
+	 * @return The number of points, when 0 the other values of the bucket mean nothing
+	 */
+	public int getCount(int bucket)
+	{
+		return counts[bucket];
+	}
+
+	/**
+	 * Getter for the smallest Y value in the given bucket
+	 * @param bucket Index of the bucket
+	 * @return The smallest Y value
+	 */
+	public double getMinY(int bucket)
+	{
+		return minYs[bucket];
+	}
+
+	/**
+	 * Getter for the largest Y value in the given bucket
+	 * @param bucket Index of the bucket
+	 * @return The largest Y value
+	 */
+	public double getMaxY(int bucket)
+	{
+		return maxYs[bucket];
+	}
+
+	/**
+	 * Getter for the X value of the first point in the given bucket
+	 * @param bucket Index of the bucket
+	 * @return X value of the point with the smallest X
+	 */
+	public double getFirstX(int bucket)
+	{
+		return firstXs[bucket];
+	}
+
+	/**
+	 * Getter for the Y value of the first point in the given bucket
+	 * @param bucket Index of the bucket
+	 * @return Y value of the point with the smallest X
+	 */
+	public double getFirstY(int bucket)
+	{
+		return firstYs[bucket];
+	}
+
+	/**
+	 * Getter for the X value of the last point in the given bucket
+	 * @param bucket Index of the bucket
+	 * @return X value of the point with the largest X
+	 */
+	public double getLastX(int bucket)
+	{
+		return lastXs[bucket];
+	}
+
+	/**
+	 * Getter for the Y value of the last point in the given bucket
+	 * @param bucket Index of the bucket
+	 * @return Y value of the point with the largest X
+	 */
+	public double getLastY(int bucket)
+	{
+		return lastYs[bucket];
+	}
+}
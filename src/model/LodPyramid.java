@@ -0,0 +1,438 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A level of detail pyramid over the points of a DataSet.
+ *
+ * Level l splits the X values the points cover into 2^l equally wide buckets, from a single
+ * bucket up to 2^12 at the finest level. Each bucket keeps its point count, Y extremes and
+ * first and last points, and each bucket is the merge of the two below it.
+ *
+ * Adding a point updates one bucket per level in place. Removing one only marks its finest
+ * bucket dirty, dirty buckets are summarised again from the points the next time a level is
+ * asked for, along with their parents. A point past the end doubles the X values covered
+ * until it fits, which needs no points at all since each level just becomes the one above it,
+ * so a live plot growing to the right never has to rebuild. A point before the start cannot be
+ * fitted exactly that way, so the DataSet drops the pyramid and builds it again when next asked.
+ *
+ * The finest level is only 2^12 buckets over every X value, so a view zoomed in far enough
+ * needs narrower buckets than the pyramid has. For that, summarise makes a level over just
+ * the X values in view with one pass over the points there.
+ * @author Julian Jocque
+ */
+class LodPyramid
+{
+	private static final int FINEST_LEVEL = 12;
+	private static final int MAX_WINDOW_BUCKETS = 1 << 16;
+
+	private double start;
+	private double width;
+	private final int[][] counts;
+	private final double[][] minYs;
+	private final double[][] maxYs;
+	private final double[][] firstXs;
+	private final double[][] firstYs;
+	private final double[][] lastXs;
+	private final double[][] lastYs;
+	private boolean[] dirty;
+	private int[] dirtyBuckets;
+	private int dirtyCount;
+
+	/**
+	 * Builds a pyramid over every point in the given store with one pass
+	 * @param data The points, sorted by X
+	 * @return The new pyramid, or null if there are no points or they are not all finite
+	 */
+	static LodPyramid build(PointStore data)
+	{
+		int size = data.size();
+		if (size == 0)
+		{
+			return null;
+		}
+		double first = data.getX(0);
+		double width = data.getX(size - 1) - first;
+		if (Double.isInfinite(first) || Double.isNaN(width) || Double.isInfinite(width))
+		{
+			return null;
+		}
+		LodPyramid pyramid = new LodPyramid(first, width > 0 ? width : 1.0);
+		for (int i = 0; i < size; i++)
+		{
+			pyramid.include(FINEST_LEVEL, pyramid.bucket(FINEST_LEVEL, data.getX(i)), data.getX(i), data.getY(i));
+		}
+		for (int level = FINEST_LEVEL - 1; level >= 0; level--)
+		{
+			for (int bucket = 0; bucket < (1 << level); bucket++)
+			{
+				pyramid.mergeChildren(level, bucket);
+			}
+		}
+		return pyramid;
+	}
+
+	/**
+	 * Summarises the points between two X values in buckets of the given width, with one
+	 * pass over those points. Buckets are lined up on whole multiples of the width, so
+	 * summaries of overlapping windows put each point in a bucket with the same bounds.
+	 * @param data The points, sorted by X
+	 * @param xLo Smallest X value to summarise
+	 * @param xHi Largest X value to summarise
+	 * @param bucketWidth How wide each bucket is
+	 * @return The level, or null if there are no points between the values, or the window
+	 * is not finite or needs more than 2^16 buckets
+	 */
+	static LodLevel summarise(PointStore data, double xLo, double xHi, double bucketWidth)
+	{
+		double firstBucket = Math.floor(xLo / bucketWidth);
+		double buckets = Math.floor(xHi / bucketWidth) - firstBucket + 1;
+		if (!(buckets >= 1 && buckets <= MAX_WINDOW_BUCKETS) || Double.isInfinite(firstBucket))
+		{
+			return null;
+		}
+		int from = data.lowerBound(xLo);
+		int to = data.upperBound(xHi);
+		if (from >= to)
+		{
+			return null;
+		}
+		double start = firstBucket * bucketWidth;
+		LodPyramid window = new LodPyramid(start, bucketWidth * buckets, 0, (int)buckets);
+		for (int i = from; i < to; i++)
+		{
+			double x = data.getX(i);
+			double bucket = Math.floor((x - start) / bucketWidth);
+			window.include(0, (int)Math.max(0, Math.min(buckets - 1, bucket)), x, data.getY(i));
+		}
+		return window.copyLevel(0, bucketWidth);
+	}
+
+	/**
+	 * Makes an empty pyramid covering the given X values
+	 * @param start The smallest X value covered
+	 * @param width How far past start the X values covered go
+	 */
+	private LodPyramid(double start, double width)
+	{
+		this(start, width, FINEST_LEVEL, 0);
+	}
+
+	/**
+	 * Makes an empty pyramid covering the given X values with the given levels
+	 * @param start The smallest X value covered
+	 * @param width How far past start the X values covered go
+	 * @param finest The finest level, levels have 2^level buckets
+	 * @param topBuckets How many buckets the coarsest level has instead of one,
+	 * or 0 to keep one; only used for a pyramid of a single level
+	 */
+	private LodPyramid(double start, double width, int finest, int topBuckets)
+	{
+		this.start = start;
+		this.width = width;
+		counts = new int[finest + 1][];
+		minYs = new double[finest + 1][];
+		maxYs = new double[finest + 1][];
+		firstXs = new double[finest + 1][];
+		firstYs = new double[finest + 1][];
+		lastXs = new double[finest + 1][];
+		lastYs = new double[finest + 1][];
+		for (int level = 0; level <= finest; level++)
+		{
+			int buckets = (topBuckets > 0) ? topBuckets : 1 << level;
+			counts[level] = new int[buckets];
+			minYs[level] = new double[buckets];
+			maxYs[level] = new double[buckets];
+			firstXs[level] = new double[buckets];
+			firstYs[level] = new double[buckets];
+			lastXs[level] = new double[buckets];
+			lastYs[level] = new double[buckets];
+		}
+		dirty = new boolean[counts[finest].length];
+		dirtyBuckets = new int[16];
+		dirtyCount = 0;
+	}
+
+	/**
+	 * Counts a point that was just added to the DataSet
+	 * @param x X value of the point
+	 * @param y Y value of the point
+	 * @return false if the point falls before the start or cannot be covered,
+	 * in which case the pyramid should be dropped, else true
+	 */
+	boolean add(double x, double y)
+	{
+		if (Double.isInfinite(x) || Double.isNaN(x) || x < start)
+		{
+			return false;
+		}
+		while (x > start + width)
+		{
+			if (!doubleWidth())
+			{
+				return false;
+			}
+		}
+		for (int level = 0; level <= FINEST_LEVEL; level++)
+		{
+			include(level, bucket(level, x), x, y);
+		}
+		return true;
+	}
+
+	/**
+	 * Notes that a point was removed from the DataSet, its bucket is summarised again later
+	 * @param x X value of the point
+	 */
+	void remove(double x)
+	{
+		markDirty(bucket(FINEST_LEVEL, x));
+	}
+
+	/**
+	 * Gives the coarsest level whose buckets are no wider than the given width
+	 * @param maxBucketWidth The widest a bucket may be
+	 * @param data The points of the DataSet, used to summarise dirty buckets again
+	 * @return A copy of the level, or null if even the finest level is too coarse
+	 */
+	LodLevel level(double maxBucketWidth, PointStore data)
+	{
+		int level = 0;
+		while (level <= FINEST_LEVEL && width / (1 << level) > maxBucketWidth)
+		{
+			level++;
+		}
+		if (level > FINEST_LEVEL)
+		{
+			return null;
+		}
+		repair(data);
+		return copyLevel(level, width / (1 << level));
+	}
+
+	/**
+	 * Copies one level out of the pyramid
+	 * @param level The level to copy
+	 * @param bucketWidth How wide the buckets of the level are
+	 * @return The copy
+	 */
+	private LodLevel copyLevel(int level, double bucketWidth)
+	{
+		return new LodLevel(start, bucketWidth, Arrays.copyOf(counts[level], counts[level].length),
+				Arrays.copyOf(minYs[level], minYs[level].length), Arrays.copyOf(maxYs[level], maxYs[level].length),
+				Arrays.copyOf(firstXs[level], firstXs[level].length), Arrays.copyOf(firstYs[level], firstYs[level].length),
+				Arrays.copyOf(lastXs[level], lastXs[level].length), Arrays.copyOf(lastYs[level], lastYs[level].length));
+	}
+
+	/**
+	 * Summarises every dirty finest bucket again from the points, then merges their parents
+	 * @param data The points of the DataSet
+	 */
+	private void repair(PointStore data)
+	{
+		for (int i = 0; i < dirtyCount; i++)
+		{
+			int bucket = dirtyBuckets[i];
+			dirty[bucket] = false;
+			counts[FINEST_LEVEL][bucket] = 0;
+			int end = firstIndexFrom(data, bucket + 1);
+			for (int index = firstIndexFrom(data, bucket); index < end; index++)
+			{
+				include(FINEST_LEVEL, bucket, data.getX(index), data.getY(index));
+			}
+			for (int level = FINEST_LEVEL - 1; level >= 0; level--)
+			{
+				mergeChildren(level, bucket >> (FINEST_LEVEL - level));
+			}
+		}
+		dirtyCount = 0;
+	}
+
+	/**
+	 * Binary searches for the first point in the given finest bucket or any after it
+	 * @param data The points, sorted by X
+	 * @param bucket Index of a finest bucket, may be one past the last
+	 * @return Index of the first point in or after that bucket
+	 */
+	private int firstIndexFrom(PointStore data, int bucket)
+	{
+		int low = 0;
+		int high = data.size();
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (bucket(FINEST_LEVEL, data.getX(middle)) < bucket)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Doubles the X values covered past the end, so each level now holds what the level
+	 * above it did in its first half. Since the start stays put and halving a width is exact,
+	 * every X value maps to the same bucket it was summarised in.
+	 * Dirty finest buckets stay dirty in the bucket they merged into.
+	 * @return false if the width can no longer be doubled, else true
+	 */
+	private boolean doubleWidth()
+	{
+		if (Double.isInfinite(width * 2))
+		{
+			return false;
+		}
+		for (int level = FINEST_LEVEL; level >= 1; level--)
+		{
+			moveLevel(level - 1, level);
+		}
+		boolean[] oldDirty = dirty;
+		int[] oldDirtyBuckets = dirtyBuckets;
+		int oldDirtyCount = dirtyCount;
+		dirty = new boolean[oldDirty.length];
+		dirtyBuckets = new int[oldDirtyBuckets.length];
+		dirtyCount = 0;
+		for (int i = 0; i < oldDirtyCount; i++)
+		{
+			markDirty(oldDirtyBuckets[i] >> 1);
+		}
+		width *= 2;
+		return true;
+	}
+
+	/**
+	 * Copies every bucket of one level into the first half of the next finer level,
+	 * emptying the second half
+	 * @param from The level to copy
+	 * @param to The level to copy into, one finer than from
+	 */
+	private void moveLevel(int from, int to)
+	{
+		int buckets = 1 << from;
+		Arrays.fill(counts[to], 0);
+		System.arraycopy(counts[from], 0, counts[to], 0, buckets);
+		System.arraycopy(minYs[from], 0, minYs[to], 0, buckets);
+		System.arraycopy(maxYs[from], 0, maxYs[to], 0, buckets);
+		System.arraycopy(firstXs[from], 0, firstXs[to], 0, buckets);
+		System.arraycopy(firstYs[from], 0, firstYs[to], 0, buckets);
+		System.arraycopy(lastXs[from], 0, lastXs[to], 0, buckets);
+		System.arraycopy(lastYs[from], 0, lastYs[to], 0, buckets);
+	}
+
+	/**
+	 * Summarises a bucket again from the two buckets below it
+	 * @param level The level of the bucket, less than the finest
+	 * @param bucket Index of the bucket
+	 */
+	private void mergeChildren(int level, int bucket)
+	{
+		int left = 2 * bucket;
+		int right = left + 1;
+		int child = level + 1;
+		counts[level][bucket] = 0;
+		copyEnds(child, left, level, bucket);
+		copyEnds(child, right, level, bucket);
+	}
+
+	/**
+	 * Merges a child bucket into its parent, which holds the children to its left so far
+	 * @param childLevel The level of the child
+	 * @param child Index of the child
+	 * @param level The level of the parent
+	 * @param bucket Index of the parent
+	 */
+	private void copyEnds(int childLevel, int child, int level, int bucket)
+	{
+		int childCount = counts[childLevel][child];
+		if (childCount == 0)
+		{
+			return;
+		}
+		if (counts[level][bucket] == 0)
+		{
+			minYs[level][bucket] = minYs[childLevel][child];
+			maxYs[level][bucket] = maxYs[childLevel][child];
+			firstXs[level][bucket] = firstXs[childLevel][child];
+			firstYs[level][bucket] = firstYs[childLevel][child];
+		}
+		else
+		{
+			minYs[level][bucket] = Math.min(minYs[level][bucket], minYs[childLevel][child]);
+			maxYs[level][bucket] = Math.max(maxYs[level][bucket], maxYs[childLevel][child]);
+		}
+		lastXs[level][bucket] = lastXs[childLevel][child];
+		lastYs[level][bucket] = lastYs[childLevel][child];
+		counts[level][bucket] += childCount;
+	}
+
+	/**
+	 * Counts a point in a bucket. A point with an X value equal to the last point's
+	 * becomes the new last point, since DataSet puts new points after equal X values.
+	 * @param level The level of the bucket
+	 * @param bucket Index of the bucket
+	 * @param x X value of the point
+	 * @param y Y value of the point
+	 */
+	private void include(int level, int bucket, double x, double y)
+	{
+		if (counts[level][bucket] == 0)
+		{
+			minYs[level][bucket] = y;
+			maxYs[level][bucket] = y;
+			firstXs[level][bucket] = x;
+			firstYs[level][bucket] = y;
+			lastXs[level][bucket] = x;
+			lastYs[level][bucket] = y;
+		}
+		else
+		{
+			minYs[level][bucket] = Math.min(minYs[level][bucket], y);
+			maxYs[level][bucket] = Math.max(maxYs[level][bucket], y);
+			if (x < firstXs[level][bucket])
+			{
+				firstXs[level][bucket] = x;
+				firstYs[level][bucket] = y;
+			}
+			if (x >= lastXs[level][bucket])
+			{
+				lastXs[level][bucket] = x;
+				lastYs[level][bucket] = y;
+			}
+		}
+		counts[level][bucket]++;
+	}
+
+	/**
+	 * Marks a finest bucket as needing to be summarised again
+	 * @param bucket Index of the finest bucket
+	 */
+	private void markDirty(int bucket)
+	{
+		if (dirty[bucket])
+		{
+			return;
+		}
+		dirty[bucket] = true;
+		if (dirtyCount == dirtyBuckets.length)
+		{
+			dirtyBuckets = Arrays.copyOf(dirtyBuckets, dirtyCount * 2);
+		}
+		dirtyBuckets[dirtyCount++] = bucket;
+	}
+
+	/**
+	 * Gives the bucket of a level that an X value falls in, values off either end give the end buckets
+	 * @param level The level
+	 * @param x The X value
+	 * @return Index of the bucket
+	 */
+	private int bucket(int level, double x)
+	{
+		double bucket = Math.floor((x - start) / (width / (1 << level)));
+		return (int)Math.max(0, Math.min((1 << level) - 1, bucket));
+	}
+}
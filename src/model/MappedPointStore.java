@@ -0,0 +1,696 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A PointStore whose points live in a binary file mapped into memory, for DataSets bigger
+ * than the memory of the machine.
+ *
+ * The file is a 16 byte header, a magic number then the point count, followed by one
+ * 16 byte record per point holding X then Y as little endian doubles, sorted by X.
+ * The records are mapped in regions of 2^26 points, each only mapped the first time a point
+ * in it is read, so opening a file of any size reads only its header. After that the operating
+ * system pages records in as they are touched and keeps them in its page cache; binary searches
+ * and range queries only touch the pages they land on.
+ *
+ * Changes are written straight into the mapping and reach the disk when the system chooses,
+ * or on flush and close. The file grows by half of its size when it fills up.
+ *
+ * Frozen views for snapshots share the mapping rather than copying the file. Before a change
+ * overwrites a record a view can still see, the page of 2^16 records around it is saved
+ * on the heap for that view, so a view only ever costs the pages changed since it was made.
+ * @author Julian Jocque
+ */
+public class MappedPointStore extends PointStore
+{
+	private static final long MAGIC = 0x5350504F494E5453L;
+	private static final int HEADER_BYTES = 16;
+	private static final int RECORD_BYTES = 16;
+	private static final int REGION_SHIFT = 26;
+	private static final int REGION_MASK = (1 << REGION_SHIFT) - 1;
+	private static final int FIRST_CAPACITY = 1024;
+	private static final int CHUNK = 4096;
+	private static final int PAGE_SHIFT = 16;
+	private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+	private final File path;
+	private final boolean deleteOnClose;
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private MappedByteBuffer header;
+	private MappedByteBuffer[] regions;
+	private long capacity;
+	private int size;
+	private double[] chunk;
+	private List<WeakReference<FrozenView>> views;
+
+	/**
+	 * Opens the point file at the given path, making a new empty one if there is none.
+	 * Only the header is read, the points are paged in as they are used.
+	 * @param path Where the point file is
+	 * @throws IOException If the file cannot be opened or is not a point file
+	 */
+	public MappedPointStore(File path) throws IOException
+	{
+		this(path, false);
+	}
+
+	/**
+	 * Opens the point file at the given path, making a new empty one if there is none
+	 * @param path Where the point file is
+	 * @param deleteOnClose Whether to delete the file when the store is closed
+	 * @throws IOException If the file cannot be opened or is not a point file
+	 */
+	private MappedPointStore(File path, boolean deleteOnClose) throws IOException
+	{
+		this.path = path;
+		this.deleteOnClose = deleteOnClose;
+		file = new RandomAccessFile(path, "rw");
+		channel = file.getChannel();
+		try
+		{
+			boolean isNew = channel.size() == 0;
+			if (isNew)
+			{
+				file.setLength(HEADER_BYTES + (long)FIRST_CAPACITY * RECORD_BYTES);
+			}
+			else if (channel.size() < HEADER_BYTES)
+			{
+				throw new IOException(path + " is not a point file");
+			}
+			header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			capacity = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+			if (isNew)
+			{
+				header.putLong(0, MAGIC);
+				header.putLong(8, 0);
+			}
+			else if (header.getLong(0) != MAGIC)
+			{
+				throw new IOException(path + " is not a point file");
+			}
+			long count = header.getLong(8);
+			if (count < 0 || count > capacity || count > Integer.MAX_VALUE)
+			{
+				throw new IOException(path + " says it holds " + count + " points but has room for " + capacity);
+			}
+			size = (int)count;
+		}
+		catch (IOException e)
+		{
+			channel.close();
+			file.close();
+			throw e;
+		}
+		regions = new MappedByteBuffer[regionCount(capacity)];
+		chunk = new double[2 * CHUNK];
+		views = new ArrayList<WeakReference<FrozenView>>();
+	}
+
+	/**
+	 * Getter for where the point file is
+	 * @return The path of the point file
+	 */
+	public File getPath()
+	{
+		return path;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public double getX(int index)
+	{
+		checkIndex(index, size);
+		return region(index).getDouble((index & REGION_MASK) * RECORD_BYTES);
+	}
+
+	@Override
+	public double getY(int index)
+	{
+		checkIndex(index, size);
+		return region(index).getDouble((index & REGION_MASK) * RECORD_BYTES + 8);
+	}
+
+	@Override
+	public void insert(int index, double x, double y)
+	{
+		checkOpen();
+		checkIndex(index, size + 1);
+		ensureCapacity(size + 1L);
+		shift(index, index + 1, size - index);
+		put(index, x, y);
+		setSize(size + 1);
+	}
+
+	@Override
+	public void remove(int index)
+	{
+		checkIndex(index, size);
+		shift(index + 1, index, size - index - 1);
+		setSize(size - 1);
+	}
+
+	/**
+	 * Shifts the remaining points down in one pass
+	 */
+	@Override
+	public void removeFirst(int count)
+	{
+		checkIndex(count, size + 1);
+		shift(count, 0, size - count);
+		setSize(size - count);
+	}
+
+	/**
+	 * Only shifts the points between the two indices
+	 */
+	@Override
+	public void move(int from, int to, double x, double y)
+	{
+		checkIndex(from, size);
+		checkIndex(to, size);
+		if (from < to)
+		{
+			shift(from + 1, from, to - from);
+		}
+		else if (to < from)
+		{
+			shift(to, to + 1, from - to);
+		}
+		put(to, x, y);
+	}
+
+	@Override
+	public void clear()
+	{
+		setSize(0);
+	}
+
+	/**
+	 * Copies the points into a new point file in the temporary directory. The operating
+	 * system copies the file without the points passing through the heap, and the copy
+	 * deletes its file when it is closed, or when the program exits if it never is.
+	 */
+	@Override
+	public PointStore copy()
+	{
+		checkOpen();
+		try
+		{
+			File copyPath = File.createTempFile("points", ".spp");
+			copyPath.deleteOnExit();
+			RandomAccessFile copyFile = new RandomAccessFile(copyPath, "rw");
+			try
+			{
+				FileChannel target = copyFile.getChannel();
+				long length = HEADER_BYTES + (long)size * RECORD_BYTES;
+				long copied = 0;
+				while (copied < length)
+				{
+					copied += channel.transferTo(copied, length - copied, target);
+				}
+			}
+			finally
+			{
+				copyFile.close();
+			}
+			return new MappedPointStore(copyPath, true);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Gives a read only view of the points as they are now, which takes constant time
+	 * however many points there are. The view shares this store's mapping and later
+	 * changes save the pages they overwrite for it first, so it never sees them.
+	 * The view may be read from another thread while this store is changed.
+	 */
+	@Override
+	public PointStore frozenView()
+	{
+		checkOpen();
+		MappedByteBuffer[] mapped = new MappedByteBuffer[regionCount(size)];
+		for (int i = 0; i < mapped.length; i++)
+		{
+			mapped[i] = region(i << REGION_SHIFT);
+		}
+		FrozenView view = new FrozenView(mapped, size);
+		Iterator<WeakReference<FrozenView>> iterator = views.iterator();
+		while (iterator.hasNext())
+		{
+			if (iterator.next().get() == null)
+			{
+				iterator.remove();
+			}
+		}
+		views.add(new WeakReference<FrozenView>(view));
+		return view;
+	}
+
+	/**
+	 * Writes the given columns into the file, the arrays are not kept
+	 */
+	@Override
+	public void setAll(double[] xs, double[] ys, int count)
+	{
+		checkOpen();
+		setSize(0);
+		ensureCapacity(count);
+		for (int i = 0; i < count; i++)
+		{
+			put(i, xs[i], ys[i]);
+		}
+		setSize(count);
+	}
+
+	/**
+	 * Writes every change so far to the disk
+	 */
+	public void flush()
+	{
+		checkOpen();
+		header.force();
+		for (MappedByteBuffer region : regions)
+		{
+			if (region != null)
+			{
+				region.force();
+			}
+		}
+	}
+
+	/**
+	 * Writes every change to the disk and closes the file. The points stay in the file,
+	 * a new store can open it again, unless this store is a copy whose file is deleted.
+	 */
+	@Override
+	public void close()
+	{
+		if (channel == null)
+		{
+			return;
+		}
+		flush();
+		try
+		{
+			channel.close();
+			file.close();
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		finally
+		{
+			channel = null;
+			file = null;
+			header = null;
+			regions = new MappedByteBuffer[0];
+			size = 0;
+			if (deleteOnClose)
+			{
+				path.delete();
+			}
+		}
+	}
+
+	/**
+	 * The points are in the page cache rather than the heap
+	 */
+	@Override
+	public boolean isOffHeap()
+	{
+		return true;
+	}
+
+	/**
+	 * Writes a point into its record without checking the index
+	 * @param index Index of the record, less than the capacity
+	 * @param x X value of the point
+	 * @param y Y value of the point
+	 */
+	private void put(int index, double x, double y)
+	{
+		if (!views.isEmpty())
+		{
+			saveForViews(index);
+		}
+		MappedByteBuffer region = region(index);
+		int offset = (index & REGION_MASK) * RECORD_BYTES;
+		region.putDouble(offset, x);
+		region.putDouble(offset + 8, y);
+	}
+
+	/**
+	 * Saves the page holding the given record for every view that can still see it
+	 * and has not saved it yet, dropping views nobody holds any more
+	 * @param index Index of the record about to be overwritten
+	 */
+	private void saveForViews(int index)
+	{
+		Iterator<WeakReference<FrozenView>> iterator = views.iterator();
+		while (iterator.hasNext())
+		{
+			FrozenView view = iterator.next().get();
+			if (view == null)
+			{
+				iterator.remove();
+			}
+			else if (index < view.size)
+			{
+				view.savePage(index >>> PAGE_SHIFT);
+			}
+		}
+	}
+
+	/**
+	 * Moves count records from one index to another, through the copying area.
+	 * Copies from the end when moving up so that overlapping ranges are not overwritten early.
+	 * @param from Index of the first record to move
+	 * @param to Index the first record should end up at
+	 * @param count How many records to move
+	 */
+	private void shift(int from, int to, int count)
+	{
+		if (count <= 0 || from == to)
+		{
+			return;
+		}
+		int done = 0;
+		while (done < count)
+		{
+			int length = Math.min(CHUNK, count - done);
+			int offset = (to > from) ? count - done - length : done;
+			for (int i = 0; i < length; i++)
+			{
+				MappedByteBuffer region = region(from + offset + i);
+				int position = ((from + offset + i) & REGION_MASK) * RECORD_BYTES;
+				chunk[2 * i] = region.getDouble(position);
+				chunk[2 * i + 1] = region.getDouble(position + 8);
+			}
+			for (int i = 0; i < length; i++)
+			{
+				put(to + offset + i, chunk[2 * i], chunk[2 * i + 1]);
+			}
+			done += length;
+		}
+	}
+
+	/**
+	 * Gives the mapped region holding the given record, mapping it first if needed
+	 * @param index Index of the record
+	 * @return The region the record is in
+	 */
+	private MappedByteBuffer region(int index)
+	{
+		int region = index >>> REGION_SHIFT;
+		MappedByteBuffer mapped = regions[region];
+		if (mapped == null)
+		{
+			long first = (long)region << REGION_SHIFT;
+			long records = Math.min(1L << REGION_SHIFT, capacity - first);
+			try
+			{
+				mapped = channel.map(FileChannel.MapMode.READ_WRITE,
+						HEADER_BYTES + first * RECORD_BYTES, records * RECORD_BYTES);
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+			mapped.order(ByteOrder.LITTLE_ENDIAN);
+			regions[region] = mapped;
+		}
+		return mapped;
+	}
+
+	/**
+	 * Sets the number of points, in the header as well
+	 * @param newSize The new number of points
+	 */
+	private void setSize(int newSize)
+	{
+		size = newSize;
+		if (header != null)
+		{
+			header.putLong(8, newSize);
+		}
+	}
+
+	/**
+	 * Grows the file so that it holds at least the given number of points. The last region
+	 * is mapped again the next time it is used since it may now be longer.
+	 * @param needed The number of points the file must be able to hold
+	 * @throws IllegalStateException If more points are needed than a store can index
+	 */
+	private void ensureCapacity(long needed)
+	{
+		if (needed <= capacity)
+		{
+			return;
+		}
+		if (needed > Integer.MAX_VALUE)
+		{
+			throw new IllegalStateException("A mapped store holds at most " + Integer.MAX_VALUE + " points");
+		}
+		long newCapacity = Math.min(Integer.MAX_VALUE, Math.max(needed, Math.max(FIRST_CAPACITY, capacity + (capacity >> 1))));
+		try
+		{
+			file.setLength(HEADER_BYTES + newCapacity * RECORD_BYTES);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		MappedByteBuffer[] newRegions = new MappedByteBuffer[regionCount(newCapacity)];
+		System.arraycopy(regions, 0, newRegions, 0, regions.length);
+		if (regions.length > 0)
+		{
+			newRegions[regions.length - 1] = null;
+		}
+		regions = newRegions;
+		capacity = newCapacity;
+	}
+
+	/**
+	 * Works out how many regions are needed to map the given number of records
+	 * @param records How many records there are room for
+	 * @return The number of regions
+	 */
+	private static int regionCount(long records)
+	{
+		return (int)((records + REGION_MASK) >>> REGION_SHIFT);
+	}
+
+	/**
+	 * Checks that the store has not been closed
+	 * @throws IllegalStateException If it has
+	 */
+	private void checkOpen()
+	{
+		if (channel == null)
+		{
+			throw new IllegalStateException("Store is closed");
+		}
+	}
+
+	/**
+	 * Checks that the given index is at least 0 and less than the given bound
+	 * @param index The index to check
+	 * @param bound One past the largest allowed index
+	 */
+	private static void checkIndex(int index, int bound)
+	{
+		if (index < 0 || index >= bound)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index);
+		}
+	}
+
+	/**
+	 * A read only view of the points of a MappedPointStore as they were when it was made,
+	 * which throws UnsupportedOperationException if anything tries to change it.
+	 *
+	 * Records are read from the store's mapping until the store is about to overwrite
+	 * their page, which it first saves here. The file only ever grows at its end, so the
+	 * regions mapped when the view was made stay valid. Readers check
+	 * for a saved page and read optimistically, only taking the lock if the store saved
+	 * a page in the meantime.
+	 */
+	private static final class FrozenView extends PointStore
+	{
+		private final MappedByteBuffer[] regions;
+		private final ByteBuffer[] pages;
+		private final int size;
+		private final StampedLock lock;
+
+		/**
+		 * Makes a view of the first size records of the given regions
+		 * @param regions Every region holding one of the records, already mapped
+		 * @param size How many points the view holds
+		 */
+		FrozenView(MappedByteBuffer[] regions, int size)
+		{
+			this.regions = regions;
+			this.size = size;
+			pages = new ByteBuffer[(size + PAGE_MASK) >>> PAGE_SHIFT];
+			lock = new StampedLock();
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+
+		@Override
+		public double getX(int index)
+		{
+			return read(index, 0);
+		}
+
+		@Override
+		public double getY(int index)
+		{
+			return read(index, 8);
+		}
+
+		/**
+		 * Reads half of a record, from its saved page if the store has changed it since
+		 * @param index Index of the record
+		 * @param half 0 for X or 8 for Y
+		 * @return The value as it was when the view was made
+		 */
+		private double read(int index, int half)
+		{
+			checkIndex(index, size);
+			long stamp = lock.tryOptimisticRead();
+			double value = readUnlocked(index, half);
+			if (!lock.validate(stamp))
+			{
+				stamp = lock.readLock();
+				try
+				{
+					value = readUnlocked(index, half);
+				}
+				finally
+				{
+					lock.unlockRead(stamp);
+				}
+			}
+			return value;
+		}
+
+		/**
+		 * Reads half of a record without checking whether a page is being saved
+		 * @param index Index of the record
+		 * @param half 0 for X or 8 for Y
+		 * @return The value, which may be wrong if a page was saved meanwhile
+		 */
+		private double readUnlocked(int index, int half)
+		{
+			ByteBuffer page = pages[index >>> PAGE_SHIFT];
+			if (page != null)
+			{
+				return page.getDouble((index & PAGE_MASK) * RECORD_BYTES + half);
+			}
+			return regions[index >>> REGION_SHIFT].getDouble((index & REGION_MASK) * RECORD_BYTES + half);
+		}
+
+		/**
+		 * Copies a page out of the mapping onto the heap unless it is saved already.
+		 * Only called by the store, just before it overwrites a record in the page.
+		 * @param page Index of the page
+		 */
+		void savePage(int page)
+		{
+			if (pages[page] != null)
+			{
+				return;
+			}
+			int first = page << PAGE_SHIFT;
+			int records = Math.min(PAGE_MASK + 1, size - first);
+			ByteBuffer source = regions[first >>> REGION_SHIFT].duplicate();
+			int position = (first & REGION_MASK) * RECORD_BYTES;
+			source.limit(position + records * RECORD_BYTES);
+			source.position(position);
+			ByteBuffer saved = ByteBuffer.allocate(records * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			saved.put(source);
+			long stamp = lock.writeLock();
+			pages[page] = saved;
+			lock.unlockWrite(stamp);
+		}
+
+		@Override
+		public void insert(int index, double x, double y)
+		{
+			throw new UnsupportedOperationException("A frozen view of a mapped store is read only");
+		}
+
+		@Override
+		public void remove(int index)
+		{
+			throw new UnsupportedOperationException("A frozen view of a mapped store is read only");
+		}
+
+		@Override
+		public void removeFirst(int count)
+		{
+			throw new UnsupportedOperationException("A frozen view of a mapped store is read only");
+		}
+
+		@Override
+		public void move(int from, int to, double x, double y)
+		{
+			throw new UnsupportedOperationException("A frozen view of a mapped store is read only");
+		}
+
+		@Override
+		public void clear()
+		{
+			throw new UnsupportedOperationException("A frozen view of a mapped store is read only");
+		}
+
+		@Override
+		public void setAll(double[] xs, double[] ys, int count)
+		{
+			throw new UnsupportedOperationException("A frozen view of a mapped store is read only");
+		}
+
+		/**
+		 * A view never changes, so it is its own frozen view
+		 */
+		@Override
+		public PointStore frozenView()
+		{
+			return this;
+		}
+
+		@Override
+		public boolean isOffHeap()
+		{
+			return true;
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the k closest points offered so far, closest first, for nearest point searches.
+ * Points are kept interleaved as x, y in a primitive array along with their distances.
+ * @author Julian Jocque
+ */
+final class NearestPoints
+{
+	private final double[] found;
+	private final double[] distances;
+	private int count;
+
+	/**
+	 * Makes an empty set of closest points
+	 * @param wanted How many points to keep, at least one
+	 */
+	NearestPoints(int wanted)
+	{
+		found = new double[2 * wanted];
+		distances = new double[wanted];
+		count = 0;
+	}
+
+	/**
+	 * Checks whether as many points as wanted have been kept
+	 * @return true if there are k points
+	 */
+	boolean isFull()
+	{
+		return count == distances.length;
+	}
+
+	/**
+	 * Gives the distance a point must beat to be kept
+	 * @return The squared distance of the k-th closest point, or infinity if there are fewer
+	 */
+	double worstDistance()
+	{
+		return isFull() ? distances[count - 1] : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Keeps the given point if it is among the k closest so far
+	 * @param x X value of the point
+	 * @param y Y value of the point
+	 * @param distance Squared distance of the point from the position searched around
+	 */
+	void offer(double x, double y, double distance)
+	{
+		if (isFull() && distance >= distances[count - 1])
+		{
+			return;
+		}
+		int at = Math.min(count, distances.length - 1);
+		while (at > 0 && distances[at - 1] > distance)
+		{
+			distances[at] = distances[at - 1];
+			found[2 * at] = found[2 * (at - 1)];
+			found[2 * at + 1] = found[2 * (at - 1) + 1];
+			at--;
+		}
+		distances[at] = distance;
+		found[2 * at] = x;
+		found[2 * at + 1] = y;
+		count = Math.min(count + 1, distances.length);
+	}
+
+	/**
+	 * Gives the points kept
+	 * @return The points interleaved as x, y, closest first
+	 */
+	double[] toArray()
+	{
+		return isFull() ? found : Arrays.copyOf(found, 2 * count);
+	}
+}
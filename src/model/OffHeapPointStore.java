@@ -0,0 +1,288 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+/**
+ * A PointStore that keeps its points outside the Java heap, for DataSets of hundreds
+ * of millions of points. X and Y are kept as two columns of doubles in direct buffers,
+ * so the heap holds only the two buffer objects and a small copying area however many
+ * points there are, and the garbage collector never has to look at them.
+ *
+ * A column holds at most Integer.MAX_VALUE / 8 points, since a direct buffer is addressed
+ * by an int number of bytes. The columns grow by half of their size when they fill up.
+ * Once closed the store is empty and may not be used again; the memory goes back to the
+ * system when the buffers are collected.
+ * @author Julian Jocque
+ */
+public class OffHeapPointStore extends PointStore
+{
+	private static final int DEFAULT_CAPACITY = 1024;
+	private static final int MAX_CAPACITY = Integer.MAX_VALUE / 8;
+	private static final int CHUNK = 8192;
+
+	private DoubleBuffer xs;
+	private DoubleBuffer ys;
+	private double[] chunk;
+	private int size;
+
+	/**
+	 * Default constructor, makes an empty store with room for a few points
+	 */
+	public OffHeapPointStore()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Makes an empty store with room for the given number of points
+	 * @param capacity How many points fit before the columns have to grow
+	 * @throws IllegalArgumentException If the capacity is more than a column can hold
+	 */
+	public OffHeapPointStore(int capacity)
+	{
+		if (capacity > MAX_CAPACITY)
+		{
+			throw new IllegalArgumentException("Capacity " + capacity + " is more than " + MAX_CAPACITY);
+		}
+		xs = allocate(Math.max(capacity, 1));
+		ys = allocate(Math.max(capacity, 1));
+		chunk = new double[CHUNK];
+		size = 0;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public double getX(int index)
+	{
+		checkIndex(index, size);
+		return xs.get(index);
+	}
+
+	@Override
+	public double getY(int index)
+	{
+		checkIndex(index, size);
+		return ys.get(index);
+	}
+
+	@Override
+	public void insert(int index, double x, double y)
+	{
+		checkOpen();
+		checkIndex(index, size + 1);
+		ensureCapacity(size + 1);
+		shift(xs, index, index + 1, size - index);
+		shift(ys, index, index + 1, size - index);
+		xs.put(index, x);
+		ys.put(index, y);
+		size++;
+	}
+
+	@Override
+	public void remove(int index)
+	{
+		checkIndex(index, size);
+		shift(xs, index + 1, index, size - index - 1);
+		shift(ys, index + 1, index, size - index - 1);
+		size--;
+	}
+
+	/**
+	 * Shifts the remaining points down in one pass
+	 */
+	@Override
+	public void removeFirst(int count)
+	{
+		checkIndex(count, size + 1);
+		shift(xs, count, 0, size - count);
+		shift(ys, count, 0, size - count);
+		size -= count;
+	}
+
+	/**
+	 * Only shifts the points between the two indices
+	 */
+	@Override
+	public void move(int from, int to, double x, double y)
+	{
+		checkIndex(from, size);
+		checkIndex(to, size);
+		if (from < to)
+		{
+			shift(xs, from + 1, from, to - from);
+			shift(ys, from + 1, from, to - from);
+		}
+		else if (to < from)
+		{
+			shift(xs, to, to + 1, from - to);
+			shift(ys, to, to + 1, from - to);
+		}
+		xs.put(to, x);
+		ys.put(to, y);
+	}
+
+	@Override
+	public void clear()
+	{
+		size = 0;
+	}
+
+	/**
+	 * Copies the points into a new off heap store, so copies do not use the heap either
+	 */
+	@Override
+	public PointStore copy()
+	{
+		checkOpen();
+		OffHeapPointStore copy = new OffHeapPointStore(size);
+		copyColumn(xs, copy.xs, size);
+		copyColumn(ys, copy.ys, size);
+		copy.size = size;
+		return copy;
+	}
+
+	/**
+	 * Copies the given columns into the buffers, the arrays are not kept
+	 */
+	@Override
+	public void setAll(double[] xs, double[] ys, int count)
+	{
+		checkOpen();
+		size = 0;
+		ensureCapacity(count);
+		this.xs.clear();
+		this.xs.put(xs, 0, count);
+		this.ys.clear();
+		this.ys.put(ys, 0, count);
+		size = count;
+	}
+
+	/**
+	 * Gives the buffers up, after which the store is empty and may not take new points.
+	 * Java 8 has no supported way to free a direct buffer, so the memory only goes back
+	 * to the system once the garbage collector collects the buffers. Code closing many
+	 * large stores in a row can call System.gc to hand it back sooner.
+	 */
+	@Override
+	public void close()
+	{
+		xs = null;
+		ys = null;
+		chunk = null;
+		size = 0;
+	}
+
+	@Override
+	public boolean isOffHeap()
+	{
+		return true;
+	}
+
+	/**
+	 * Moves count doubles of a column from one index to another, through the copying area.
+	 * Copies from the end when moving up so that overlapping ranges are not overwritten early.
+	 * @param column The column to shift
+	 * @param from Index of the first double to move
+	 * @param to Index the first double should end up at
+	 * @param count How many doubles to move
+	 */
+	private void shift(DoubleBuffer column, int from, int to, int count)
+	{
+		if (count <= 0 || from == to)
+		{
+			return;
+		}
+		int done = 0;
+		while (done < count)
+		{
+			int length = Math.min(CHUNK, count - done);
+			int offset = (to > from) ? count - done - length : done;
+			column.position(from + offset);
+			column.get(chunk, 0, length);
+			column.position(to + offset);
+			column.put(chunk, 0, length);
+			done += length;
+		}
+	}
+
+	/**
+	 * Copies the first count doubles of one column into the start of another
+	 * @param source The column to copy from
+	 * @param target The column to copy into, with room for count doubles
+	 * @param count How many doubles to copy
+	 */
+	private static void copyColumn(DoubleBuffer source, DoubleBuffer target, int count)
+	{
+		DoubleBuffer part = source.duplicate();
+		part.position(0);
+		part.limit(count);
+		target.clear();
+		target.put(part);
+	}
+
+	/**
+	 * Grows the columns so that they hold at least the given number of points
+	 * @param needed The number of points the columns must be able to hold
+	 * @throws IllegalStateException If more points are needed than a column can hold
+	 */
+	private void ensureCapacity(int needed)
+	{
+		if (needed > xs.capacity())
+		{
+			if (needed > MAX_CAPACITY || needed < 0)
+			{
+				throw new IllegalStateException("An off heap store holds at most " + MAX_CAPACITY + " points");
+			}
+			int newCapacity = (int)Math.min(MAX_CAPACITY,
+					Math.max(needed, xs.capacity() + (long)(xs.capacity() >> 1)));
+			DoubleBuffer newXs = allocate(newCapacity);
+			DoubleBuffer newYs = allocate(newCapacity);
+			copyColumn(xs, newXs, size);
+			copyColumn(ys, newYs, size);
+			xs = newXs;
+			ys = newYs;
+		}
+	}
+
+	/**
+	 * Makes a column of doubles outside the heap, in the machine's own byte order
+	 * @param capacity How many doubles the column holds
+	 * @return The new column
+	 */
+	private static DoubleBuffer allocate(int capacity)
+	{
+		return ByteBuffer.allocateDirect(capacity * 8).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+	}
+
+	/**
+	 * Checks that the store has not been closed
+	 * @throws IllegalStateException If it has
+	 */
+	private void checkOpen()
+	{
+		if (xs == null)
+		{
+			throw new IllegalStateException("Store is closed");
+		}
+	}
+
+	/**
+	 * Checks that the given index is at least 0 and less than the given bound
+	 * @param index The index to check
+	 * @param bound One past the largest allowed index
+	 */
+	private static void checkIndex(int index, int bound)
+	{
+		if (index < 0 || index >= bound)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index);
+		}
+	}
+}
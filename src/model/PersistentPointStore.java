@@ -0,0 +1,523 @@
+package model;
+
+/**
+ * A PointStore whose versions share structure, so copying it takes constant time.
+ *
+ * Points are kept in a tree of small chunks: leaves hold up to 64 points in two primitive
+ * columns and branches hold up to 32 children along with where each child ends. Nodes are
+ * never changed once made. An edit copies the leaf it lands in and the branches on the path
+ * down to it, which is O(log n) small nodes, and every other node is shared with the version
+ * before. Copies and snapshots just share the root, and an old version stays valid however
+ * much the store changes afterwards, which is what DataSet's undo and redo are built on.
+ *
+ * Reading a point walks down from the root, except that the leaf found last is remembered
+ * so reading points in order stays cheap.
+ * @author Julian Jocque
+ */
+public class PersistentPointStore extends PointStore
+{
+	private static final int LEAF_SIZE = 64;
+	private static final int BRANCH_SIZE = 32;
+	private static final Leaf EMPTY = new Leaf(new double[0], new double[0]);
+
+	private Node root;
+	private Cursor cursor;
+
+	/**
+	 * Default constructor, makes an empty store
+	 */
+	public PersistentPointStore()
+	{
+		this(EMPTY);
+	}
+
+	/**
+	 * Makes a store over the given tree
+	 * @param root The root of the tree
+	 */
+	private PersistentPointStore(Node root)
+	{
+		this.root = root;
+	}
+
+	@Override
+	public int size()
+	{
+		return root.size();
+	}
+
+	@Override
+	public double getX(int index)
+	{
+		Cursor found = find(index);
+		return found.leaf.xs[index - found.start];
+	}
+
+	@Override
+	public double getY(int index)
+	{
+		Cursor found = find(index);
+		return found.leaf.ys[index - found.start];
+	}
+
+	@Override
+	public void insert(int index, double x, double y)
+	{
+		checkIndex(index, size() + 1);
+		Node[] result = root.insert(index, x, y);
+		setRoot(result.length == 1 ? result[0] : Branch.of(result, 0, result.length));
+	}
+
+	@Override
+	public void remove(int index)
+	{
+		checkIndex(index, size());
+		setRoot(root.remove(index));
+	}
+
+	/**
+	 * Drops whole subtrees from the front, only copying the path to the first point kept
+	 */
+	@Override
+	public void removeFirst(int count)
+	{
+		checkIndex(count, size() + 1);
+		setRoot(root.removeFirst(count));
+	}
+
+	/**
+	 * Sets the point in place when it stays at the same index
+	 */
+	@Override
+	public void move(int from, int to, double x, double y)
+	{
+		if (from == to)
+		{
+			checkIndex(from, size());
+			setRoot(root.set(from, x, y));
+		}
+		else
+		{
+			super.move(from, to, x, y);
+		}
+	}
+
+	@Override
+	public void clear()
+	{
+		setRoot(EMPTY);
+	}
+
+	/**
+	 * Shares the tree, so this takes constant time whatever the size
+	 */
+	@Override
+	public PointStore copy()
+	{
+		return new PersistentPointStore(root);
+	}
+
+	/**
+	 * Builds the tree bottom up from the given columns, leaving room in each leaf
+	 * so that the first inserts do not split. The arrays are not kept.
+	 */
+	@Override
+	public void setAll(double[] xs, double[] ys, int count)
+	{
+		int perLeaf = LEAF_SIZE * 3 / 4;
+		Node[] level = new Node[(count + perLeaf - 1) / perLeaf];
+		for (int i = 0; i < level.length; i++)
+		{
+			int from = i * perLeaf;
+			int length = Math.min(perLeaf, count - from);
+			double[] leafXs = new double[length];
+			double[] leafYs = new double[length];
+			System.arraycopy(xs, from, leafXs, 0, length);
+			System.arraycopy(ys, from, leafYs, 0, length);
+			level[i] = new Leaf(leafXs, leafYs);
+		}
+		int perBranch = BRANCH_SIZE * 3 / 4;
+		while (level.length > 1)
+		{
+			Node[] parents = new Node[(level.length + perBranch - 1) / perBranch];
+			for (int i = 0; i < parents.length; i++)
+			{
+				int from = i * perBranch;
+				parents[i] = Branch.of(level, from, Math.min(level.length, from + perBranch));
+			}
+			level = parents;
+		}
+		setRoot(level.length == 0 ? EMPTY : level[0]);
+	}
+
+	@Override
+	public boolean isPersistent()
+	{
+		return true;
+	}
+
+	/**
+	 * Replaces the tree, collapsing branches left with a single child
+	 * @param newRoot The new root
+	 */
+	private void setRoot(Node newRoot)
+	{
+		while (newRoot instanceof Branch && ((Branch)newRoot).children.length == 1)
+		{
+			newRoot = ((Branch)newRoot).children[0];
+		}
+		root = newRoot;
+		cursor = null;
+	}
+
+	/**
+	 * Finds the leaf holding the given index, trying the one found last first
+	 * @param index Index of a point
+	 * @return The leaf and the index of its first point
+	 */
+	private Cursor find(int index)
+	{
+		checkIndex(index, size());
+		Cursor last = cursor;
+		if (last != null && index >= last.start && index < last.start + last.leaf.xs.length)
+		{
+			return last;
+		}
+		Node node = root;
+		int start = 0;
+		while (node instanceof Branch)
+		{
+			Branch branch = (Branch)node;
+			int child = branch.childHolding(index - start);
+			start += branch.startOf(child);
+			node = branch.children[child];
+		}
+		Cursor found = new Cursor((Leaf)node, start);
+		cursor = found;
+		return found;
+	}
+
+	/**
+	 * Checks that the given index is at least 0 and less than the given bound
+	 * @param index The index to check
+	 * @param bound One past the largest allowed index
+	 */
+	private static void checkIndex(int index, int bound)
+	{
+		if (index < 0 || index >= bound)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index);
+		}
+	}
+
+	/**
+	 * A leaf found by index along with where it starts. Never changed once made,
+	 * so threads reading the same version may share it.
+	 */
+	private static final class Cursor
+	{
+		private final Leaf leaf;
+		private final int start;
+
+		private Cursor(Leaf leaf, int start)
+		{
+			this.leaf = leaf;
+			this.start = start;
+		}
+	}
+
+	/**
+	 * A node of the tree. Every edit gives back new nodes and leaves this one as it was.
+	 */
+	private abstract static class Node
+	{
+		/**
+		 * Gives how many points are under this node
+		 * @return The number of points
+		 */
+		abstract int size();
+
+		/**
+		 * Inserts a point under this node
+		 * @return The new node, or two nodes if it had to split
+		 */
+		abstract Node[] insert(int index, double x, double y);
+
+		/**
+		 * Removes a point from under this node
+		 * @return The new node, which may be empty
+		 */
+		abstract Node remove(int index);
+
+		/**
+		 * Removes the given number of points from the front of this node
+		 * @return The new node, which may be empty
+		 */
+		abstract Node removeFirst(int count);
+
+		/**
+		 * Gives a point under this node new values
+		 * @return The new node
+		 */
+		abstract Node set(int index, double x, double y);
+	}
+
+	/**
+	 * A leaf, holding its points in two columns exactly as long as the number of points
+	 */
+	private static final class Leaf extends Node
+	{
+		private final double[] xs;
+		private final double[] ys;
+
+		private Leaf(double[] xs, double[] ys)
+		{
+			this.xs = xs;
+			this.ys = ys;
+		}
+
+		@Override
+		int size()
+		{
+			return xs.length;
+		}
+
+		@Override
+		Node[] insert(int index, double x, double y)
+		{
+			int size = xs.length;
+			double[] newXs = new double[size + 1];
+			double[] newYs = new double[size + 1];
+			System.arraycopy(xs, 0, newXs, 0, index);
+			System.arraycopy(ys, 0, newYs, 0, index);
+			newXs[index] = x;
+			newYs[index] = y;
+			System.arraycopy(xs, index, newXs, index + 1, size - index);
+			System.arraycopy(ys, index, newYs, index + 1, size - index);
+			if (size < LEAF_SIZE)
+			{
+				return new Node[] {new Leaf(newXs, newYs)};
+			}
+			return new Node[] {slice(newXs, newYs, 0, (size + 1) / 2), slice(newXs, newYs, (size + 1) / 2, size + 1)};
+		}
+
+		@Override
+		Node remove(int index)
+		{
+			return removeRange(index, index + 1);
+		}
+
+		@Override
+		Node removeFirst(int count)
+		{
+			return removeRange(0, count);
+		}
+
+		@Override
+		Node set(int index, double x, double y)
+		{
+			double[] newXs = xs.clone();
+			double[] newYs = ys.clone();
+			newXs[index] = x;
+			newYs[index] = y;
+			return new Leaf(newXs, newYs);
+		}
+
+		/**
+		 * Makes a leaf without the points from one index up to another
+		 * @param from Index of the first point to leave out
+		 * @param to Index just past the last point to leave out
+		 * @return The new leaf
+		 */
+		private Leaf removeRange(int from, int to)
+		{
+			int size = xs.length - (to - from);
+			double[] newXs = new double[size];
+			double[] newYs = new double[size];
+			System.arraycopy(xs, 0, newXs, 0, from);
+			System.arraycopy(ys, 0, newYs, 0, from);
+			System.arraycopy(xs, to, newXs, from, xs.length - to);
+			System.arraycopy(ys, to, newYs, from, ys.length - to);
+			return new Leaf(newXs, newYs);
+		}
+
+		/**
+		 * Makes a leaf from part of the given columns
+		 * @return The new leaf
+		 */
+		private static Leaf slice(double[] xs, double[] ys, int from, int to)
+		{
+			double[] partXs = new double[to - from];
+			double[] partYs = new double[to - from];
+			System.arraycopy(xs, from, partXs, 0, to - from);
+			System.arraycopy(ys, from, partYs, 0, to - from);
+			return new Leaf(partXs, partYs);
+		}
+
+		/**
+		 * Joins two leaves into one
+		 * @return The joined leaf
+		 */
+		private static Leaf join(Leaf left, Leaf right)
+		{
+			double[] joinedXs = new double[left.xs.length + right.xs.length];
+			double[] joinedYs = new double[joinedXs.length];
+			System.arraycopy(left.xs, 0, joinedXs, 0, left.xs.length);
+			System.arraycopy(left.ys, 0, joinedYs, 0, left.ys.length);
+			System.arraycopy(right.xs, 0, joinedXs, left.xs.length, right.xs.length);
+			System.arraycopy(right.ys, 0, joinedYs, left.ys.length, right.ys.length);
+			return new Leaf(joinedXs, joinedYs);
+		}
+	}
+
+	/**
+	 * A branch, holding its children and the index just past each child's last point
+	 */
+	private static final class Branch extends Node
+	{
+		private final Node[] children;
+		private final int[] ends;
+
+		private Branch(Node[] children)
+		{
+			this.children = children;
+			ends = new int[children.length];
+			int end = 0;
+			for (int i = 0; i < children.length; i++)
+			{
+				end += children[i].size();
+				ends[i] = end;
+			}
+		}
+
+		/**
+		 * Makes a branch over part of the given nodes
+		 * @return The new branch
+		 */
+		private static Branch of(Node[] nodes, int from, int to)
+		{
+			Node[] children = new Node[to - from];
+			System.arraycopy(nodes, from, children, 0, to - from);
+			return new Branch(children);
+		}
+
+		@Override
+		int size()
+		{
+			return ends[ends.length - 1];
+		}
+
+		@Override
+		Node[] insert(int index, double x, double y)
+		{
+			int child = childHolding(Math.max(index - 1, 0));
+			Node[] replaced = children[child].insert(index - startOf(child), x, y);
+			Node[] newChildren = new Node[children.length - 1 + replaced.length];
+			System.arraycopy(children, 0, newChildren, 0, child);
+			System.arraycopy(replaced, 0, newChildren, child, replaced.length);
+			System.arraycopy(children, child + 1, newChildren, child + replaced.length, children.length - child - 1);
+			if (newChildren.length <= BRANCH_SIZE)
+			{
+				return new Node[] {new Branch(newChildren)};
+			}
+			int half = newChildren.length / 2;
+			return new Node[] {of(newChildren, 0, half), of(newChildren, half, newChildren.length)};
+		}
+
+		@Override
+		Node remove(int index)
+		{
+			int child = childHolding(index);
+			Node changed = children[child].remove(index - startOf(child));
+			if (changed.size() == 0)
+			{
+				if (children.length == 1)
+				{
+					return EMPTY;
+				}
+				Node[] newChildren = new Node[children.length - 1];
+				System.arraycopy(children, 0, newChildren, 0, child);
+				System.arraycopy(children, child + 1, newChildren, child, children.length - child - 1);
+				return new Branch(newChildren);
+			}
+			Node[] newChildren = children.clone();
+			newChildren[child] = changed;
+			if (changed instanceof Leaf && changed.size() < LEAF_SIZE / 4)
+			{
+				int neighbour = (child + 1 < children.length) ? child + 1 : child - 1;
+				if (neighbour >= 0 && newChildren[neighbour].size() + changed.size() <= LEAF_SIZE)
+				{
+					int left = Math.min(child, neighbour);
+					Node[] merged = new Node[newChildren.length - 1];
+					System.arraycopy(newChildren, 0, merged, 0, left);
+					merged[left] = Leaf.join((Leaf)newChildren[left], (Leaf)newChildren[left + 1]);
+					System.arraycopy(newChildren, left + 2, merged, left + 1, newChildren.length - left - 2);
+					newChildren = merged;
+				}
+			}
+			return new Branch(newChildren);
+		}
+
+		@Override
+		Node removeFirst(int count)
+		{
+			if (count == 0)
+			{
+				return this;
+			}
+			if (count == size())
+			{
+				return EMPTY;
+			}
+			int child = childHolding(count);
+			Node changed = children[child].removeFirst(count - startOf(child));
+			Node[] newChildren = new Node[children.length - child];
+			newChildren[0] = changed;
+			System.arraycopy(children, child + 1, newChildren, 1, children.length - child - 1);
+			return new Branch(newChildren);
+		}
+
+		@Override
+		Node set(int index, double x, double y)
+		{
+			int child = childHolding(index);
+			Node[] newChildren = children.clone();
+			newChildren[child] = children[child].set(index - startOf(child), x, y);
+			return new Branch(newChildren);
+		}
+
+		/**
+		 * Binary searches for the child holding the point at the given index
+		 * @param index Index of the point within this branch
+		 * @return Index of the child
+		 */
+		private int childHolding(int index)
+		{
+			int low = 0;
+			int high = ends.length - 1;
+			while (low < high)
+			{
+				int middle = (low + high) >>> 1;
+				if (ends[middle] <= index)
+				{
+					low = middle + 1;
+				}
+				else
+				{
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * Gives the index within this branch of a child's first point
+		 * @param child Index of the child
+		 * @return Where the child starts
+		 */
+		private int startOf(int child)
+		{
+			return (child == 0) ? 0 : ends[child - 1];
+		}
+	}
+}
@@ -0,0 +1,436 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A uniform grid over the points of a DataSet, used to answer nearest point and
+ * rectangle queries without looking at every point.
+ *
+ * The grid covers the bounds of the points when it was built and has about four points
+ * per cell. The points are kept interleaved as x, y in one primitive array, cell after cell,
+ * with cellStart giving where each cell's slots begin, so the grid costs a fixed amount per
+ * cell and per point and holds no object per cell. Each cell gets a quarter more slots than
+ * it had points when built. A point added to a full cell goes in a small overflow array
+ * that every query also looks through. Points added outside the bounds go in the nearest
+ * edge cell, so the grid stays correct but slows down; isStale tells the DataSet when it has
+ * drifted far enough from the points to be worth building again.
+ * @author Julian Jocque
+ */
+class PointGrid
+{
+	private static final int POINTS_PER_CELL = 4;
+	private static final int MAX_SIDE = 2048;
+	private static final int FIRST_OVERFLOW_LENGTH = 16;
+
+	private final int side;
+	private final double minX;
+	private final double minY;
+	private final double maxX;
+	private final double maxY;
+	private final double cellWidth;
+	private final double cellHeight;
+	private final int[] cellStart;
+	private final int[] counts;
+	private double[] points;
+	private double[] overflow;
+	private int overflowCount;
+	private final int builtSize;
+	private int size;
+	private int outside;
+
+	/**
+	 * Builds a grid holding every point in the given store. The points are counted per cell
+	 * first, then placed, so the cells are laid out with a single allocation.
+	 * @param data The points to put in the grid, sorted by X
+	 * @return The new grid
+	 */
+	static PointGrid build(PointStore data)
+	{
+		int count = data.size();
+		double minY = Double.POSITIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < count; i++)
+		{
+			minY = Math.min(minY, data.getY(i));
+			maxY = Math.max(maxY, data.getY(i));
+		}
+		PointGrid grid;
+		if (count == 0)
+		{
+			grid = new PointGrid(0, 0, 0, 0, 0);
+		}
+		else
+		{
+			grid = new PointGrid(count, data.getX(0), data.getX(count - 1), minY, maxY);
+		}
+		for (int i = 0; i < count; i++)
+		{
+			grid.counts[grid.cell(data.getX(i), data.getY(i))]++;
+		}
+		grid.layOut();
+		for (int i = 0; i < count; i++)
+		{
+			grid.add(data.getX(i), data.getY(i));
+		}
+		return grid;
+	}
+
+	/**
+	 * Makes an empty grid over the given bounds, sized for the given number of points.
+	 * Its cells have no slots until layOut is called.
+	 */
+	private PointGrid(int expected, double minX, double maxX, double minY, double maxY)
+	{
+		side = (int)Math.max(1, Math.min(MAX_SIDE, Math.ceil(Math.sqrt(expected / (double)POINTS_PER_CELL))));
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		cellWidth = cellLength(maxX - minX, side);
+		cellHeight = cellLength(maxY - minY, side);
+		cellStart = new int[side * side + 1];
+		counts = new int[side * side];
+		overflow = new double[0];
+		overflowCount = 0;
+		builtSize = expected;
+		size = 0;
+		outside = 0;
+	}
+
+	/**
+	 * Gives each cell its slots from how many points were counted in it,
+	 * then empties the cells ready for the points to be added
+	 */
+	private void layOut()
+	{
+		for (int cell = 0; cell < counts.length; cell++)
+		{
+			cellStart[cell + 1] = cellStart[cell] + counts[cell] + counts[cell] / 4 + 1;
+			counts[cell] = 0;
+		}
+		points = new double[2 * cellStart[counts.length]];
+	}
+
+	/**
+	 * Works out how long a cell is along one axis
+	 * @param extent How far the points spread along the axis
+	 * @param side How many cells the axis is split into
+	 * @return The length of a cell, always positive
+	 */
+	private static double cellLength(double extent, int side)
+	{
+		double length = extent / side;
+		if (length > 0 && length < Double.POSITIVE_INFINITY)
+		{
+			return length;
+		}
+		return extent > 0 ? Double.MAX_VALUE / side : 1.0;
+	}
+
+	/**
+	 * Checks whether the points have changed enough since this grid was built
+	 * that building it again would make queries faster
+	 * @param currentSize How many points there are now
+	 * @return true if the grid should be built again
+	 */
+	boolean isStale(int currentSize)
+	{
+		return currentSize > 2 * builtSize + 64 || 4 * currentSize < builtSize
+				|| outside > currentSize / 8 + 64 || overflowCount > builtSize / 16 + 64;
+	}
+
+	/**
+	 * Adds a point to the grid, in the overflow array if its cell is full
+	 * @param x X value of the point
+	 * @param y Y value of the point
+	 */
+	void add(double x, double y)
+	{
+		int cell = cell(x, y);
+		int at = cellStart[cell] + counts[cell];
+		if (at < cellStart[cell + 1])
+		{
+			points[2 * at] = x;
+			points[2 * at + 1] = y;
+			counts[cell]++;
+		}
+		else
+		{
+			if (2 * overflowCount == overflow.length)
+			{
+				overflow = Arrays.copyOf(overflow, Math.max(FIRST_OVERFLOW_LENGTH, 2 * overflow.length));
+			}
+			overflow[2 * overflowCount] = x;
+			overflow[2 * overflowCount + 1] = y;
+			overflowCount++;
+		}
+		size++;
+		if (isOutside(x, y))
+		{
+			outside++;
+		}
+	}
+
+	/**
+	 * Removes a point from the grid, looking in its cell then in the overflow array
+	 * @param x X value of the point
+	 * @param y Y value of the point
+	 * @return true if the point was found and removed, else false
+	 */
+	boolean remove(double x, double y)
+	{
+		int cell = cell(x, y);
+		int first = cellStart[cell];
+		int last = first + counts[cell] - 1;
+		boolean removed = removeFrom(points, first, last, x, y);
+		if (removed)
+		{
+			counts[cell]--;
+		}
+		else if (removeFrom(overflow, 0, overflowCount - 1, x, y))
+		{
+			overflowCount--;
+			removed = true;
+		}
+		if (removed)
+		{
+			size--;
+			if (isOutside(x, y))
+			{
+				outside--;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Removes a point from a run of interleaved slots by moving the last point of the run
+	 * into its place
+	 * @param slots The interleaved points
+	 * @param first The first slot of the run
+	 * @param last The last slot of the run, less than first if the run is empty
+	 * @param x X value of the point
+	 * @param y Y value of the point
+	 * @return true if the point was in the run
+	 */
+	private static boolean removeFrom(double[] slots, int first, int last, double x, double y)
+	{
+		long xBits = Double.doubleToLongBits(x);
+		long yBits = Double.doubleToLongBits(y);
+		for (int i = first; i <= last; i++)
+		{
+			if (Double.doubleToLongBits(slots[2 * i]) == xBits
+					&& Double.doubleToLongBits(slots[2 * i + 1]) == yBits)
+			{
+				slots[2 * i] = slots[2 * last];
+				slots[2 * i + 1] = slots[2 * last + 1];
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the k points closest to the given position out of those inside the given rectangle,
+	 * edges included. Cells are searched in growing square rings around the position, stopping
+	 * once the k-th closest point found is nearer than anything outside the rings searched so far,
+	 * or once the rings cover every cell the rectangle overlaps.
+	 * @param x X value of the position
+	 * @param y Y value of the position
+	 * @param k How many points to find
+	 * @param xLo Smallest X value of the rectangle
+	 * @param yLo Smallest Y value of the rectangle
+	 * @param xHi Largest X value of the rectangle
+	 * @param yHi Largest Y value of the rectangle
+	 * @return The points found interleaved as x, y, closest first,
+	 * fewer than k if there are not that many points in the rectangle
+	 */
+	double[] nearest(double x, double y, int k, double xLo, double yLo, double xHi, double yHi)
+	{
+		int wanted = Math.min(k, size);
+		if (wanted <= 0 || !(xLo <= xHi && yLo <= yHi))
+		{
+			return new double[0];
+		}
+		NearestPoints best = new NearestPoints(wanted);
+		offerAll(overflow, 0, overflowCount, x, y, xLo, yLo, xHi, yHi, best);
+
+		int centreColumn = column(x);
+		int centreRow = row(y);
+		int rectColumnLo = column(Math.max(xLo, minX));
+		int rectColumnHi = column(Math.min(xHi, maxX));
+		int rectRowLo = row(Math.max(yLo, minY));
+		int rectRowHi = row(Math.min(yHi, maxY));
+		for (int ring = 0; ; ring++)
+		{
+			int columnLo = centreColumn - ring;
+			int columnHi = centreColumn + ring;
+			int rowLo = centreRow - ring;
+			int rowHi = centreRow + ring;
+			for (int row = Math.max(rowLo, 0); row <= Math.min(rowHi, side - 1); row++)
+			{
+				boolean edgeRow = row == rowLo || row == rowHi;
+				int step = edgeRow ? 1 : columnHi - columnLo;
+				for (int column = columnLo; column <= columnHi; column += step)
+				{
+					if (column < 0 || column >= side)
+					{
+						continue;
+					}
+					int cell = row * side + column;
+					offerAll(points, cellStart[cell], cellStart[cell] + counts[cell], x, y, xLo, yLo, xHi, yHi, best);
+				}
+			}
+
+			double bound = Double.POSITIVE_INFINITY;
+			if (columnLo > 0)
+			{
+				bound = Math.min(bound, x - (minX + columnLo * cellWidth));
+			}
+			if (columnHi < side - 1)
+			{
+				bound = Math.min(bound, minX + (columnHi + 1) * cellWidth - x);
+			}
+			if (rowLo > 0)
+			{
+				bound = Math.min(bound, y - (minY + rowLo * cellHeight));
+			}
+			if (rowHi < side - 1)
+			{
+				bound = Math.min(bound, minY + (rowHi + 1) * cellHeight - y);
+			}
+			boolean coversRect = columnLo <= rectColumnLo && columnHi >= rectColumnHi
+					&& rowLo <= rectRowLo && rowHi >= rectRowHi;
+			bound = Math.max(bound, 0);
+			if (bound == Double.POSITIVE_INFINITY || coversRect || best.worstDistance() <= bound * bound)
+			{
+				return best.toArray();
+			}
+		}
+	}
+
+	/**
+	 * Offers every point of a run of interleaved slots that lies inside the rectangle
+	 * @param slots The interleaved points
+	 * @param from The first slot of the run
+	 * @param to One past the last slot of the run
+	 * @param x X value of the position searched around
+	 * @param y Y value of the position searched around
+	 * @param xLo Smallest X value of the rectangle
+	 * @param yLo Smallest Y value of the rectangle
+	 * @param xHi Largest X value of the rectangle
+	 * @param yHi Largest Y value of the rectangle
+	 * @param best Where the closest points are kept
+	 */
+	private static void offerAll(double[] slots, int from, int to, double x, double y,
+			double xLo, double yLo, double xHi, double yHi, NearestPoints best)
+	{
+		for (int i = from; i < to; i++)
+		{
+			double pointX = slots[2 * i];
+			double pointY = slots[2 * i + 1];
+			if (pointX >= xLo && pointX <= xHi && pointY >= yLo && pointY <= yHi)
+			{
+				best.offer(pointX, pointY, (pointX - x) * (pointX - x) + (pointY - y) * (pointY - y));
+			}
+		}
+	}
+
+	/**
+	 * Gives every point inside the given rectangle, edges included, to the given visitor.
+	 * Only the cells overlapping the rectangle and the overflow array are looked at,
+	 * and points come cell by cell rather than in order of X.
+	 * @param xLo Smallest X value of the rectangle
+	 * @param yLo Smallest Y value of the rectangle
+	 * @param xHi Largest X value of the rectangle
+	 * @param yHi Largest Y value of the rectangle
+	 * @param visitor The visitor to give the points to
+	 */
+	void withinRect(double xLo, double yLo, double xHi, double yHi, PointVisitor visitor)
+	{
+		if (!(xLo <= xHi && yLo <= yHi))
+		{
+			return;
+		}
+		visitAll(overflow, 0, overflowCount, xLo, yLo, xHi, yHi, visitor);
+		int columnHi = column(xHi);
+		int rowHi = row(yHi);
+		for (int row = row(yLo); row <= rowHi; row++)
+		{
+			for (int column = column(xLo); column <= columnHi; column++)
+			{
+				int cell = row * side + column;
+				visitAll(points, cellStart[cell], cellStart[cell] + counts[cell], xLo, yLo, xHi, yHi, visitor);
+			}
+		}
+	}
+
+	/**
+	 * Visits every point of a run of interleaved slots that lies inside the rectangle
+	 * @param slots The interleaved points
+	 * @param from The first slot of the run
+	 * @param to One past the last slot of the run
+	 * @param xLo Smallest X value of the rectangle
+	 * @param yLo Smallest Y value of the rectangle
+	 * @param xHi Largest X value of the rectangle
+	 * @param yHi Largest Y value of the rectangle
+	 * @param visitor The visitor to give the points to
+	 */
+	private static void visitAll(double[] slots, int from, int to,
+			double xLo, double yLo, double xHi, double yHi, PointVisitor visitor)
+	{
+		for (int i = from; i < to; i++)
+		{
+			double x = slots[2 * i];
+			double y = slots[2 * i + 1];
+			if (x >= xLo && x <= xHi && y >= yLo && y <= yHi)
+			{
+				visitor.visit(x, y);
+			}
+		}
+	}
+
+	/**
+	 * Checks whether a point lies outside the bounds the grid was built over
+	 * @param x X value of the point
+	 * @param y Y value of the point
+	 * @return true if the point is outside the bounds
+	 */
+	private boolean isOutside(double x, double y)
+	{
+		return x < minX || x > maxX || y < minY || y > maxY;
+	}
+
+	/**
+	 * Gives the cell a point belongs in
+	 * @param x X value of the point
+	 * @param y Y value of the point
+	 * @return Index of the cell
+	 */
+	private int cell(double x, double y)
+	{
+		return row(y) * side + column(x);
+	}
+
+	/**
+	 * Gives the column an X value belongs in, values off either side go in the edge column
+	 * @param x The X value
+	 * @return The column, from 0 to side - 1
+	 */
+	private int column(double x)
+	{
+		double column = Math.floor((x - minX) / cellWidth);
+		return (int)Math.max(0, Math.min(side - 1, column));
+	}
+
+	/**
+	 * Gives the row a Y value belongs in, values off either side go in the edge row
+	 * @param y The Y value
+	 * @return The row, from 0 to side - 1
+	 */
+	private int row(double y)
+	{
+		double row = Math.floor((y - minY) / cellHeight);
+		return (int)Math.max(0, Math.min(side - 1, row));
+	}
+}
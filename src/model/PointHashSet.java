@@ -0,0 +1,209 @@
+package model;
+
+/**
+ * A set of (x, y) pairs used by DataSet to find duplicate points in constant time.
+ *
+ * Pairs are keyed by the exact bit patterns of their two doubles, so two pairs
+ * match exactly when Double.equals would say both halves match.
+ * The keys live in primitive long arrays using open addressing with linear probing,
+ * removal shifts later entries back so no tombstones are left behind.
+ * @author Julian Jocque
+ */
+class PointHashSet
+{
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] xKeys;
+	private long[] yKeys;
+	private boolean[] used;
+	private int mask;
+	private int size;
+
+	/**
+	 * Default constructor, makes an empty set
+	 */
+	PointHashSet()
+	{
+		allocate(MIN_CAPACITY);
+	}
+
+	/**
+	 * Gives how many pairs are in this set
+	 * @return The number of pairs in this set
+	 */
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Checks whether the given pair is in this set
+	 * @param x X value of the pair
+	 * @param y Y value of the pair
+	 * @return true if the pair is in this set, else false
+	 */
+	boolean contains(double x, double y)
+	{
+		return find(Double.doubleToLongBits(x), Double.doubleToLongBits(y)) != -1;
+	}
+
+	/**
+	 * Adds the given pair to this set if it is not already in it
+	 * @param x X value of the pair
+	 * @param y Y value of the pair
+	 * @return true if the pair was added, false if it was already in this set
+	 */
+	boolean add(double x, double y)
+	{
+		long xBits = Double.doubleToLongBits(x);
+		long yBits = Double.doubleToLongBits(y);
+		int slot = hash(xBits, yBits) & mask;
+		while (used[slot])
+		{
+			if (xKeys[slot] == xBits && yKeys[slot] == yBits)
+			{
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		used[slot] = true;
+		xKeys[slot] = xBits;
+		yKeys[slot] = yBits;
+		size++;
+		if (2 * size > used.length)
+		{
+			rehash(used.length * 2);
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the given pair from this set
+	 * @param x X value of the pair
+	 * @param y Y value of the pair
+	 * @return true if the pair was removed, false if it was not in this set
+	 */
+	boolean remove(double x, double y)
+	{
+		int gap = find(Double.doubleToLongBits(x), Double.doubleToLongBits(y));
+		if (gap == -1)
+		{
+			return false;
+		}
+		int slot = (gap + 1) & mask;
+		while (used[slot])
+		{
+			int home = hash(xKeys[slot], yKeys[slot]) & mask;
+			if (((slot - home) & mask) >= ((slot - gap) & mask))
+			{
+				xKeys[gap] = xKeys[slot];
+				yKeys[gap] = yKeys[slot];
+				gap = slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		used[gap] = false;
+		size--;
+		return true;
+	}
+
+	/**
+	 * Grows this set so that it holds the given number of pairs without growing again
+	 * @param count How many pairs the set will hold
+	 */
+	void ensureCapacity(int count)
+	{
+		int capacity = used.length;
+		while (capacity < (1 << 30) && 2L * count > capacity)
+		{
+			capacity *= 2;
+		}
+		if (capacity != used.length)
+		{
+			rehash(capacity);
+		}
+	}
+
+	/**
+	 * Removes every pair from this set and gives back the memory it was using
+	 */
+	void clear()
+	{
+		allocate(MIN_CAPACITY);
+	}
+
+	/**
+	 * Finds the slot holding the given key
+	 * @param xBits Bits of the X value
+	 * @param yBits Bits of the Y value
+	 * @return The slot holding the key, or -1 if it is not in this set
+	 */
+	private int find(long xBits, long yBits)
+	{
+		int slot = hash(xBits, yBits) & mask;
+		while (used[slot])
+		{
+			if (xKeys[slot] == xBits && yKeys[slot] == yBits)
+			{
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Moves every key into new arrays with the given capacity
+	 * @param capacity New number of slots, a power of two
+	 */
+	private void rehash(int capacity)
+	{
+		long[] oldXKeys = xKeys;
+		long[] oldYKeys = yKeys;
+		boolean[] oldUsed = used;
+		allocate(capacity);
+		for (int i = 0; i < oldUsed.length; i++)
+		{
+			if (oldUsed[i])
+			{
+				int slot = hash(oldXKeys[i], oldYKeys[i]) & mask;
+				while (used[slot])
+				{
+					slot = (slot + 1) & mask;
+				}
+				used[slot] = true;
+				xKeys[slot] = oldXKeys[i];
+				yKeys[slot] = oldYKeys[i];
+				size++;
+			}
+		}
+	}
+
+	/**
+	 * Replaces the arrays with empty ones of the given capacity
+	 * @param capacity Number of slots, a power of two
+	 */
+	private void allocate(int capacity)
+	{
+		xKeys = new long[capacity];
+		yKeys = new long[capacity];
+		used = new boolean[capacity];
+		mask = capacity - 1;
+		size = 0;
+	}
+
+	/**
+	 * Mixes the bits of a key so that nearby values spread over the table
+	 * @param xBits Bits of the X value
+	 * @param yBits Bits of the Y value
+	 * @return The hash of the key
+	 */
+	private static int hash(long xBits, long yBits)
+	{
+		long h = xBits * 0x9E3779B97F4A7C15L + yBits;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		return (int)h;
+	}
+}
@@ -0,0 +1,173 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A front end for streaming points into a DataSet from many producer threads.
+ *
+ * Producers offer (x, y) pairs into a fixed size ring of primitive slots without locking,
+ * each claiming a slot with a single compare-and-set. One consumer drains the ring and
+ * hands everything it found to the DataSet in one addAll, so a drain sorts once and
+ * updates views once however many points it carries.
+ *
+ * When the ring is full offer returns false and the point is counted as dropped,
+ * producers can watch remainingCapacity to slow down before that happens.
+ * Only one thread may drain at a time, usually a Swing timer or the thread that owns the DataSet.
+ * @author Julian Jocque
+ */
+public class PointIngestQueue
+{
+	private final DataSet target;
+	private final double[] xs;
+	private final double[] ys;
+	private final AtomicLongArray sequences;
+	private final int mask;
+	private final AtomicLong tail;
+	private volatile long head;
+	private final AtomicLong dropped;
+	private volatile long rejected;
+
+	/**
+	 * Creates a queue feeding the given DataSet
+	 * @param target The DataSet drained points are added to
+	 * @param capacity How many points may wait in the queue, rounded up to a power of two
+	 */
+	public PointIngestQueue(DataSet target, int capacity)
+	{
+		if (capacity < 1 || capacity > (1 << 30))
+		{
+			throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+		}
+		int slots = Integer.highestOneBit(capacity);
+		if (slots < capacity)
+		{
+			slots <<= 1;
+		}
+		this.target = target;
+		xs = new double[slots];
+		ys = new double[slots];
+		sequences = new AtomicLongArray(slots);
+		for (int i = 0; i < slots; i++)
+		{
+			sequences.set(i, i);
+		}
+		mask = slots - 1;
+		tail = new AtomicLong();
+		head = 0;
+		dropped = new AtomicLong();
+		rejected = 0;
+	}
+
+	/**
+	 * Offers a point to the queue. Safe to call from any number of threads at once.
+	 * @param x X value of the point
+	 * @param y Y value of the point
+	 * @return true if the point was queued, false if the queue was full and it was dropped
+	 */
+	public boolean offer(double x, double y)
+	{
+		while (true)
+		{
+			long position = tail.get();
+			int slot = (int)position & mask;
+			long difference = sequences.get(slot) - position;
+			if (difference == 0)
+			{
+				if (tail.compareAndSet(position, position + 1))
+				{
+					xs[slot] = x;
+					ys[slot] = y;
+					sequences.lazySet(slot, position + 1);
+					return true;
+				}
+			}
+			else if (difference < 0)
+			{
+				dropped.incrementAndGet();
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Moves every point that has finished being queued into the DataSet with a single addAll.
+	 * Must only be called from one thread at a time.
+	 * @return How many points were taken off the queue, whether or not the DataSet kept them
+	 */
+	public int drain()
+	{
+		long start = head;
+		long end = start;
+		while (end - start <= mask && sequences.get((int)end & mask) == end + 1)
+		{
+			end++;
+		}
+		int count = (int)(end - start);
+		if (count == 0)
+		{
+			return 0;
+		}
+
+		double[] drainedXs = new double[count];
+		double[] drainedYs = new double[count];
+		for (int i = 0; i < count; i++)
+		{
+			long position = start + i;
+			int slot = (int)position & mask;
+			drainedXs[i] = xs[slot];
+			drainedYs[i] = ys[slot];
+			sequences.lazySet(slot, position + mask + 1);
+		}
+		head = end;
+
+		int added = target.addAll(drainedXs, drainedYs);
+		rejected += count - added;
+		return count;
+	}
+
+	/**
+	 * Gives roughly how many points are waiting to be drained
+	 * @return The number of queued points, may be out of date as soon as it returns
+	 */
+	public int size()
+	{
+		return (int)Math.max(0, Math.min(tail.get() - head, mask + 1));
+	}
+
+	/**
+	 * Gives roughly how many more points fit before offers start dropping them
+	 * @return The number of free slots, may be out of date as soon as it returns
+	 */
+	public int remainingCapacity()
+	{
+		return capacity() - size();
+	}
+
+	/**
+	 * Getter for how many points fit in the queue
+	 * @return The capacity of the queue
+	 */
+	public int capacity()
+	{
+		return mask + 1;
+	}
+
+	/**
+	 * Gives how many points have been dropped because the queue was full
+	 * @return The number of dropped points
+	 */
+	public long getDroppedCount()
+	{
+		return dropped.get();
+	}
+
+	/**
+	 * Gives how many drained points the DataSet refused, for being out of range or duplicates
+	 * @return The number of refused points
+	 */
+	public long getRejectedCount()
+	{
+		return rejected;
+	}
+}
@@ -0,0 +1,510 @@
+package model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sorts parallel X and Y columns by increasing X, ordering X values with DataPoint.compareX.
+ * Points never become objects, so sorting allocates only scratch columns.
+ *
+ * The sort is stable, so points sharing an X keep the order they were given in,
+ * which is the same order DataSet.add would have left them in.
+ * Small inputs are merge sorted. Large ones are radix sorted on the bits of their X values,
+ * eleven bits a pass, moving only the keys and the index each point started at; the X and Y
+ * values are then moved once by that index. Passes where every key has the same digit are skipped.
+ * Each pass is split into chunks run on the common ForkJoinPool, so large sorts use every core.
+ * @author Julian Jocque
+ */
+final class PointSorter
+{
+	private static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+	private static final int INSERTION_THRESHOLD = 32;
+	private static final int RADIX_BITS = 11;
+	private static final int BUCKETS = 1 << RADIX_BITS;
+	private static final int PASSES = (64 + RADIX_BITS - 1) / RADIX_BITS;
+
+	/**
+	 * Not used, PointSorter only has static methods
+	 */
+	private PointSorter()
+	{
+	}
+
+	/**
+	 * Sorts the first count points of the given columns by increasing X
+	 * @param xs X values of the points
+	 * @param ys Y values of the points, moved along with their X values
+	 * @param count How many points to sort
+	 */
+	static void sort(double[] xs, double[] ys, int count)
+	{
+		if (isSorted(xs, count))
+		{
+			return;
+		}
+		if (count > SEQUENTIAL_THRESHOLD)
+		{
+			radixSort(xs, ys, count);
+		}
+		else
+		{
+			mergeSort(xs, ys, new double[count], new double[count], 0, count);
+		}
+	}
+
+	/**
+	 * Sorts the first count points of the given columns by increasing X, then drops every point
+	 * that is the same as one before it. Since the sort is stable the first of each is kept,
+	 * as adding them one at a time would. The points kept are moved to the front of the columns.
+	 * @param xs X values of the points
+	 * @param ys Y values of the points, moved along with their X values
+	 * @param count How many points to sort
+	 * @return How many points were kept
+	 */
+	static int sortUnique(double[] xs, double[] ys, int count)
+	{
+		sort(xs, ys, count);
+		final double[] sortedXs = xs;
+		final double[] sortedYs = ys;
+		final boolean[] repeated = new boolean[count];
+		final int[] bounds = chunkBounds(count);
+		for (int chunk = 1; chunk < bounds.length - 1; chunk++)
+		{
+			while (bounds[chunk] < count && bounds[chunk] > 0
+					&& xs[bounds[chunk]] == xs[bounds[chunk] - 1])
+			{
+				bounds[chunk]++;
+			}
+			bounds[chunk] = Math.max(bounds[chunk], bounds[chunk - 1]);
+		}
+		forEachChunk(bounds.length - 1, new ChunkBody()
+		{
+			@Override
+			public void run(int chunk)
+			{
+				markRepeats(sortedXs, sortedYs, repeated, bounds[chunk], bounds[chunk + 1]);
+			}
+		});
+		int kept = 0;
+		for (int i = 0; i < count; i++)
+		{
+			if (!repeated[i])
+			{
+				xs[kept] = xs[i];
+				ys[kept++] = ys[i];
+			}
+		}
+		return kept;
+	}
+
+	/**
+	 * Marks every point that is the same as one before it, between two indices that start
+	 * runs of equal X values. -0.0 and 0.0 count as equal X values here but not as the same
+	 * point. Long runs are checked with a hash set so that many points sharing one X do not
+	 * take quadratic time.
+	 * @param xs X values of the points, sorted
+	 * @param ys Y values of the points
+	 * @param repeated Set to true for each point that repeats one before it
+	 * @param from Index of the first point to check
+	 * @param to One past the last point to check
+	 */
+	private static void markRepeats(double[] xs, double[] ys, boolean[] repeated, int from, int to)
+	{
+		int start = from;
+		while (start < to)
+		{
+			int end = start + 1;
+			while (end < to && xs[end] == xs[start])
+			{
+				end++;
+			}
+			if (end - start > INSERTION_THRESHOLD)
+			{
+				PointHashSet seen = new PointHashSet();
+				for (int i = start; i < end; i++)
+				{
+					repeated[i] = !seen.add(xs[i], ys[i]);
+				}
+			}
+			else
+			{
+				for (int i = start + 1; i < end; i++)
+				{
+					for (int j = start; j < i && !repeated[i]; j++)
+					{
+						repeated[i] = sameBits(xs[i], xs[j]) && sameBits(ys[i], ys[j]);
+					}
+				}
+			}
+			start = end;
+		}
+	}
+
+	/**
+	 * Radix sorts the points on the bits of their X values, least significant digit first
+	 * @param xs X values of the points
+	 * @param ys Y values of the points
+	 * @param count How many points to sort
+	 */
+	private static void radixSort(final double[] xs, final double[] ys, final int count)
+	{
+		final int[] bounds = chunkBounds(count);
+		final int chunks = bounds.length - 1;
+		final int[][] counts = new int[chunks][PASSES * BUCKETS];
+		final long[][] keys = {new long[count], new long[count]};
+		final int[][] order = {new int[count], new int[count]};
+		forEachChunk(chunks, new ChunkBody()
+		{
+			@Override
+			public void run(int chunk)
+			{
+				long[] chunkKeys = keys[0];
+				int[] chunkOrder = order[0];
+				int[] chunkCounts = counts[chunk];
+				for (int i = bounds[chunk]; i < bounds[chunk + 1]; i++)
+				{
+					long key = sortKey(xs[i]);
+					chunkKeys[i] = key;
+					chunkOrder[i] = i;
+					for (int pass = 0; pass < PASSES; pass++)
+					{
+						chunkCounts[pass * BUCKETS + digit(key, pass)]++;
+					}
+				}
+			}
+		});
+
+		int current = 0;
+		for (int pass = 0; pass < PASSES; pass++)
+		{
+			if (isOneBucket(counts, pass, count))
+			{
+				continue;
+			}
+			final int digitPass = pass;
+			final long[] fromKeys = keys[current];
+			final int[] fromOrder = order[current];
+			final long[] toKeys = keys[1 - current];
+			final int[] toOrder = order[1 - current];
+			final int[][] offsets = new int[chunks][BUCKETS];
+			if (pass > 0)
+			{
+				forEachChunk(chunks, new ChunkBody()
+				{
+					@Override
+					public void run(int chunk)
+					{
+						int[] chunkOffsets = offsets[chunk];
+						for (int i = bounds[chunk]; i < bounds[chunk + 1]; i++)
+						{
+							chunkOffsets[digit(fromKeys[i], digitPass)]++;
+						}
+					}
+				});
+			}
+			else
+			{
+				for (int chunk = 0; chunk < chunks; chunk++)
+				{
+					System.arraycopy(counts[chunk], 0, offsets[chunk], 0, BUCKETS);
+				}
+			}
+			int next = 0;
+			for (int bucket = 0; bucket < BUCKETS; bucket++)
+			{
+				for (int chunk = 0; chunk < chunks; chunk++)
+				{
+					int inBucket = offsets[chunk][bucket];
+					offsets[chunk][bucket] = next;
+					next += inBucket;
+				}
+			}
+			forEachChunk(chunks, new ChunkBody()
+			{
+				@Override
+				public void run(int chunk)
+				{
+					int[] chunkOffsets = offsets[chunk];
+					for (int i = bounds[chunk]; i < bounds[chunk + 1]; i++)
+					{
+						long key = fromKeys[i];
+						int to = chunkOffsets[digit(key, digitPass)]++;
+						toKeys[to] = key;
+						toOrder[to] = fromOrder[i];
+					}
+				}
+			});
+			current = 1 - current;
+		}
+
+		final int[] sortedOrder = order[current];
+		final long[] movedXs = keys[1 - current];
+		final double[] movedYs = new double[count];
+		forEachChunk(chunks, new ChunkBody()
+		{
+			@Override
+			public void run(int chunk)
+			{
+				for (int i = bounds[chunk]; i < bounds[chunk + 1]; i++)
+				{
+					movedXs[i] = Double.doubleToRawLongBits(xs[sortedOrder[i]]);
+					movedYs[i] = ys[sortedOrder[i]];
+				}
+			}
+		});
+		forEachChunk(chunks, new ChunkBody()
+		{
+			@Override
+			public void run(int chunk)
+			{
+				for (int i = bounds[chunk]; i < bounds[chunk + 1]; i++)
+				{
+					xs[i] = Double.longBitsToDouble(movedXs[i]);
+					ys[i] = movedYs[i];
+				}
+			}
+		});
+	}
+
+	/**
+	 * Checks whether every key has the same digit for a pass, so the pass would not move anything
+	 * @param counts How many keys of each chunk have each digit, for every pass
+	 * @param pass The pass to check
+	 * @param count How many keys there are
+	 * @return true if one digit holds every key
+	 */
+	private static boolean isOneBucket(int[][] counts, int pass, int count)
+	{
+		for (int bucket = 0; bucket < BUCKETS; bucket++)
+		{
+			int inBucket = 0;
+			for (int[] chunkCounts : counts)
+			{
+				inBucket += chunkCounts[pass * BUCKETS + bucket];
+			}
+			if (inBucket != 0)
+			{
+				return inBucket == count;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gives one digit of a key
+	 * @param key The key
+	 * @param pass Which digit, 0 for the lowest
+	 * @return The digit, from 0 to BUCKETS - 1
+	 */
+	private static int digit(long key, int pass)
+	{
+		return (int)(key >>> (pass * RADIX_BITS)) & (BUCKETS - 1);
+	}
+
+	/**
+	 * Maps an X value to a long whose unsigned order is the order compareX gives,
+	 * so -0.0 and 0.0 get the same key
+	 * @param x The X value
+	 * @return Its key
+	 */
+	private static long sortKey(double x)
+	{
+		long bits = (x == 0.0) ? 0L : Double.doubleToLongBits(x);
+		return bits ^ ((bits >> 63) | Long.MIN_VALUE);
+	}
+
+	/**
+	 * Checks whether two values have the same bits, the way PointHashSet compares them
+	 * @param first The first value
+	 * @param second The second value
+	 * @return true if they are the same
+	 */
+	private static boolean sameBits(double first, double second)
+	{
+		return Double.doubleToLongBits(first) == Double.doubleToLongBits(second);
+	}
+
+	/**
+	 * Splits count points into chunks, a few for every core the common pool has,
+	 * or a single chunk if there are too few points for splitting to pay
+	 * @param count How many points there are
+	 * @return Where each chunk starts, followed by count
+	 */
+	private static int[] chunkBounds(int count)
+	{
+		int parallelism = ForkJoinPool.getCommonPoolParallelism();
+		int chunks = (parallelism > 1) ? Math.max(1, Math.min(4 * parallelism, count / SEQUENTIAL_THRESHOLD)) : 1;
+		int[] bounds = new int[chunks + 1];
+		for (int chunk = 0; chunk <= chunks; chunk++)
+		{
+			bounds[chunk] = (int)((long)count * chunk / chunks);
+		}
+		return bounds;
+	}
+
+	/**
+	 * Runs the given body once for every chunk, on the common pool if there is more than one
+	 * @param chunks How many chunks there are
+	 * @param body What to run for each chunk
+	 */
+	private static void forEachChunk(int chunks, ChunkBody body)
+	{
+		if (chunks == 1)
+		{
+			body.run(0);
+		}
+		else
+		{
+			ForkJoinPool.commonPool().invoke(new ChunkTask(body, 0, chunks));
+		}
+	}
+
+	/**
+	 * Checks whether the first count X values are already in order
+	 * @param xs X values to check
+	 * @param count How many values to check
+	 * @return true if no X value is greater than the one after it
+	 */
+	private static boolean isSorted(double[] xs, int count)
+	{
+		for (int i = 1; i < count; i++)
+		{
+			if (DataPoint.compareX(xs[i - 1], xs[i]) > 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Merge sorts the points from index from up to but not including index to
+	 * @param xs X values of the points
+	 * @param ys Y values of the points
+	 * @param xBuffer Scratch space for X values, at least as long as xs
+	 * @param yBuffer Scratch space for Y values, at least as long as ys
+	 * @param from First index to sort
+	 * @param to One past the last index to sort
+	 */
+	private static void mergeSort(double[] xs, double[] ys, double[] xBuffer, double[] yBuffer,
+			int from, int to)
+	{
+		if (to - from <= INSERTION_THRESHOLD)
+		{
+			insertionSort(xs, ys, from, to);
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		mergeSort(xs, ys, xBuffer, yBuffer, from, middle);
+		mergeSort(xs, ys, xBuffer, yBuffer, middle, to);
+		merge(xs, ys, xBuffer, yBuffer, from, middle, to);
+	}
+
+	/**
+	 * Merges the two sorted runs from-middle and middle-to into one sorted run
+	 * @param xs X values of the points
+	 * @param ys Y values of the points
+	 * @param xBuffer Scratch space for X values
+	 * @param yBuffer Scratch space for Y values
+	 * @param from Start of the first run
+	 * @param middle Start of the second run
+	 * @param to End of the second run
+	 */
+	private static void merge(double[] xs, double[] ys, double[] xBuffer, double[] yBuffer,
+			int from, int middle, int to)
+	{
+		if (DataPoint.compareX(xs[middle - 1], xs[middle]) <= 0)
+		{
+			return;
+		}
+		int left = from;
+		int right = middle;
+		int out = from;
+		while (left < middle && right < to)
+		{
+			if (DataPoint.compareX(xs[left], xs[right]) <= 0)
+			{
+				xBuffer[out] = xs[left];
+				yBuffer[out++] = ys[left++];
+			}
+			else
+			{
+				xBuffer[out] = xs[right];
+				yBuffer[out++] = ys[right++];
+			}
+		}
+		System.arraycopy(xs, left, xBuffer, out, middle - left);
+		System.arraycopy(ys, left, yBuffer, out, middle - left);
+		out += middle - left;
+		System.arraycopy(xBuffer, from, xs, from, out - from);
+		System.arraycopy(yBuffer, from, ys, from, out - from);
+	}
+
+	/**
+	 * Insertion sorts a short run of points
+	 * @param xs X values of the points
+	 * @param ys Y values of the points
+	 * @param from First index to sort
+	 * @param to One past the last index to sort
+	 */
+	private static void insertionSort(double[] xs, double[] ys, int from, int to)
+	{
+		for (int i = from + 1; i < to; i++)
+		{
+			double x = xs[i];
+			double y = ys[i];
+			int j = i - 1;
+			while (j >= from && DataPoint.compareX(xs[j], x) > 0)
+			{
+				xs[j + 1] = xs[j];
+				ys[j + 1] = ys[j];
+				j--;
+			}
+			xs[j + 1] = x;
+			ys[j + 1] = y;
+		}
+	}
+
+	/**
+	 * Work done on one chunk of the points
+	 */
+	private interface ChunkBody
+	{
+		/**
+		 * Does the work for one chunk
+		 * @param chunk Index of the chunk
+		 */
+		void run(int chunk);
+	}
+
+	/**
+	 * Runs a ChunkBody over a range of chunks, splitting the range in half until one chunk is left
+	 */
+	private static class ChunkTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final ChunkBody body;
+		private final int from;
+		private final int to;
+
+		ChunkTask(ChunkBody body, int from, int to)
+		{
+			this.body = body;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from == 1)
+			{
+				body.run(from);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new ChunkTask(body, from, middle), new ChunkTask(body, middle, to));
+		}
+	}
+}
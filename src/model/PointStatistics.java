@@ -0,0 +1,194 @@
+package model;
+
+/**
+ * Summary statistics of the points of a DataSet at one version.
+ *
+ * Variances and the covariance are population values, divided by the count
+ * rather than the count minus one. Every value that needs at least one point
+ * is NaN when there are none.
+ * @author Julian Jocque
+ */
+public final class PointStatistics
+{
+	private final int count;
+	private final double minX;
+	private final double maxX;
+	private final double minY;
+	private final double maxY;
+	private final double sumX;
+	private final double sumY;
+	private final double meanX;
+	private final double meanY;
+	private final double varianceX;
+	private final double varianceY;
+	private final double covariance;
+
+	/**
+	 * Creates statistics from already computed values
+	 */
+	PointStatistics(int count, double minX, double maxX, double minY, double maxY,
+			double sumX, double sumY, double meanX, double meanY,
+			double varianceX, double varianceY, double covariance)
+	{
+		this.count = count;
+		this.minX = minX;
+		this.maxX = maxX;
+		this.minY = minY;
+		this.maxY = maxY;
+		this.sumX = sumX;
+		this.sumY = sumY;
+		this.meanX = meanX;
+		this.meanY = meanY;
+		this.varianceX = varianceX;
+		this.varianceY = varianceY;
+		this.covariance = covariance;
+	}
+
+	/**
+	 * Getter for the number of points
+	 * @return The number of points
+	 */
+	public int getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Getter for the smallest X value
+	 * @return The smallest X value
+	 */
+	public double getMinX()
+	{
+		return minX;
+	}
+
+	/**
+	 * Getter for the largest X value
+	 * @return The largest X value
+	 */
+	public double getMaxX()
+	{
+		return maxX;
+	}
+
+	/**
+	 * Getter for the smallest Y value
+	 * @return The smallest Y value
+	 */
+	public double getMinY()
+	{
+		return minY;
+	}
+
+	/**
+	 * Getter for the largest Y value
+	 * @return The largest Y value
+	 */
+	public double getMaxY()
+	{
+		return maxY;
+	}
+
+	/**
+	 * Getter for the sum of the X values, 0 when there are no points
+	 * @return The sum of the X values
+	 */
+	public double getSumX()
+	{
+		return sumX;
+	}
+
+	/**
+	 * Getter for the sum of the Y values, 0 when there are no points
+	 * @return The sum of the Y values
+	 */
+	public double getSumY()
+	{
+		return sumY;
+	}
+
+	/**
+	 * Getter for the mean of the X values
+	 * @return The mean X value
+	 */
+	public double getMeanX()
+	{
+		return meanX;
+	}
+
+	/**
+	 * Getter for the mean of the Y values
+	 * @return The mean Y value
+	 */
+	public double getMeanY()
+	{
+		return meanY;
+	}
+
+	/**
+	 * Getter for the population variance of the X values
+	 * @return The variance of X
+	 */
+	public double getVarianceX()
+	{
+		return varianceX;
+	}
+
+	/**
+	 * Getter for the population variance of the Y values
+	 * @return The variance of Y
+	 */
+	public double getVarianceY()
+	{
+		return varianceY;
+	}
+
+	/**
+	 * Getter for the standard deviation of the X values
+	 * @return The square root of the variance of X
+	 */
+	public double getStandardDeviationX()
+	{
+		return Math.sqrt(varianceX);
+	}
+
+	/**
+	 * Getter for the standard deviation of the Y values
+	 * @return The square root of the variance of Y
+	 */
+	public double getStandardDeviationY()
+	{
+		return Math.sqrt(varianceY);
+	}
+
+	/**
+	 * Getter for the population covariance of X and Y
+	 * @return The covariance of X and Y
+	 */
+	public double getCovariance()
+	{
+		return covariance;
+	}
+
+	/**
+	 * Gives the Pearson correlation of X and Y
+	 * @return The correlation, from -1 to 1, or NaN if either X or Y does not vary
+	 */
+	public double getCorrelation()
+	{
+		double scale = Math.sqrt(varianceX * varianceY);
+		return scale > 0 ? covariance / scale : Double.NaN;
+	}
+
+	/**
+	 * Gives these statistics as a string, mostly for debugging
+	 * @return The count, bounds, means and variances
+	 */
+	public String toString()
+	{
+		return "Count: " + count
+				+ " X: [" + minX + ", " + maxX + "] mean " + meanX + " variance " + varianceX
+				+ " Y: [" + minY + ", " + maxY + "] mean " + meanY + " variance " + varianceY
+				+ " Covariance: " + covariance;
+	}
+}
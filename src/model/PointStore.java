@@ -0,0 +1,224 @@
+package model;
+
+/**
+ * Storage engine for the points of a DataSet.
+ *
+ * Points are addressed by their index in the DataSet, which keeps them sorted
+ * by increasing X. The store itself does not sort, check ranges or look for
+ * duplicates; the DataSet decides where each point goes and the store only
+ * has to put it there.
+ * @author Julian Jocque
+ */
+public abstract class PointStore
+{
+	/**
+	 * Gives how many points are currently held
+	 * @return The number of points in this store
+	 */
+	public abstract int size();
+
+	/**
+	 * Getter for the X value of the point at the given index
+	 * @param index Index of the point, from 0 to size() - 1
+	 * @return The X value of that point
+	 */
+	public abstract double getX(int index);
+
+	/**
+	 * Getter for the Y value of the point at the given index
+	 * @param index Index of the point, from 0 to size() - 1
+	 * @return The Y value of that point
+	 */
+	public abstract double getY(int index);
+
+	/**
+	 * Binary searches for the first point with an X value at least the given one.
+	 * @param x The X value to search for
+	 * @return The index of the first point with an equal or greater X,
+	 * or size() if there is none
+	 */
+	public int lowerBound(double x)
+	{
+		int low = 0;
+		int high = size();
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (getX(middle) < x)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Binary searches for the first point with an X value greater than the given one.
+	 * New points go there, so points with equal X values stay in the order they were added.
+	 * @param x The X value to search for
+	 * @return The index of the first point with a greater X, or size() if there is none
+	 */
+	public int upperBound(double x)
+	{
+		int low = 0;
+		int high = size();
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (getX(middle) > x)
+			{
+				high = middle;
+			}
+			else
+			{
+				low = middle + 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Inserts a point at the given index, moving every point at or after
+	 * that index up by one.
+	 * @param index Where the new point goes, from 0 to size()
+	 * @param x X value of the new point
+	 * @param y Y value of the new point
+	 */
+	public abstract void insert(int index, double x, double y);
+
+	/**
+	 * Removes the point at the given index, moving every point after it
+	 * down by one.
+	 * @param index Index of the point to remove
+	 */
+	public abstract void remove(int index);
+
+	/**
+	 * Removes the given number of points from the front of this store,
+	 * moving every point after them down.
+	 * @param count How many points to remove, from 0 to size()
+	 */
+	public void removeFirst(int count)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			remove(0);
+		}
+	}
+
+	/**
+	 * Moves the point at index from so that it ends up at index to, giving it new values.
+	 * Points between the two indices shift by one to make room.
+	 * @param from Index of the point to move
+	 * @param to Index the point should end up at, counted as if it had been removed first
+	 * @param x New X value of the point
+	 * @param y New Y value of the point
+	 */
+	public void move(int from, int to, double x, double y)
+	{
+		remove(from);
+		insert(to, x, y);
+	}
+
+	/**
+	 * Removes every point from this store
+	 */
+	public abstract void clear();
+
+	/**
+	 * Makes an independent copy of this store, later changes to either do not affect the other
+	 * @return A store holding the same points
+	 */
+	public PointStore copy()
+	{
+		ColumnarPointStore copy = new ColumnarPointStore(size());
+		for (int i = 0; i < size(); i++)
+		{
+			copy.insert(i, getX(i), getY(i));
+		}
+		return copy;
+	}
+
+	/**
+	 * Gives a copy of this store that will only ever be read, for snapshots. Later changes
+	 * to this store do not affect it, but stores may share their points with it so that it
+	 * is cheaper to make than a copy. By default it is a copy.
+	 * @return A store holding the same points, which must not be changed
+	 */
+	public PointStore frozenView()
+	{
+		return copy();
+	}
+
+	/**
+	 * Replaces every point in this store with the first count points of the given columns,
+	 * which must already be sorted. The store may keep the given arrays, so callers
+	 * must not change them afterwards.
+	 * @param xs X values of the new points
+	 * @param ys Y values of the new points
+	 * @param count How many points to take from the columns
+	 */
+	public void setAll(double[] xs, double[] ys, int count)
+	{
+		clear();
+		for (int i = 0; i < count; i++)
+		{
+			insert(i, xs[i], ys[i]);
+		}
+	}
+
+	/**
+	 * Gives up whatever memory this store holds outside the heap. Stores on the heap
+	 * have nothing to give up and leave it to the garbage collector.
+	 */
+	public void close()
+	{
+	}
+
+	/**
+	 * Tells whether this store keeps its points outside the heap, in which case the
+	 * DataSet avoids keeping anything per point on the heap either
+	 * @return true if the points are off the heap, else false
+	 */
+	public boolean isOffHeap()
+	{
+		return false;
+	}
+
+	/**
+	 * Gives the value this store actually holds when given the one passed in.
+	 * Stores that keep less precision round it, the DataSet rounds points before
+	 * checking them so duplicates and ranges are judged on what is kept.
+	 * @param value A value to be stored
+	 * @return The value that would be read back
+	 */
+	public double storedValue(double value)
+	{
+		return value;
+	}
+
+	/**
+	 * Tells whether the DataSet should find duplicate points with a hash set of them.
+	 * That takes constant time but costs about 34 bytes a point on the heap, so stores
+	 * meant to save memory say no and duplicates are found by binary search instead.
+	 * @return true if a hash set of the points should be kept, else false
+	 */
+	public boolean wantsPointIndex()
+	{
+		return !isOffHeap() && !isPersistent();
+	}
+
+	/**
+	 * Tells whether copy takes constant time because versions of this store share
+	 * structure, in which case the DataSet keeps old versions for undo
+	 * @return true if copies are cheap, else false
+	 */
+	public boolean isPersistent()
+	{
+		return false;
+	}
+}
@@ -0,0 +1,16 @@
+package model;
+
+/**
+ * Receives the points of a DataSet one at a time, in order of increasing X,
+ * without any copies or DataPoints being made.
+ * @author Julian Jocque
+ */
+public interface PointVisitor
+{
+	/**
+	 * Called once for each point visited
+	 * @param x The X value of the point
+	 * @param y The Y value of the point
+	 */
+	public void visit(double x, double y);
+}
@@ -0,0 +1,260 @@
+package model;
+
+/**
+ * A PointStore that keeps its columns in a circular buffer, used by bounded DataSets.
+ *
+ * Removing points from the front only moves the start of the buffer, so evicting the
+ * oldest points costs nothing however many there are. Inserting or removing elsewhere
+ * shifts whichever side of the index is shorter, so appending the newest point is also cheap.
+ * The buffer only grows when it is full, a DataSet with a point limit sizes it once up front.
+ * @author Julian Jocque
+ */
+public class RingPointStore extends PointStore
+{
+	private double[] xs;
+	private double[] ys;
+	private int mask;
+	private int head;
+	private int size;
+
+	/**
+	 * Makes an empty store with room for at least the given number of points
+	 * @param capacity How many points fit before the buffer has to grow
+	 */
+	public RingPointStore(int capacity)
+	{
+		allocate(capacity);
+		head = 0;
+		size = 0;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public double getX(int index)
+	{
+		checkIndex(index, size);
+		return xs[(head + index) & mask];
+	}
+
+	@Override
+	public double getY(int index)
+	{
+		checkIndex(index, size);
+		return ys[(head + index) & mask];
+	}
+
+	@Override
+	public void insert(int index, double x, double y)
+	{
+		checkIndex(index, size + 1);
+		if (size == xs.length)
+		{
+			reallocate(size + 1);
+		}
+		if (index < size / 2)
+		{
+			head = (head - 1) & mask;
+			shiftDown(0, index);
+		}
+		else
+		{
+			shiftUp(index, size);
+		}
+		int slot = (head + index) & mask;
+		xs[slot] = x;
+		ys[slot] = y;
+		size++;
+	}
+
+	@Override
+	public void remove(int index)
+	{
+		checkIndex(index, size);
+		if (index < size / 2)
+		{
+			shiftUp(0, index);
+			head = (head + 1) & mask;
+		}
+		else
+		{
+			shiftDown(index, size - 1);
+		}
+		size--;
+	}
+
+	/**
+	 * Only moves the start of the buffer
+	 */
+	@Override
+	public void removeFirst(int count)
+	{
+		checkIndex(count, size + 1);
+		head = (head + count) & mask;
+		size -= count;
+	}
+
+	/**
+	 * Only shifts the points between the two indices
+	 */
+	@Override
+	public void move(int from, int to, double x, double y)
+	{
+		checkIndex(from, size);
+		checkIndex(to, size);
+		if (from < to)
+		{
+			shiftDown(from, to);
+		}
+		else if (to < from)
+		{
+			shiftUp(to, from);
+		}
+		int slot = (head + to) & mask;
+		xs[slot] = x;
+		ys[slot] = y;
+	}
+
+	@Override
+	public void clear()
+	{
+		head = 0;
+		size = 0;
+	}
+
+	/**
+	 * Copies the given points into the buffer, growing it only if they do not fit
+	 */
+	@Override
+	public void setAll(double[] newXs, double[] newYs, int count)
+	{
+		if (count > xs.length)
+		{
+			allocate(count);
+		}
+		System.arraycopy(newXs, 0, xs, 0, count);
+		System.arraycopy(newYs, 0, ys, 0, count);
+		head = 0;
+		size = count;
+	}
+
+	/**
+	 * Getter for how many points fit before the buffer has to grow
+	 * @return The capacity of the buffer
+	 */
+	public int getCapacity()
+	{
+		return xs.length;
+	}
+
+	/**
+	 * Shrinks the buffer back down after it grew, such as when a bulk add filled it
+	 * with more points than a bounded DataSet keeps. Does nothing if the buffer is
+	 * already no bigger than it needs to be for the given capacity.
+	 * @param capacity How many points the buffer should still hold, at least the size
+	 */
+	public void trimToCapacity(int capacity)
+	{
+		int needed = Math.max(capacity, size);
+		if (slotsFor(needed) < xs.length)
+		{
+			reallocate(needed);
+		}
+	}
+
+	/**
+	 * Moves the points at indices from + 1 to to down by one, overwriting index from
+	 * @param from Lowest index to overwrite
+	 * @param to Highest index to move
+	 */
+	private void shiftDown(int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			int slot = (head + i) & mask;
+			int next = (slot + 1) & mask;
+			xs[slot] = xs[next];
+			ys[slot] = ys[next];
+		}
+	}
+
+	/**
+	 * Moves the points at indices from to to - 1 up by one, overwriting index to
+	 * @param from Lowest index to move
+	 * @param to Highest index to overwrite
+	 */
+	private void shiftUp(int from, int to)
+	{
+		for (int i = to; i > from; i--)
+		{
+			int slot = (head + i) & mask;
+			int previous = (slot - 1) & mask;
+			xs[slot] = xs[previous];
+			ys[slot] = ys[previous];
+		}
+	}
+
+	/**
+	 * Moves the points into a new buffer holding at least the given number of points,
+	 * unwrapping them so they start at the front
+	 * @param needed How many points the buffer must hold, at least the size
+	 */
+	private void reallocate(int needed)
+	{
+		double[] oldXs = xs;
+		double[] oldYs = ys;
+		int oldMask = mask;
+		allocate(needed);
+		for (int i = 0; i < size; i++)
+		{
+			int slot = (head + i) & oldMask;
+			xs[i] = oldXs[slot];
+			ys[i] = oldYs[slot];
+		}
+		head = 0;
+	}
+
+	/**
+	 * Replaces the buffer with an empty one of at least the given capacity
+	 * @param capacity How many points the buffer must hold, rounded up to a power of two
+	 */
+	private void allocate(int capacity)
+	{
+		int slots = slotsFor(capacity);
+		xs = new double[slots];
+		ys = new double[slots];
+		mask = slots - 1;
+	}
+
+	/**
+	 * Gives the smallest power of two, and at least two, holding the given number of points
+	 * @param capacity How many points must fit
+	 * @return The number of slots a buffer for them has
+	 */
+	private static int slotsFor(int capacity)
+	{
+		int slots = Integer.highestOneBit(Math.max(capacity, 2));
+		if (slots < capacity)
+		{
+			slots <<= 1;
+		}
+		return slots;
+	}
+
+	/**
+	 * Checks that the given index is at least 0 and less than the given bound
+	 * @param index The index to check
+	 * @param bound One past the largest allowed index
+	 */
+	private static void checkIndex(int index, int bound)
+	{
+		if (index < 0 || index >= bound)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index);
+		}
+	}
+}
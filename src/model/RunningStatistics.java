@@ -0,0 +1,129 @@
+package model;
+
+/**
+ * Running aggregates over the points of a DataSet, updated as points come and go.
+ *
+ * Means, variances and the covariance use Welford's method, which adding and removing
+ * a point each update in constant time without the cancellation that sums of squares suffer.
+ * X bounds are not tracked since the points are sorted by X, they are read from the ends.
+ * Y bounds are tracked on add; removing the smallest or largest Y only marks them stale,
+ * and they are found again with one pass the next time statistics are asked for.
+ * @author Julian Jocque
+ */
+class RunningStatistics
+{
+	private int count;
+	private double sumX;
+	private double sumY;
+	private double meanX;
+	private double meanY;
+	private double squaresX;
+	private double squaresY;
+	private double coMoment;
+	private double minY;
+	private double maxY;
+	private boolean yBoundsStale;
+
+	/**
+	 * Default constructor, starts with no points
+	 */
+	RunningStatistics()
+	{
+		clear();
+	}
+
+	/**
+	 * Forgets every point
+	 */
+	void clear()
+	{
+		count = 0;
+		sumX = 0;
+		sumY = 0;
+		meanX = 0;
+		meanY = 0;
+		squaresX = 0;
+		squaresY = 0;
+		coMoment = 0;
+		minY = Double.POSITIVE_INFINITY;
+		maxY = Double.NEGATIVE_INFINITY;
+		yBoundsStale = false;
+	}
+
+	/**
+	 * Counts a new point
+	 * @param x X value of the point
+	 * @param y Y value of the point
+	 */
+	void add(double x, double y)
+	{
+		count++;
+		sumX += x;
+		sumY += y;
+		double deltaX = x - meanX;
+		double deltaY = y - meanY;
+		meanX += deltaX / count;
+		meanY += deltaY / count;
+		squaresX += deltaX * (x - meanX);
+		squaresY += deltaY * (y - meanY);
+		coMoment += deltaX * (y - meanY);
+		minY = Math.min(minY, y);
+		maxY = Math.max(maxY, y);
+	}
+
+	/**
+	 * Takes back a point that was counted by add, reversing its Welford update
+	 * @param x X value of the point
+	 * @param y Y value of the point
+	 */
+	void remove(double x, double y)
+	{
+		if (count <= 1)
+		{
+			clear();
+			return;
+		}
+		count--;
+		sumX -= x;
+		sumY -= y;
+		double oldMeanX = meanX;
+		double oldMeanY = meanY;
+		meanX -= (x - meanX) / count;
+		meanY -= (y - meanY) / count;
+		squaresX = Math.max(0, squaresX - (x - meanX) * (x - oldMeanX));
+		squaresY = Math.max(0, squaresY - (y - meanY) * (y - oldMeanY));
+		coMoment -= (x - meanX) * (y - oldMeanY);
+		if (y <= minY || y >= maxY)
+		{
+			yBoundsStale = true;
+		}
+	}
+
+	/**
+	 * Gives the statistics of the given points, which must be the ones counted so far
+	 * @param data The points being counted, used for the X bounds and to repair the Y bounds
+	 * @return The current statistics
+	 */
+	PointStatistics toStatistics(PointStore data)
+	{
+		if (count == 0)
+		{
+			return new PointStatistics(0, Double.NaN, Double.NaN, Double.NaN, Double.NaN,
+					0, 0, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+		}
+		if (yBoundsStale)
+		{
+			minY = Double.POSITIVE_INFINITY;
+			maxY = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < count; i++)
+			{
+				double y = data.getY(i);
+				minY = Math.min(minY, y);
+				maxY = Math.max(maxY, y);
+			}
+			yBoundsStale = false;
+		}
+		return new PointStatistics(count, data.getX(0), data.getX(count - 1), minY, maxY,
+				sumX, sumY, meanX, meanY, squaresX / count, squaresY / count, coMoment / count);
+	}
+}
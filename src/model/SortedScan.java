@@ -0,0 +1,95 @@
+package model;
+
+/**
+ * Answers nearest point and rectangle queries straight from a PointStore sorted by X,
+ * for stores kept off the heap where a spatial index would copy every point onto it.
+ *
+ * Searches binary search the X column then walk outwards from there, so they use no
+ * memory per point. A nearest point search stops once the next point on either side is
+ * further away along X alone than the k-th closest point found, which is quick when the
+ * points spread along X, as a series does, and slower when many share nearly the same X.
+ * @author Julian Jocque
+ */
+final class SortedScan
+{
+	/**
+	 * Not used, SortedScan only has static methods
+	 */
+	private SortedScan()
+	{
+	}
+
+	/**
+	 * Finds the k points closest to the given position out of those inside the given rectangle,
+	 * edges included
+	 * @param data The points to search, sorted by X
+	 * @param x X value of the position
+	 * @param y Y value of the position
+	 * @param k How many points to find
+	 * @param xLo Smallest X value of the rectangle
+	 * @param yLo Smallest Y value of the rectangle
+	 * @param xHi Largest X value of the rectangle
+	 * @param yHi Largest Y value of the rectangle
+	 * @return The points found interleaved as x, y, closest first,
+	 * fewer than k if there are not that many points in the rectangle
+	 */
+	static double[] nearest(PointStore data, double x, double y, int k,
+			double xLo, double yLo, double xHi, double yHi)
+	{
+		int wanted = Math.min(k, data.size());
+		if (wanted <= 0 || !(xLo <= xHi && yLo <= yHi))
+		{
+			return new double[0];
+		}
+		int first = data.lowerBound(xLo);
+		int end = data.upperBound(xHi);
+		int right = Math.max(first, Math.min(end, data.lowerBound(x)));
+		int left = right - 1;
+		NearestPoints best = new NearestPoints(wanted);
+		while (left >= first || right < end)
+		{
+			double leftGap = (left >= first) ? x - data.getX(left) : Double.POSITIVE_INFINITY;
+			double rightGap = (right < end) ? data.getX(right) - x : Double.POSITIVE_INFINITY;
+			double gap = Math.min(leftGap, rightGap);
+			if (gap * gap > best.worstDistance())
+			{
+				break;
+			}
+			int index = (leftGap <= rightGap) ? left-- : right++;
+			double pointX = data.getX(index);
+			double pointY = data.getY(index);
+			if (pointY >= yLo && pointY <= yHi)
+			{
+				best.offer(pointX, pointY, (pointX - x) * (pointX - x) + (pointY - y) * (pointY - y));
+			}
+		}
+		return best.toArray();
+	}
+
+	/**
+	 * Gives every point inside the given rectangle, edges included, to the given visitor
+	 * in order of increasing X. Only points within the X values of the rectangle are looked at.
+	 * @param data The points to search, sorted by X
+	 * @param xLo Smallest X value of the rectangle
+	 * @param yLo Smallest Y value of the rectangle
+	 * @param xHi Largest X value of the rectangle
+	 * @param yHi Largest Y value of the rectangle
+	 * @param visitor The visitor to give the points to
+	 */
+	static void withinRect(PointStore data, double xLo, double yLo, double xHi, double yHi, PointVisitor visitor)
+	{
+		if (!(xLo <= xHi && yLo <= yHi))
+		{
+			return;
+		}
+		int end = data.upperBound(xHi);
+		for (int i = data.lowerBound(xLo); i < end; i++)
+		{
+			double y = data.getY(i);
+			if (y >= yLo && y <= yHi)
+			{
+				visitor.visit(data.getX(i), y);
+			}
+		}
+	}
+}
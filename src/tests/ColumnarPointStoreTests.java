@@ -0,0 +1,19 @@
+package tests;
+
+import model.ColumnarPointStore;
+import model.PointStore;
+
+/**
+ * Tests the default column based PointStore, which the contract also uses as the reference
+ * for every other store. It has nothing beyond what every store shares.
+ * @author Julian Jocque
+ *
+ */
+public class ColumnarPointStoreTests extends PointStoreContractTests
+{
+	@Override
+	protected PointStore createStore(int capacity)
+	{
+		return new ColumnarPointStore(capacity);
+	}
+}
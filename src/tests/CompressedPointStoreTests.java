@@ -0,0 +1,92 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import model.CompressedPointStore;
+import model.DataSet;
+import model.InvalidRangeException;
+import model.PointStore;
+
+import org.junit.Test;
+
+/**
+ * Tests the PointStore that keeps its points compressed in blocks.
+ * @author Julian Jocque
+ *
+ */
+public class CompressedPointStoreTests extends PointStoreContractTests
+{
+	@Override
+	protected PointStore createStore(int capacity)
+	{
+		return new CompressedPointStore();
+	}
+
+	/**
+	 * Tests that awkward values come back exactly as they went in
+	 */
+	@Test
+	public void testExactValues()
+	{
+		double[] xs = {Double.NEGATIVE_INFINITY, -1e300, -2.5, -Double.MIN_VALUE, -0.0, 0.0,
+				Double.MIN_VALUE, 0.1, 1.0, 1e300, Double.POSITIVE_INFINITY};
+		double[] ys = {Double.NaN, 0.1, -0.0, 1e-300, Double.MAX_VALUE, 0.1, 0.2, 0.1,
+				Double.NEGATIVE_INFINITY, 42.0, 42.0};
+		CompressedPointStore store = new CompressedPointStore();
+		for (int round = 0; round < 300; round++)
+		{
+			for (int i = 0; i < xs.length; i++)
+			{
+				store.insert(store.size(), xs[i], ys[i]);
+			}
+		}
+
+		for (int i = 0; i < store.size(); i++)
+		{
+			assertEquals(Double.doubleToRawLongBits(xs[i % xs.length]), Double.doubleToRawLongBits(store.getX(i)));
+			assertEquals(Double.doubleToRawLongBits(ys[i % ys.length]), Double.doubleToRawLongBits(store.getY(i)));
+		}
+	}
+
+	/**
+	 * Tests that a long, evenly spaced series takes far less room than plain columns
+	 */
+	@Test
+	public void testCompresses()
+	{
+		int count = 100000;
+		double[] xs = new double[count];
+		double[] ys = new double[count];
+		for (int i = 0; i < count; i++)
+		{
+			xs[i] = 1.5e12 + i * 1000.0;
+			ys[i] = Math.round(Math.sin(i / 100.0) * 100) / 4.0;
+		}
+		CompressedPointStore store = new CompressedPointStore();
+		store.setAll(xs, ys, count);
+
+		assertTrue(store.getEncodedBytes() < 16L * count / 4);
+		assertEquals(count, store.size());
+		assertEquals(xs[count - 1], store.getX(count - 1), 0.0);
+		assertEquals(ys[54321], store.getY(54321), 0.0);
+		assertEquals(54321, store.lowerBound(xs[54321]));
+	}
+
+	/**
+	 * Tests that a DataSet on the store still finds duplicates without a hash set
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testDataSet() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet("", "", "", 0.0, 3000.0, 0.0, 3000.0, new CompressedPointStore());
+		for (int i = 0; i < 2500; i++)
+		{
+			assertTrue(testSet.add((double)i, (double)i));
+		}
+		assertFalse(testSet.add(1234.0, 1234.0));
+		assertTrue(testSet.move(10.0, 10.0, 2999.0, 1.0));
+		assertEquals(2999.0, testSet.getX(2499), 0.0);
+		assertEquals(2500, testSet.sizeOfData());
+	}
+}
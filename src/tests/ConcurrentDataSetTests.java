@@ -0,0 +1,274 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationTargetException;
+
+import javax.swing.SwingUtilities;
+
+import model.ConcurrentDataSet;
+import model.DataSnapshot;
+import model.InvalidRangeException;
+import model.LodLevel;
+
+import org.junit.Test;
+
+/**
+ * Tests the thread safe DataSet.
+ * @author Julian Jocque
+ *
+ */
+public class ConcurrentDataSetTests
+{
+	/**
+	 * Tests several threads adding points while another thread reads snapshots
+	 * @throws InvalidRangeException If range is invalid
+	 * @throws InterruptedException If interrupted while waiting for the threads
+	 */
+	@Test
+	public void testConcurrentWriters() throws InvalidRangeException, InterruptedException
+	{
+		final ConcurrentDataSet testSet = new ConcurrentDataSet("", "", "", 0.0, 100000.0, 0.0, 100000.0);
+		final int writers = 4;
+		final int perWriter = 5000;
+		Thread[] threads = new Thread[writers];
+		for (int w = 0; w < writers; w++)
+		{
+			final int offset = w;
+			threads[w] = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					for (int i = 0; i < perWriter; i++)
+					{
+						testSet.add((i * writers + offset) % 9973 + 0.0, i * writers + offset + 0.0);
+					}
+				}
+			});
+		}
+		final boolean[] readerFailed = new boolean[1];
+		Thread reader = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				int lastSize = 0;
+				while (lastSize < writers * perWriter)
+				{
+					DataSnapshot points = testSet.snapshot();
+					int size = points.size();
+					for (int i = 1; i < size; i++)
+					{
+						if (points.getX(i - 1) > points.getX(i))
+						{
+							readerFailed[0] = true;
+						}
+					}
+					if (size < lastSize || points.size() != size)
+					{
+						readerFailed[0] = true;
+					}
+					lastSize = size;
+				}
+			}
+		});
+
+		reader.start();
+		for (Thread thread : threads)
+		{
+			thread.start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		reader.join(10000);
+
+		assertFalse(readerFailed[0]);
+		assertEquals(writers * perWriter, testSet.sizeOfData());
+	}
+
+	/**
+	 * Tests that a snapshot does not change and is reused until the points change
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testSnapshotFrozen() throws InvalidRangeException
+	{
+		ConcurrentDataSet testSet = new ConcurrentDataSet();
+		testSet.add(1.0, 1.0);
+
+		DataSnapshot first = testSet.snapshot();
+		assertSame(first, testSet.snapshot());
+
+		testSet.add(0.5, 2.0);
+		testSet.setTitle("not a point change");
+		DataSnapshot second = testSet.snapshot();
+		assertNotSame(first, second);
+		assertSame(second, testSet.snapshot());
+
+		assertEquals(1, first.size());
+		assertEquals(1.0, first.getX(0), 0.0);
+		assertEquals(2, second.size());
+		assertEquals(0.5, second.getX(0), 0.0);
+	}
+
+	/**
+	 * Tests that a snapshot keeps the ranges it was taken with, that changing a range
+	 * gives a new snapshot, and that a snapshot's summary is of its own points even
+	 * after the set has changed
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testSnapshotRangesAndSummary() throws InvalidRangeException
+	{
+		ConcurrentDataSet testSet = new ConcurrentDataSet("", "", "", 0.0, 1000.0, -10.0, 10.0);
+		for (int i = 0; i < 1000; i++)
+		{
+			testSet.add((double)i, 1.0);
+		}
+		DataSnapshot first = testSet.snapshot();
+		assertEquals(1000.0, first.getXMax(), 0.0);
+		
+		testSet.setXMax(500.0);
+		DataSnapshot second = testSet.snapshot();
+		assertNotSame(first, second);
+		assertEquals(1000.0, first.getXMax(), 0.0);
+		assertEquals(500.0, second.getXMax(), 0.0);
+		assertEquals(-10.0, second.getYMin(), 0.0);
+		
+		LodLevel current = second.levelOfDetail(10.0, 0.0, 500.0);
+		assertNotNull(current);
+		assertEquals(1.0, current.getMaxY(current.bucketAt(250.5)), 0.0);
+		testSet.add(250.5, 9.0);
+		LodLevel stale = second.levelOfDetail(10.0, 0.0, 500.0);
+		assertNotNull(stale);
+		assertEquals(1.0, stale.getMaxY(stale.bucketAt(250.5)), 0.0);
+		LodLevel later = testSet.snapshot().levelOfDetail(10.0, 0.0, 500.0);
+		assertEquals(9.0, later.getMaxY(later.bucketAt(250.5)), 0.0);
+	}
+
+	/**
+	 * Tests two threads comparing the same pair of DataSets from opposite sides
+	 * @throws InvalidRangeException If range is invalid
+	 * @throws InterruptedException If interrupted while waiting for the threads
+	 */
+	@Test
+	public void testEqualsBothWays() throws InvalidRangeException, InterruptedException
+	{
+		final ConcurrentDataSet first = new ConcurrentDataSet();
+		final ConcurrentDataSet second = new ConcurrentDataSet();
+		for (int i = 0; i < 1000; i++)
+		{
+			first.add(i / 100.0, i / 100.0);
+			second.add(i / 100.0, i / 100.0);
+		}
+		final boolean[] unequal = new boolean[1];
+		Thread forward = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (int i = 0; i < 2000; i++)
+				{
+					unequal[0] |= !first.equals(second);
+				}
+			}
+		});
+		Thread backward = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (int i = 0; i < 2000; i++)
+				{
+					unequal[0] |= !second.equals(first);
+				}
+			}
+		});
+		forward.setDaemon(true);
+		backward.setDaemon(true);
+		forward.start();
+		backward.start();
+		forward.join(30000);
+		backward.join(30000);
+
+		assertFalse("equals deadlocked", forward.isAlive() || backward.isAlive());
+		assertFalse(unequal[0]);
+	}
+
+	/**
+	 * Tests that a reader taking a snapshot after every change of a growing series does not
+	 * hold writers up for a copy of every point. Copying a million points each time takes
+	 * seconds here.
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testSnapshotDoesNotBlockWriters() throws InvalidRangeException
+	{
+		ConcurrentDataSet testSet = new ConcurrentDataSet("", "", "", 0.0, 10000000.0, 0.0, 10000000.0);
+		int count = 1000000;
+		double[] xs = new double[count];
+		double[] ys = new double[count];
+		for (int i = 0; i < count; i++)
+		{
+			xs[i] = i;
+			ys[i] = i;
+		}
+		testSet.addAll(xs, ys);
+
+		long start = System.nanoTime();
+		DataSnapshot snapshot = null;
+		for (int i = 0; i < 500; i++)
+		{
+			snapshot = testSet.snapshot();
+			testSet.add(count + i + 0.0, i + 0.0);
+		}
+		long millis = (System.nanoTime() - start) / 1000000;
+		assertTrue("500 changes between snapshots took " + millis + "ms", millis < 1000);
+		assertEquals(count + 499, snapshot.size());
+		assertEquals(count + 500, testSet.snapshot().size());
+
+		testSet.add(0.5, -1.0);
+		assertEquals(count + 499, snapshot.size());
+		assertEquals(1.0, snapshot.getX(1), 0.0);
+		assertEquals(count + 498.0, snapshot.getX(count + 498), 0.0);
+	}
+
+	/**
+	 * Tests that views are updated on the Swing event thread, once for a burst of changes
+	 * @throws InvalidRangeException If range is invalid
+	 * @throws InterruptedException If interrupted while waiting for the event thread
+	 * @throws InvocationTargetException If the event thread fails
+	 */
+	@Test
+	public void testViewsUpdatedOnEventThread()
+		throws InvalidRangeException, InterruptedException, InvocationTargetException
+	{
+		final ConcurrentDataSet testSet = new ConcurrentDataSet();
+		final MockView testView = new MockView();
+		testSet.attach(testView);
+
+		SwingUtilities.invokeAndWait(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				testSet.add(1.0, 1.0);
+				testSet.add(2.0, 2.0);
+				testSet.setTitle("burst");
+				assertEquals(0, testView.getUpdateCount());
+			}
+		});
+		SwingUtilities.invokeAndWait(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+			}
+		});
+
+		assertEquals(1, testView.getUpdateCount());
+	}
+}
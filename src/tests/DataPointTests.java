@@ -2,6 +2,10 @@ package tests;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 import model.DataPoint;
 
 import org.junit.Test;
@@ -14,45 +18,15 @@ import org.junit.Test;
 public class DataPointTests 
 {
 
-	/**
-	 * Tests that after default creation both values are null
-	 */
-	@Test
-	public void testDeaultCreateBothNull() 
-	{
-		DataPoint testPoint = new DataPoint();
-		assertEquals(null, testPoint.getX());
-		assertEquals(null, testPoint.getY());
-	}
-	
 	/**
 	 * Tests that after being created with values those values are correct
 	 */
 	@Test
-	public void testNonDefaultCreate()
-	{
-		Double value1 = new Double(5.5);
-		Double value2 = new Double(4.2);
-		DataPoint testPoint = new DataPoint(value1, value2);
-		assertEquals(new Double(5.5), testPoint.getX());
-		assertEquals(new Double(4.2), testPoint.getY());
-	}
-	
-	/**
-	 * Tests that when one value is null and the other isn't that both are correct
-	 */
-	@Test
-	public void testOneNull()
+	public void testCreate()
 	{
-		Double value1 = new Double(4);
-		Double value2 = new Double(100);
-		DataPoint testPoint1 = new DataPoint(value1, null);
-		DataPoint testPoint2 = new DataPoint(null, value2);
-		
-		assertEquals(new Double(4), testPoint1.getX());
-		assertEquals(null, testPoint1.getY());
-		assertEquals(null, testPoint2.getX());
-		assertEquals(new Double(100), testPoint2.getY());
+		DataPoint testPoint = new DataPoint(5.5, 4.2);
+		assertEquals(5.5, testPoint.getX(), 0.0);
+		assertEquals(4.2, testPoint.getY(), 0.0);
 	}
 
 	/**
@@ -118,27 +92,20 @@ public class DataPointTests
 		Double negativeValue = new Double(-10);
 		Double value1 = new Double(10);
 		Double zero = new Double(0);
-		DataPoint nullPoint = new DataPoint();
-		DataPoint otherNullPoint = new DataPoint();
 		DataPoint posPoint = new DataPoint(value1, value1);
 		DataPoint otherPosPoint = new DataPoint(value1, value1);
 		DataPoint negPoint = new DataPoint(negativeValue, negativeValue);
 		DataPoint otherNegPoint = new DataPoint(negativeValue, negativeValue);
 		DataPoint zeroPoint = new DataPoint(zero, zero);
 		DataPoint otherZeroPoint = new DataPoint(zero, zero);
-		DataPoint xNullPoint = new DataPoint(null, zero);
-		DataPoint otherXNullPoint = new DataPoint(null, zero);
-		DataPoint yNullPoint = new DataPoint(value1, null);
-		DataPoint otherYNullPoint = new DataPoint(value1, null);
-		
+		DataPoint differentYPoint = new DataPoint(value1, negativeValue);
 		
 		assertEquals(0, posPoint.compareTo(posPoint));
 		assertEquals(0, posPoint.compareTo(otherPosPoint));
-		assertEquals(0, nullPoint.compareTo(otherNullPoint));
 		assertEquals(0, zeroPoint.compareTo(otherZeroPoint));
-		assertEquals(0, xNullPoint.compareTo(otherXNullPoint));
-		assertEquals(0, yNullPoint.compareTo(otherYNullPoint));
 		assertEquals(0, negPoint.compareTo(otherNegPoint));
+		assertEquals(0, posPoint.compareTo(differentYPoint));
+		assertEquals(0, DataPoint.compareX(-0.0, 0.0));
 	}
 	
 	/**
@@ -148,26 +115,20 @@ public class DataPointTests
 	public void testEqualityEqual()
 	{
 		DataPoint point1 = new DataPoint(0.0, 0.0);
-		DataPoint point2 = new DataPoint(null, null);
+		DataPoint point2 = new DataPoint(Double.NaN, Double.NaN);
 		DataPoint point3 = new DataPoint(10.0, -10.0);
 		DataPoint point4 = new DataPoint(-9999999.92399, 999993921.3881);
-		DataPoint point5 = new DataPoint(5.6, null);
-		DataPoint point6 = new DataPoint(null, 28.3);
 		
 		DataPoint otherPoint1 = new DataPoint(0.0, 0.0);
-		DataPoint otherPoint2 = new DataPoint(null, null);
+		DataPoint otherPoint2 = new DataPoint(Double.NaN, Double.NaN);
 		DataPoint otherPoint3 = new DataPoint(10.0, -10.0);
 		DataPoint otherPoint4 = new DataPoint(-9999999.92399, 999993921.3881);
-		DataPoint otherPoint5 = new DataPoint(5.6, null);
-		DataPoint otherPoint6 = new DataPoint(null, 28.3);
 		
 		assertEquals(point1, point1);
 		assertEquals(point1, otherPoint1);
 		assertEquals(point2, otherPoint2);
 		assertEquals(point3, otherPoint3);
 		assertEquals(point4, otherPoint4);
-		assertEquals(point5, otherPoint5);
-		assertEquals(point6, otherPoint6);
 	}
 	
 	/**
@@ -177,58 +138,81 @@ public class DataPointTests
 	public void testEqualityNotEqual()
 	{
 		DataPoint point1 = new DataPoint(0.0, 0.0);
-		DataPoint point2 = new DataPoint(null, null);
+		DataPoint point2 = new DataPoint(-0.0, 0.0);
 		DataPoint point3 = new DataPoint(10.0, -10.0);
 		DataPoint point4 = new DataPoint(-9999999.92399, 999993921.3881);
-		DataPoint point5 = new DataPoint(5.6, null);
-		DataPoint point5Neg = new DataPoint(-5.6, null);
-		DataPoint point6 = new DataPoint(null, 28.3);
+		DataPoint point5 = new DataPoint(5.6, 1.0);
+		DataPoint point5Neg = new DataPoint(-5.6, 1.0);
 		Integer wrongClass = new Integer(5);
 		Double[] similar = new Double[]{10.0, -10.0};
 		
 		assertFalse(point1.equals(point2));
-		assertFalse(point2.equals(point5));
-		assertFalse(point2.equals(point6));
-		assertFalse(point5.equals(point6));
 		assertFalse(point3.equals(point4));
 		assertFalse(point2.equals(point1));
-		assertFalse(wrongClass.equals(point3));
-		assertFalse(similar.equals(point3));
+		assertFalse(point3.equals(wrongClass));
+		assertFalse(point3.equals(similar));
+		assertFalse(point3.equals(null));
 		assertFalse(point5.equals(point5Neg));
 	}
 	
+	/**
+	 * Tests that equal DataPoints hash the same and work as set members
+	 */
+	@Test
+	public void testHashCode()
+	{
+		DataPoint point = new DataPoint(10.0, -10.0);
+		DataPoint otherPoint = new DataPoint(10.0, -10.0);
+		DataPoint nanPoint = new DataPoint(Double.NaN, 1.0);
+		
+		assertEquals(point.hashCode(), otherPoint.hashCode());
+		assertEquals(nanPoint.hashCode(), new DataPoint(Double.NaN, 1.0).hashCode());
+		
+		Set<DataPoint> points = new HashSet<DataPoint>();
+		points.add(point);
+		points.add(otherPoint);
+		points.add(nanPoint);
+		points.add(new DataPoint(Double.NaN, 1.0));
+		points.add(point.swapped());
+		assertEquals(3, points.size());
+		assertTrue(points.contains(new DataPoint(-10.0, 10.0)));
+	}
+	
+	/**
+	 * Tests sorting with the X comparator
+	 */
+	@Test
+	public void testSortByX()
+	{
+		DataPoint[] points = {new DataPoint(3.0, 1.0), new DataPoint(-2.0, 2.0),
+				new DataPoint(3.0, 0.0), new DataPoint(1.0, 5.0)};
+		Arrays.sort(points, DataPoint.BY_X);
+		
+		assertEquals(new DataPoint(-2.0, 2.0), points[0]);
+		assertEquals(new DataPoint(1.0, 5.0), points[1]);
+		assertEquals(new DataPoint(3.0, 1.0), points[2]);
+		assertEquals(new DataPoint(3.0, 0.0), points[3]);
+	}
+	
 	/**
 	 * Tests swapping values
 	 */
 	@Test
 	public void testSwap()
 	{
-		Double posValue1 = new Double(5.9);
-		Double posValue2 = new Double(3.4);
-		Double zero = new Double(0.0);
-		Double negValue1 = new Double(-5.4);
-		Double negValue2 = new Double(-3.3);
-		DataPoint bothPositive = new DataPoint(posValue1, posValue2);
-		DataPoint bothNegative = new DataPoint(negValue1, negValue2);
-		DataPoint xNull = new DataPoint(null, posValue2);
-		DataPoint yNull = new DataPoint(posValue1, null);
-		DataPoint bothZero = new DataPoint(zero, zero);
+		DataPoint bothPositive = new DataPoint(5.9, 3.4);
+		DataPoint bothNegative = new DataPoint(-5.4, -3.3);
+		DataPoint bothZero = new DataPoint(0.0, 0.0);
 		
-		bothPositive.swap();
-		bothNegative.swap();
-		xNull.swap();
-		yNull.swap();
-		bothZero.swap();
+		DataPoint swappedPositive = bothPositive.swapped();
+		DataPoint swappedNegative = bothNegative.swapped();
 		
-		assertEquals(posValue1, bothPositive.getY());
-		assertEquals(posValue2, bothPositive.getX());
-		assertEquals(negValue1, bothNegative.getY());
-		assertEquals(negValue2, bothNegative.getX());
-		assertEquals(posValue2, xNull.getX());
-		assertEquals(null, xNull.getY());
-		assertEquals(null, yNull.getX());
-		assertEquals(posValue1, yNull.getY());
-		assertEquals(zero, bothZero.getX());
-		assertEquals(zero, bothZero.getY());
+		assertEquals(5.9, swappedPositive.getY(), 0.0);
+		assertEquals(3.4, swappedPositive.getX(), 0.0);
+		assertEquals(-5.4, swappedNegative.getY(), 0.0);
+		assertEquals(-3.3, swappedNegative.getX(), 0.0);
+		assertEquals(bothZero, bothZero.swapped());
+		assertEquals(5.9, bothPositive.getX(), 0.0);
+		assertEquals(3.4, bothPositive.getY(), 0.0);
 	}
 }
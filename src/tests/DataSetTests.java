@@ -4,9 +4,19 @@ import static org.junit.Assert.*;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
 
+import model.DataChangeEvent;
+import model.DataPoint;
 import model.DataSet;
 import model.InvalidRangeException;
+import model.LodLevel;
+import model.OffHeapPointStore;
+import model.PersistentPointStore;
+import model.PointStatistics;
+import model.PointVisitor;
+import model.RingPointStore;
 
 import org.junit.Test;
 
@@ -119,6 +129,103 @@ public class DataSetTests
 		assertEquals(8, testView.getUpdateCount());
 	}
 	
+	/**
+	 * Tests that views are only updated once for a batch of changes, even when nested
+	 * @throws InvalidRangeException If the range of the DataSet is invalid
+	 * @throws FileNotFoundException If the file to load isn't found
+	 */
+	@Test
+	public void testBatchUpdates() throws InvalidRangeException, FileNotFoundException
+	{
+		DataSet testSet = new DataSet();
+		MockView testView = new MockView();
+		testSet.attach(testView);
+		
+		testSet.beginBatch();
+		testSet.setTitle("batched");
+		testSet.add(1.0, 1.0);
+		testSet.beginBatch();
+		testSet.setXMax(20.0);
+		testSet.remove(1.0, 1.0);
+		testSet.endBatch();
+		assertEquals(0, testView.getUpdateCount());
+		testSet.setYLabel("Y");
+		testSet.endBatch();
+		assertEquals(1, testView.getUpdateCount());
+		assertEquals("batched", testSet.getTitle());
+		assertEquals(20.0, testSet.getXMax(), 0.0);
+		
+		testSet.beginBatch();
+		testSet.endBatch();
+		assertEquals(1, testView.getUpdateCount());
+		
+		testSet.load("customData");
+		assertEquals(2, testView.getUpdateCount());
+	}
+	
+	/**
+	 * Tests the changes reported to incremental views
+	 * @throws InvalidRangeException If the range of the DataSet is invalid
+	 */
+	@Test
+	public void testChangeEvents() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet();
+		MockIncrementalView testView = new MockIncrementalView();
+		testSet.attach(testView);
+		
+		testSet.add(5.0, 5.0);
+		testSet.add(2.0, 3.0);
+		DataChangeEvent inserted = testView.getLastEvent();
+		assertEquals(DataChangeEvent.Type.POINTS_INSERTED, inserted.getType());
+		assertEquals(0, inserted.getFromIndex());
+		assertEquals(0, inserted.getToIndex());
+		assertEquals(2.0, inserted.getMinX(), 0.0);
+		assertEquals(3.0, inserted.getMaxY(), 0.0);
+		
+		testSet.add(2.0, 3.0);
+		testSet.add(20.0, 3.0);
+		testSet.remove(7.0, 7.0);
+		assertEquals(2, testView.getEvents().size());
+		
+		testSet.remove(5.0, 5.0);
+		assertEquals(DataChangeEvent.Type.POINTS_REMOVED, testView.getLastEvent().getType());
+		assertEquals(1, testView.getLastEvent().getFromIndex());
+		
+		testSet.setTitle("title");
+		assertEquals(DataChangeEvent.Type.METADATA_CHANGED, testView.getLastEvent().getType());
+		assertFalse(testView.getLastEvent().hasPoints());
+		
+		testSet.setXMax(20.0);
+		assertEquals(DataChangeEvent.Type.RANGE_CHANGED, testView.getLastEvent().getType());
+		
+		testSet.beginBatch();
+		testSet.setXLabel("X");
+		testSet.setYLabel("Y");
+		testSet.endBatch();
+		assertEquals(DataChangeEvent.Type.METADATA_CHANGED, testView.getLastEvent().getType());
+		
+		testSet.beginBatch();
+		testSet.setXLabel("X again");
+		testSet.add(1.0, 1.0);
+		testSet.endBatch();
+		assertEquals(DataChangeEvent.Type.DATA_CHANGED, testView.getLastEvent().getType());
+		
+		assertEquals(7, testView.getEvents().size());
+		assertEquals(0, testView.getUpdateCount());
+	}
+	
+	/**
+	 * Tests ending a batch that was never started, expects to catch an exception
+	 * @throws InvalidRangeException If the range of the DataSet is invalid
+	 */
+	@Test(expected=IllegalStateException.class)
+	public void testEndBatchWithoutBegin() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet();
+		testSet.endBatch();
+	}
+	
 	/**
 	 * Tests detach
 	 * @throws InvalidRangeException If range is invalid
@@ -177,6 +284,35 @@ public class DataSetTests
 		assertEquals(new Double[0][0].length, emptySet.getDataAsArray().length);
 	}
 	
+	/**
+	 * Tests reading points by index and by visiting them
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testReadPoints() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet();
+		testSet.add(3.0, 1.0);
+		testSet.add(1.0, 2.0);
+		testSet.add(2.0, 3.0);
+		
+		assertEquals(1.0, testSet.getX(0), 0.0);
+		assertEquals(2.0, testSet.getY(0), 0.0);
+		assertEquals(3.0, testSet.getX(2), 0.0);
+		assertEquals(1.0, testSet.getY(2), 0.0);
+		
+		final StringBuilder visited = new StringBuilder();
+		testSet.forEach(new PointVisitor()
+		{
+			@Override
+			public void visit(double x, double y)
+			{
+				visited.append(x).append(',').append(y).append(' ');
+			}
+		});
+		assertEquals("1.0,2.0 2.0,3.0 3.0,1.0 ", visited.toString());
+	}
+	
 	/**
 	 * Tests adding points to the DataSet
 	 * @throws InvalidRangeException If the range is invalid
@@ -205,6 +341,139 @@ public class DataSetTests
 		}
 	}
 	
+	/**
+	 * Tests that points added out of order come out sorted by X,
+	 * with points sharing an X kept in the order they were added
+	 * @throws InvalidRangeException If the range is invalid
+	 */
+	@Test
+	public void testAddKeepsSorted() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet("","","",0.0,1000.0,0.0,1000.0);
+		
+		for (int i = 0; i < 500; i++)
+		{
+			testSet.add((i * 37) % 500 + 0.0, i + 0.0);
+		}
+		testSet.add(5.0, 999.0);
+		testSet.add(5.0, 998.0);
+		
+		assertEquals(502, testSet.sizeOfData());
+		Double[][] data = testSet.getDataAsArray();
+		for (int i = 1; i < data.length; i++)
+		{
+			assertTrue(data[i - 1][0] <= data[i][0]);
+		}
+		assertEquals(5.0, data[5][0], 0.0);
+		assertEquals(999.0, data[6][1], 0.0);
+		assertEquals(998.0, data[7][1], 0.0);
+	}
+	
+	/**
+	 * Tests that adding points all at once gives the same DataSet as adding them one by one,
+	 * with views only updated once
+	 * @throws InvalidRangeException If the range is invalid
+	 */
+	@Test
+	public void testAddAll() throws InvalidRangeException
+	{
+		DataSet oneByOne = new DataSet("","","",-50.0,50.0,-50.0,50.0);
+		DataSet allAtOnce = new DataSet("","","",-50.0,50.0,-50.0,50.0);
+		MockView testView = new MockView();
+		allAtOnce.attach(testView);
+		oneByOne.add(1.0, 1.0);
+		allAtOnce.add(1.0, 1.0);
+		
+		int count = 20000;
+		double[] xs = new double[count];
+		double[] ys = new double[count];
+		for (int i = 0; i < count; i++)
+		{
+			xs[i] = ((i * 7919) % 1201) / 10.0 - 60.0;
+			ys[i] = (i % 37) - 18.0;
+			oneByOne.add(xs[i], ys[i]);
+		}
+		
+		assertEquals(oneByOne.sizeOfData() - 1, allAtOnce.addAll(xs, ys));
+		assertArrayEquals(oneByOne.getDataAsArray(), allAtOnce.getDataAsArray());
+		assertEquals(2, testView.getUpdateCount());
+	}
+	
+	/**
+	 * Tests that a large load into an empty DataSet, which is radix sorted and has its repeats
+	 * dropped in bulk, gives the same points in the same order as adding them one at a time.
+	 * Many points share an X, including -0.0 and 0.0, and many are given more than once.
+	 * @throws InvalidRangeException If the range is invalid
+	 */
+	@Test
+	public void testBulkLoad() throws InvalidRangeException
+	{
+		DataSet oneByOne = new DataSet("","","",-50.0,50.0,-50.0,50.0);
+		DataSet allAtOnce = new DataSet("","","",-50.0,50.0,-50.0,50.0);
+		Random random = new Random(11);
+		int count = 100000;
+		double[] xs = new double[count];
+		double[] ys = new double[count];
+		for (int i = 0; i < count; i++)
+		{
+			int kind = random.nextInt(4);
+			if (kind == 0)
+			{
+				xs[i] = random.nextBoolean() ? 0.0 : -0.0;
+			}
+			else if (kind == 1)
+			{
+				xs[i] = random.nextInt(200) / 4.0 - 25.0;
+			}
+			else
+			{
+				xs[i] = random.nextDouble() * 120 - 60;
+			}
+			ys[i] = random.nextInt(300) / 8.0 - 18.0;
+			oneByOne.add(xs[i], ys[i]);
+		}
+		
+		assertEquals(oneByOne.sizeOfData(), allAtOnce.addAll(xs, ys));
+		assertEquals(oneByOne, allAtOnce);
+		for (int i = 1; i < allAtOnce.sizeOfData(); i++)
+		{
+			assertTrue(allAtOnce.getX(i - 1) <= allAtOnce.getX(i));
+		}
+	}
+	
+	/**
+	 * Tests replacing all the points in the DataSet
+	 * @throws InvalidRangeException If the range is invalid
+	 */
+	@Test
+	public void testReplaceAll() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet();
+		testSet.add(1.0, 1.0);
+		testSet.add(2.0, 2.0);
+		
+		assertEquals(2, testSet.replaceAll(new double[]{5.0, 3.0, 5.0, 11.0},
+				new double[]{5.0, 3.0, 5.0, 1.0}));
+		
+		assertEquals(2, testSet.sizeOfData());
+		assertEquals(3.0, testSet.getDataAsArray()[0][0], 0.0);
+		assertEquals(5.0, testSet.getDataAsArray()[1][0], 0.0);
+		assertTrue(testSet.add(1.0, 1.0));
+		assertEquals(0, testSet.replaceAll(new double[0], new double[0]));
+		assertEquals(0, testSet.sizeOfData());
+	}
+	
+	/**
+	 * Tests giving columns of different lengths, expects to catch an exception
+	 * @throws InvalidRangeException If the range is invalid
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testAddAllMismatched() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet();
+		testSet.addAll(new double[]{1.0, 2.0}, new double[]{1.0});
+	}
+	
 	/**
 	 * Tests adding points to the DataSet
 	 * @throws InvalidRangeException If the range is invalid
@@ -286,6 +555,757 @@ public class DataSetTests
 		assertEquals(allGone, testSet);
 	}
 	
+	/**
+	 * Tests moving points, both forwards and backwards through the sorted order
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testMovePoint() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet();
+		MockIncrementalView testView = new MockIncrementalView();
+		for (int i = 0; i < 10; i++)
+		{
+			testSet.add(i + 0.0, i + 0.5);
+		}
+		testSet.attach(testView);
+		
+		assertTrue(testSet.move(2.0, 2.5, 7.0, 1.0));
+		DataChangeEvent moved = testView.getLastEvent();
+		assertEquals(DataChangeEvent.Type.POINT_MOVED, moved.getType());
+		assertEquals(2, moved.getFromIndex());
+		assertEquals(7, moved.getToIndex());
+		assertEquals(2.0, moved.getMinX(), 0.0);
+		assertEquals(7.0, moved.getMaxX(), 0.0);
+		assertEquals(1.0, moved.getMinY(), 0.0);
+		assertEquals(2.5, moved.getMaxY(), 0.0);
+		
+		assertEquals(7.0, testSet.getX(6), 0.0);
+		assertEquals(7.5, testSet.getY(6), 0.0);
+		assertEquals(7.0, testSet.getX(7), 0.0);
+		assertEquals(1.0, testSet.getY(7), 0.0);
+		
+		assertTrue(testSet.move(9, 0.0, 9.0));
+		assertEquals(0.0, testSet.getX(1), 0.0);
+		assertEquals(9.0, testSet.getY(1), 0.0);
+		
+		assertEquals(10, testSet.sizeOfData());
+		for (int i = 1; i < testSet.sizeOfData(); i++)
+		{
+			assertTrue(testSet.getX(i - 1) <= testSet.getX(i));
+		}
+		assertFalse(testSet.add(0.0, 9.0));
+		assertTrue(testSet.add(9.0, 9.5));
+	}
+	
+	/**
+	 * Tests moves that should be refused, the point must stay where it was
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testMoveRejected() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet();
+		testSet.add(1.0, 1.0);
+		testSet.add(2.0, 2.0);
+		
+		assertFalse(testSet.move(1.0, 1.0, 2.0, 2.0));
+		assertFalse(testSet.move(1.0, 1.0, 11.0, 2.0));
+		assertFalse(testSet.move(1.0, 1.0, null, 2.0));
+		assertFalse(testSet.move(3.0, 3.0, 4.0, 4.0));
+		assertFalse(testSet.move(5, 4.0, 4.0));
+		assertTrue(testSet.move(1.0, 1.0, 1.0, 1.0));
+		
+		assertEquals(2, testSet.sizeOfData());
+		assertEquals(1.0, testSet.getX(0), 0.0);
+		assertEquals(1.0, testSet.getY(0), 0.0);
+	}
+	
+	/**
+	 * Tests finding and visiting the points in an interval of X values
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testIndexRange() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet();
+		testSet.addAll(new double[] {1.0, 2.0, 2.0, 3.0, 5.0, 8.0},
+				new double[] {1.0, 1.0, 2.0, 1.0, 1.0, 1.0});
+		
+		assertArrayEquals(new int[] {1, 4}, testSet.indexRange(2.0, 3.0));
+		assertArrayEquals(new int[] {0, 6}, testSet.indexRange(0.0, 10.0));
+		assertArrayEquals(new int[] {4, 4}, testSet.indexRange(3.5, 4.5));
+		assertArrayEquals(new int[] {6, 6}, testSet.indexRange(9.0, 10.0));
+		assertArrayEquals(new int[] {4, 4}, testSet.indexRange(5.0, 4.0));
+		assertArrayEquals(new int[] {1, 4}, testSet.snapshot().indexRange(2.0, 3.0));
+		
+		final double[] sum = new double[1];
+		testSet.forEachInXRange(1.5, 5.0, new PointVisitor()
+		{
+			@Override
+			public void visit(double x, double y)
+			{
+				sum[0] += x + y;
+			}
+		});
+		assertEquals(12.0 + 5.0, sum[0], 0.0);
+	}
+	
+	/**
+	 * Tests nearest point queries against a plain search, including after points change
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testNearest() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet("", "", "", 0.0, 100.0, 0.0, 100.0);
+		assertNull(testSet.nearest(1.0, 1.0));
+		assertEquals(0, testSet.kNearest(1.0, 1.0, 3).length);
+		
+		Random random = new Random(14);
+		for (int i = 0; i < 2000; i++)
+		{
+			testSet.add(random.nextDouble() * 50, random.nextDouble() * 100);
+		}
+		assertNearest(testSet, random);
+		
+		for (int i = 0; i < 3000; i++)
+		{
+			testSet.add(random.nextDouble() * 100, random.nextDouble() * 100);
+		}
+		for (int i = 0; i < 500; i++)
+		{
+			int index = random.nextInt(testSet.sizeOfData());
+			testSet.remove(testSet.getX(index), testSet.getY(index));
+			testSet.move(random.nextInt(testSet.sizeOfData()), random.nextDouble() * 100, 99.5);
+		}
+		assertNearest(testSet, random);
+		
+		DataPoint[] closest = testSet.kNearest(10.0, 10.0, 10000);
+		assertEquals(testSet.sizeOfData(), closest.length);
+	}
+	
+	/**
+	 * Checks nearest and kNearest on random positions against a search of every point
+	 * @param testSet The DataSet to check
+	 * @param random Where the positions come from
+	 */
+	private void assertNearest(DataSet testSet, Random random)
+	{
+		for (int query = 0; query < 200; query++)
+		{
+			double x = random.nextDouble() * 120 - 10;
+			double y = random.nextDouble() * 120 - 10;
+			double[] distances = new double[testSet.sizeOfData()];
+			for (int i = 0; i < distances.length; i++)
+			{
+				distances[i] = Math.hypot(testSet.getX(i) - x, testSet.getY(i) - y);
+			}
+			Arrays.sort(distances);
+			
+			DataPoint nearest = testSet.nearest(x, y);
+			assertEquals(distances[0], Math.hypot(nearest.getX() - x, nearest.getY() - y), 0.0);
+			DataPoint[] closest = testSet.kNearest(x, y, 5);
+			assertEquals(5, closest.length);
+			for (int i = 0; i < closest.length; i++)
+			{
+				assertEquals(distances[i], Math.hypot(closest[i].getX() - x, closest[i].getY() - y), 0.0);
+			}
+		}
+	}
+	
+	/**
+	 * Tests that a rectangle query visits exactly the points inside it
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testWithinRect() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet("", "", "", 0.0, 100.0, 0.0, 100.0);
+		for (int x = 0; x <= 100; x++)
+		{
+			for (int y = 0; y <= 100; y += 2)
+			{
+				testSet.add(x + 0.0, y + 0.0);
+			}
+		}
+		final int[] visited = new int[1];
+		PointVisitor counter = new PointVisitor()
+		{
+			@Override
+			public void visit(double x, double y)
+			{
+				assertTrue(x >= 10.0 && x <= 20.0 && y >= 30.5 && y <= 40.0);
+				visited[0]++;
+			}
+		};
+		
+		testSet.withinRect(10.0, 30.5, 20.0, 40.0, counter);
+		assertEquals(11 * 5, visited[0]);
+		
+		visited[0] = 0;
+		testSet.remove(15.0, 32.0);
+		testSet.withinRect(10.0, 30.5, 20.0, 40.0, counter);
+		assertEquals(11 * 5 - 1, visited[0]);
+		
+		visited[0] = 0;
+		testSet.withinRect(20.0, 30.5, 10.0, 40.0, counter);
+		assertEquals(0, visited[0]);
+	}
+	
+	/**
+	 * Tests queries after many points land in a few cells of a built spatial index,
+	 * more than the cells have room for, and some of them are removed again
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testSpatialIndexCrowdedCells() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet("", "", "", 0.0, 100.0, 0.0, 100.0);
+		Random random = new Random(18);
+		for (int i = 0; i < 5000; i++)
+		{
+			testSet.add(random.nextDouble() * 100, random.nextDouble() * 100);
+		}
+		assertNotNull(testSet.nearest(50.0, 50.0));
+		for (int i = 0; i < 300; i++)
+		{
+			testSet.add(50.0 + random.nextDouble(), 50.0 + random.nextDouble());
+		}
+		for (int i = 0; i < 100; i++)
+		{
+			int index = testSet.indexRange(50.0, 51.0)[0] + random.nextInt(50);
+			testSet.remove(testSet.getX(index), testSet.getY(index));
+		}
+		assertNearest(testSet, random);
+		
+		final int[] visited = new int[1];
+		testSet.withinRect(49.5, 49.5, 51.5, 51.5, new PointVisitor()
+		{
+			@Override
+			public void visit(double x, double y)
+			{
+				visited[0]++;
+			}
+		});
+		int expected = 0;
+		for (int i = 0; i < testSet.sizeOfData(); i++)
+		{
+			double x = testSet.getX(i);
+			double y = testSet.getY(i);
+			if (x >= 49.5 && x <= 51.5 && y >= 49.5 && y <= 51.5)
+			{
+				expected++;
+			}
+		}
+		assertEquals(expected, visited[0]);
+	}
+	
+	/**
+	 * Tests that level of detail summaries match the points as they change,
+	 * including when new points land beyond the X values summarised so far
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testLevelOfDetail() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet("", "", "", -1000.0, 1000.0, -1000.0, 1000.0);
+		assertNull(testSet.levelOfDetail(1.0));
+		
+		Random random = new Random(15);
+		for (int i = 0; i < 5000; i++)
+		{
+			testSet.add(random.nextDouble() * 100, random.nextDouble() * 100);
+		}
+		LodLevel level = testSet.levelOfDetail(1.0);
+		assertEquals(128, level.size());
+		assertLevel(testSet, level);
+		assertNull(testSet.levelOfDetail(1e-6));
+		assertEquals(1, testSet.levelOfDetail(1000.0).size());
+		
+		for (int i = 0; i < 2000; i++)
+		{
+			int index = random.nextInt(testSet.sizeOfData());
+			testSet.remove(testSet.getX(index), testSet.getY(index));
+			testSet.add(random.nextDouble() * 500 - 200, random.nextDouble() * 100);
+			testSet.move(random.nextInt(testSet.sizeOfData()), random.nextDouble() * 100, 50.0);
+		}
+		assertLevel(testSet, testSet.levelOfDetail(1.0));
+		assertLevel(testSet, testSet.levelOfDetail(10.0));
+		assertEquals(testSet.sizeOfData(), testSet.levelOfDetail(10000.0).getCount(0));
+	}
+	
+	/**
+	 * Tests that a view zoomed in past the finest level of the pyramid over dense data
+	 * still gets a summary, of just the points in view
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testLevelOfDetailZoomedIn() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet("", "", "", 0.0, 10000.0, -1.0, 1.0);
+		int count = 200000;
+		double[] xs = new double[count];
+		double[] ys = new double[count];
+		for (int i = 0; i < count; i++)
+		{
+			xs[i] = i / 20.0;
+			ys[i] = Math.sin(i);
+		}
+		testSet.addAll(xs, ys);
+		assertNull(testSet.levelOfDetail(0.5));
+		
+		LodLevel level = testSet.levelOfDetail(0.5, 500.2, 600.0);
+		assertNotNull(level);
+		assertEquals(0.5, level.getBucketWidth(), 0.0);
+		assertEquals(500.0, level.getBucketStart(0), 0.0);
+		assertEquals(201, level.size());
+		int total = 0;
+		for (int bucket = 0; bucket < level.size(); bucket++)
+		{
+			total += level.getCount(bucket);
+		}
+		assertEquals(12000 - 10004 + 1, total);
+		int bucket = level.bucketAt(550.0);
+		assertEquals(550.0, level.getFirstX(bucket), 0.0);
+		assertEquals(550.45, level.getLastX(bucket), 1e-9);
+		assertEquals(10, level.getCount(bucket));
+		
+		assertNotNull(testSet.levelOfDetail(100.0, 0.0, 10000.0));
+		assertEquals(0, testSet.levelOfDetail(100.0, 0.0, 10000.0).bucketAt(0.0));
+		assertNull(testSet.levelOfDetail(0.5, 20000.0, 20001.0));
+		assertNull(testSet.levelOfDetail(1e-9, 0.0, 10000.0));
+	}
+	
+	/**
+	 * Checks every bucket of a level against a summary worked out from the points
+	 * @param testSet The DataSet the level came from
+	 * @param level The level to check
+	 */
+	private void assertLevel(DataSet testSet, LodLevel level)
+	{
+		int[] counts = new int[level.size()];
+		for (int i = 0; i < testSet.sizeOfData(); i++)
+		{
+			double x = testSet.getX(i);
+			double y = testSet.getY(i);
+			int bucket = level.bucketAt(x);
+			if (counts[bucket] == 0)
+			{
+				assertEquals(x, level.getFirstX(bucket), 0.0);
+				assertEquals(y, level.getFirstY(bucket), 0.0);
+			}
+			assertTrue(y >= level.getMinY(bucket) && y <= level.getMaxY(bucket));
+			counts[bucket]++;
+			if (i == testSet.sizeOfData() - 1 || level.bucketAt(testSet.getX(i + 1)) != bucket)
+			{
+				assertEquals(x, level.getLastX(bucket), 0.0);
+				assertEquals(y, level.getLastY(bucket), 0.0);
+			}
+		}
+		for (int bucket = 0; bucket < level.size(); bucket++)
+		{
+			assertEquals(counts[bucket], level.getCount(bucket));
+		}
+	}
+	
+	/**
+	 * Tests a DataSet keeping its points off the heap, which finds duplicates without a hash set
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testOffHeap() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet("", "", "", -1000.0, 1000.0, -1000.0, 1000.0, new OffHeapPointStore(1));
+		assertTrue(testSet.add(5.0, 1.0));
+		assertTrue(testSet.add(1.0, 1.0));
+		assertTrue(testSet.add(5.0, 2.0));
+		assertFalse(testSet.add(5.0, 1.0));
+		assertEquals(2, testSet.addAll(new double[] {3.0, 3.0, 1.0, 2.0}, new double[] {3.0, 3.0, 1.0, 2.0}));
+		assertEquals(5, testSet.sizeOfData());
+		double[] xs = {1.0, 2.0, 3.0, 5.0, 5.0};
+		for (int i = 0; i < xs.length; i++)
+		{
+			assertEquals(xs[i], testSet.getX(i), 0.0);
+		}
+		assertArrayEquals(new int[] {2, 5}, testSet.indexRange(3.0, 5.0));
+		
+		testSet.remove(5.0, 1.0);
+		assertEquals(4, testSet.sizeOfData());
+		assertEquals(2.0, testSet.getY(3), 0.0);
+		assertTrue(testSet.add(5.0, 1.0));
+		assertEquals(5, testSet.getStatistics().getCount());
+		
+		testSet.close();
+		assertEquals(0, testSet.sizeOfData());
+	}
+	
+	/**
+	 * Tests keeping points outside the ranges, so the ranges only choose what is visible
+	 * @throws InvalidRangeException If range is invalid
+	 * @throws FileNotFoundException If the file to load isn't found
+	 */
+	@Test
+	public void testKeepOutOfRange() throws InvalidRangeException, FileNotFoundException
+	{
+		DataSet testSet = new DataSet("", "", "", 0.0, 10.0, 0.0, 10.0);
+		testSet.setKeepOutOfRange(true);
+		assertTrue(testSet.add(-5.0, 5.0));
+		assertTrue(testSet.add(5.0, 50.0));
+		assertTrue(testSet.add(5.0, 5.0));
+		assertTrue(testSet.add(15.0, 5.0));
+		assertFalse(testSet.add(Double.NaN, 5.0));
+		assertFalse(testSet.add(5.0, 5.0));
+		assertEquals(4, testSet.sizeOfData());
+		assertArrayEquals(new int[] {1, 3}, testSet.visibleRange());
+		
+		final int[] visible = new int[1];
+		PointVisitor counter = new PointVisitor()
+		{
+			@Override
+			public void visit(double x, double y)
+			{
+				visible[0]++;
+			}
+		};
+		testSet.forEachVisible(counter);
+		assertEquals(1, visible[0]);
+		
+		testSet.setXMin(-10.0);
+		testSet.setYMax(100.0);
+		visible[0] = 0;
+		testSet.forEachVisible(counter);
+		assertEquals(3, visible[0]);
+		
+		testSet.load("invalidPoints");
+		assertEquals(6, testSet.sizeOfData());
+		assertArrayEquals(new int[] {2, 4}, testSet.visibleRange());
+		testSet.setXMax(20000.0);
+		assertArrayEquals(new int[] {2, 6}, testSet.visibleRange());
+	}
+	
+	/**
+	 * Tests that picking the nearest shown point ignores points kept outside the ranges
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testNearestVisible() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet("", "", "", 0.0, 10.0, 0.0, 10.0);
+		testSet.add(5.0, 5.0);
+		assertEquals(new DataPoint(5.0, 5.0), testSet.nearestVisible(9.0, 9.0));
+		
+		testSet.setKeepOutOfRange(true);
+		testSet.add(10.5, 9.0);
+		testSet.add(9.0, -0.5);
+		assertEquals(new DataPoint(10.5, 9.0), testSet.nearest(9.5, 9.0));
+		assertEquals(new DataPoint(5.0, 5.0), testSet.nearestVisible(9.5, 9.0));
+		assertEquals(new DataPoint(5.0, 5.0), testSet.nearestVisible(9.0, 0.0));
+		
+		testSet.setXMin(6.0);
+		assertNull(testSet.nearestVisible(9.5, 9.0));
+		testSet.setXMax(11.0);
+		assertEquals(new DataPoint(10.5, 9.0), testSet.nearestVisible(6.0, 6.0));
+		
+		Random random = new Random(5);
+		DataSet manyPoints = new DataSet("", "", "", 40.0, 60.0, 40.0, 60.0);
+		manyPoints.setKeepOutOfRange(true);
+		for (int i = 0; i < 5000; i++)
+		{
+			manyPoints.add(random.nextDouble() * 100, random.nextDouble() * 100);
+		}
+		for (int query = 0; query < 100; query++)
+		{
+			double x = 40 + random.nextDouble() * 20;
+			double y = 40 + random.nextDouble() * 20;
+			double closest = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < manyPoints.sizeOfData(); i++)
+			{
+				double pointX = manyPoints.getX(i);
+				double pointY = manyPoints.getY(i);
+				if (pointX >= 40 && pointX <= 60 && pointY >= 40 && pointY <= 60)
+				{
+					closest = Math.min(closest, Math.hypot(pointX - x, pointY - y));
+				}
+			}
+			DataPoint found = manyPoints.nearestVisible(x, y);
+			assertEquals(closest, Math.hypot(found.getX() - x, found.getY() - y), 0.0);
+		}
+	}
+	
+	/**
+	 * Tests undoing and redoing changes, with an edit undone as one step
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testUndo() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet("", "", "", 0.0, 10.0, 0.0, 10.0, new PersistentPointStore());
+		assertFalse(testSet.canUndo());
+		testSet.add(1.0, 1.0);
+		testSet.add(2.0, 2.0);
+		testSet.addAll(new double[] {3.0, 4.0}, new double[] {3.0, 4.0});
+		
+		testSet.beginEdit();
+		testSet.move(1.0, 1.0, 5.0, 5.0);
+		testSet.move(5.0, 5.0, 6.0, 6.0);
+		testSet.endEdit();
+		assertEquals(6.0, testSet.getX(3), 0.0);
+		
+		assertTrue(testSet.undo());
+		assertEquals(1.0, testSet.getX(0), 0.0);
+		assertEquals(4, testSet.sizeOfData());
+		assertTrue(testSet.undo());
+		assertEquals(2, testSet.sizeOfData());
+		assertEquals(1.5, testSet.getStatistics().getMeanY(), 0.0);
+		assertTrue(testSet.redo());
+		assertEquals(4, testSet.sizeOfData());
+		
+		testSet.remove(2.0, 2.0);
+		assertFalse(testSet.canRedo());
+		assertTrue(testSet.undo());
+		assertEquals(2.0, testSet.getX(1), 0.0);
+		assertFalse(testSet.add(2.0, 2.0));
+		
+		testSet.setUndoLimit(1);
+		assertTrue(testSet.undo());
+		assertFalse(testSet.undo());
+		assertEquals(2, testSet.sizeOfData());
+	}
+	
+	/**
+	 * Tests that undo leaves out points outside ranges narrowed since, unless they are kept
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testUndoAfterRangeChange() throws InvalidRangeException
+	{
+		for (int keep = 0; keep < 2; keep++)
+		{
+			DataSet testSet = new DataSet("", "", "", 0.0, 10.0, 0.0, 10.0, new PersistentPointStore());
+			testSet.setKeepOutOfRange(keep == 1);
+			testSet.addAll(new double[] {0.5, 1.0, 2.0, 3.0, 8.0}, new double[] {2.0, 1.0, 9.0, 3.0, 8.0});
+			testSet.replaceAll(new double[0], new double[0]);
+			testSet.setXMin(0.75);
+			testSet.setXMax(5.0);
+			testSet.setYMax(5.0);
+
+			assertTrue(testSet.undo());
+			if (keep == 1)
+			{
+				assertEquals(5, testSet.sizeOfData());
+				continue;
+			}
+			assertEquals(2, testSet.sizeOfData());
+			assertEquals(1.0, testSet.getX(0), 0.0);
+			assertEquals(3.0, testSet.getX(1), 0.0);
+			assertEquals(2.0, testSet.getStatistics().getMeanY(), 0.0);
+		}
+	}
+	
+	/**
+	 * Tests that the statistics follow adds, removes, moves and bulk changes
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testStatistics() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet("", "", "", -1000.0, 1000.0, -1000.0, 1000.0);
+		PointStatistics stats = testSet.getStatistics();
+		assertEquals(0, stats.getCount());
+		assertTrue(Double.isNaN(stats.getMeanX()));
+		
+		testSet.add(1.0, 2.0);
+		testSet.add(3.0, 8.0);
+		testSet.add(2.0, -4.0);
+		testSet.addAll(new double[] {4.0, 6.0}, new double[] {5.0, 9.0});
+		assertStatistics(testSet);
+		
+		testSet.remove(6.0, 9.0);
+		testSet.remove(2.0, -4.0);
+		assertStatistics(testSet);
+		assertEquals(2.0, testSet.getStatistics().getMinY(), 0.0);
+		assertEquals(8.0, testSet.getStatistics().getMaxY(), 0.0);
+		
+		testSet.move(1.0, 2.0, -7.5, 0.5);
+		assertStatistics(testSet);
+		
+		testSet.replaceAll(new double[] {5.0, 10.0}, new double[] {1.0, 3.0});
+		stats = testSet.getStatistics();
+		assertEquals(2, stats.getCount());
+		assertEquals(7.5, stats.getMeanX(), 1e-12);
+		assertEquals(6.25, stats.getVarianceX(), 1e-12);
+		assertEquals(1.0, stats.getCorrelation(), 1e-12);
+		
+		testSet.remove(5.0, 1.0);
+		testSet.remove(10.0, 3.0);
+		assertEquals(0, testSet.getStatistics().getCount());
+	}
+	
+	/**
+	 * Checks the statistics of a DataSet against ones worked out from its points
+	 * @param testSet The DataSet to check
+	 */
+	private void assertStatistics(DataSet testSet)
+	{
+		PointStatistics stats = testSet.getStatistics();
+		int count = testSet.sizeOfData();
+		double sumX = 0;
+		double sumY = 0;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < count; i++)
+		{
+			sumX += testSet.getX(i);
+			sumY += testSet.getY(i);
+			minY = Math.min(minY, testSet.getY(i));
+			maxY = Math.max(maxY, testSet.getY(i));
+		}
+		double meanX = sumX / count;
+		double meanY = sumY / count;
+		double varianceX = 0;
+		double varianceY = 0;
+		double covariance = 0;
+		for (int i = 0; i < count; i++)
+		{
+			varianceX += (testSet.getX(i) - meanX) * (testSet.getX(i) - meanX) / count;
+			varianceY += (testSet.getY(i) - meanY) * (testSet.getY(i) - meanY) / count;
+			covariance += (testSet.getX(i) - meanX) * (testSet.getY(i) - meanY) / count;
+		}
+		
+		assertEquals(count, stats.getCount());
+		assertEquals(testSet.getX(0), stats.getMinX(), 0.0);
+		assertEquals(testSet.getX(count - 1), stats.getMaxX(), 0.0);
+		assertEquals(minY, stats.getMinY(), 0.0);
+		assertEquals(maxY, stats.getMaxY(), 0.0);
+		assertEquals(sumX, stats.getSumX(), 1e-9);
+		assertEquals(sumY, stats.getSumY(), 1e-9);
+		assertEquals(meanX, stats.getMeanX(), 1e-9);
+		assertEquals(meanY, stats.getMeanY(), 1e-9);
+		assertEquals(varianceX, stats.getVarianceX(), 1e-9);
+		assertEquals(varianceY, stats.getVarianceY(), 1e-9);
+		assertEquals(covariance, stats.getCovariance(), 1e-9);
+	}
+	
+	/**
+	 * Tests that a DataSet bounded by count keeps only its newest points
+	 * and tells views about each add with one change
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testMaxPoints() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet("", "", "", 0.0, 100000.0, 0.0, 100000.0);
+		for (int i = 0; i < 10; i++)
+		{
+			testSet.add(i + 0.0, i + 0.0);
+		}
+		MockIncrementalView testView = new MockIncrementalView();
+		testSet.attach(testView);
+		
+		testSet.setMaxPoints(5);
+		assertEquals(5, testSet.sizeOfData());
+		assertEquals(5.0, testSet.getX(0), 0.0);
+		assertEquals(DataChangeEvent.Type.POINTS_REMOVED, testView.getLastEvent().getType());
+		assertEquals(4, testView.getLastEvent().getToIndex());
+		
+		for (int i = 10; i < 10000; i++)
+		{
+			testSet.add(i + 0.0, i + 0.0);
+		}
+		assertEquals(5, testSet.sizeOfData());
+		assertEquals(9995.0, testSet.getX(0), 0.0);
+		assertEquals(9999.0, testSet.getX(4), 0.0);
+		assertEquals(1 + 9990, testView.getEvents().size());
+		
+		assertTrue(testSet.add(1.0, 1.0));
+		assertEquals(9995.0, testSet.getX(0), 0.0);
+		assertFalse(testSet.add(9995.0, 9995.0));
+		assertTrue(testSet.add(9995.0, 1.0));
+		assertTrue(testSet.add(1.0, 1.0));
+		assertFalse(testSet.add(9999.0, 9999.0));
+		
+		testSet.addAll(new double[] {20000.0, 20001.0, 3.0}, new double[] {1.0, 1.0, 1.0});
+		assertEquals(5, testSet.sizeOfData());
+		assertEquals(9997.0, testSet.getX(0), 0.0);
+		assertEquals(DataChangeEvent.Type.DATA_CHANGED, testView.getLastEvent().getType());
+		
+		testSet.setMaxPoints(0);
+		testSet.add(2.0, 2.0);
+		assertEquals(6, testSet.sizeOfData());
+	}
+	
+	/**
+	 * Tests that a bulk add bigger than the point limit does not leave the ring grown
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testMaxPointsBulkCapacity() throws InvalidRangeException
+	{
+		RingPointStore ring = new RingPointStore(8);
+		DataSet testSet = new DataSet("", "", "", 0.0, 100000.0, 0.0, 100000.0, ring);
+		testSet.setMaxPoints(100);
+		int count = 50000;
+		double[] xs = new double[count];
+		double[] ys = new double[count];
+		for (int i = 0; i < count; i++)
+		{
+			xs[i] = i;
+			ys[i] = i;
+		}
+		
+		testSet.addAll(xs, ys);
+		assertEquals(100, testSet.sizeOfData());
+		assertEquals(49900.0, testSet.getX(0), 0.0);
+		assertEquals(128, ring.getCapacity());
+		
+		testSet.replaceAll(xs, ys);
+		testSet.addAll(new double[] {60000.0}, new double[] {1.0});
+		assertEquals(100, testSet.sizeOfData());
+		assertEquals(60000.0, testSet.getX(99), 0.0);
+		assertEquals(128, ring.getCapacity());
+	}
+	
+	/**
+	 * Tests that a DataSet bounded by a window keeps only points near its largest X
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testWindowWidth() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet("", "", "", 0.0, 1000.0, 0.0, 1000.0);
+		testSet.setWindowWidth(10.0);
+		
+		for (int i = 0; i < 1000; i++)
+		{
+			testSet.add(i * 0.5, 1.0);
+		}
+		assertEquals(21, testSet.sizeOfData());
+		assertEquals(489.5, testSet.getX(0), 0.0);
+		
+		testSet.move(499.5, 1.0, 600.0, 1.0);
+		assertEquals(1, testSet.sizeOfData());
+		
+		assertEquals(0, testSet.addAll(new double[] {}, new double[] {}));
+		assertTrue(testSet.add(595.0, 2.0));
+		assertTrue(testSet.add(590.0, 2.0));
+		assertEquals(3, testSet.sizeOfData());
+		assertTrue(testSet.add(589.0, 2.0));
+		assertEquals(3, testSet.sizeOfData());
+		assertTrue(testSet.add(589.0, 2.0));
+	}
+	
+	/**
+	 * Tests that bounds must make sense
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testNegativeWindow() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet();
+		testSet.setWindowWidth(-1.0);
+	}
+	
 	/**
 	 * Tests removing invalid points from the DataSet
 	 * @throws InvalidRangeException If range is invalid
@@ -310,6 +1330,45 @@ public class DataSetTests
 		assertEquals(3.8, testSet.getDataAsArray()[0][1], 0.0);
 	}
 	
+	/**
+	 * Tests that duplicates are rejected and that a removed point can be added again,
+	 * including after a load replaced the data
+	 * @throws InvalidRangeException If range is invalid
+	 * @throws FileNotFoundException If file isn't found
+	 */
+	@Test
+	public void testDuplicatePoints() throws InvalidRangeException, FileNotFoundException
+	{
+		DataSet testSet = new DataSet("","","",-1000.0,1000.0,-1000.0,1000.0);
+		
+		for (int i = 0; i < 200; i++)
+		{
+			assertTrue(testSet.add(i % 20 + 0.0, i + 0.0));
+		}
+		for (int i = 0; i < 200; i++)
+		{
+			assertFalse(testSet.add(i % 20 + 0.0, i + 0.0));
+		}
+		assertTrue(testSet.add(-0.0, 0.0));
+		assertFalse(testSet.add(-0.0, 0.0));
+		assertEquals(201, testSet.sizeOfData());
+		
+		for (int i = 0; i < 200; i += 2)
+		{
+			testSet.remove(i % 20 + 0.0, i + 0.0);
+		}
+		assertEquals(101, testSet.sizeOfData());
+		for (int i = 0; i < 200; i++)
+		{
+			assertEquals(i % 2 == 0, testSet.add(i % 20 + 0.0, i + 0.0));
+		}
+		
+		testSet.load("customData");
+		assertFalse(testSet.add(0.0, 782.9228));
+		assertTrue(testSet.add(0.0, 1.0));
+		assertTrue(testSet.add(10.0, 10.0));
+	}
+	
 	/**
 	 * Tests loading data from a file
 	 * @throws InvalidRangeException If range is invalid
@@ -416,6 +1475,45 @@ public class DataSetTests
 		set1.setYMin(-1002.3);
 		set2.setYMin(-1002.3);
 		assertEquals(set1, set2);
+		assertEquals(set1.hashCode(), set2.hashCode());
+	}
+	
+	/**
+	 * Tests that the fingerprint follows the points and metadata whatever order
+	 * the points were added in, and comes back after an undo
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testFingerprint() throws InvalidRangeException
+	{
+		DataSet set1 = new DataSet("", "", "", 0.0, 10.0, 0.0, 10.0, new PersistentPointStore());
+		DataSet set2 = new DataSet();
+		long empty = set1.getFingerprint();
+		assertEquals(empty, set2.getFingerprint());
+		
+		set1.addAll(new double[] {1.0, 2.0, 3.0}, new double[] {1.0, 2.0, 3.0});
+		set2.add(3.0, 3.0);
+		set2.add(1.0, 1.0);
+		set2.add(2.0, 2.0);
+		long three = set1.getFingerprint();
+		assertEquals(three, set2.getFingerprint());
+		assertEquals(set1, set2);
+		
+		set2.move(2.0, 2.0, 2.0, 2.5);
+		assertFalse(three == set2.getFingerprint());
+		assertFalse(set1.equals(set2));
+		set2.move(2.0, 2.5, 2.0, 2.0);
+		assertEquals(three, set2.getFingerprint());
+		
+		set1.remove(1.0, 1.0);
+		assertTrue(set1.undo());
+		assertEquals(three, set1.getFingerprint());
+		
+		set2.setTitle("Title");
+		assertFalse(three == set2.getFingerprint());
+		
+		set1.replaceAll(new double[0], new double[0]);
+		assertEquals(empty, set1.getFingerprint());
 	}
 	
 	/**
@@ -463,6 +1561,12 @@ public class DataSetTests
 		set1.setYMin(-1002.3);
 		assertFalse(set1.equals(set2));
 		set2.setYMin(-1002.3);
+		
+		set1.add(1.0, 1.0);
+		set1.add(5.0, 5.0);
+		set2.add(1.0, 2.0);
+		set2.add(5.0, 5.0);
+		assertFalse(set1.equals(set2));
 	}
 	
 	/**
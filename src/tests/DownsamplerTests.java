@@ -0,0 +1,111 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import model.DataSet;
+import model.DataSnapshot;
+import model.Downsampler;
+import model.InvalidRangeException;
+
+import org.junit.Test;
+
+/**
+ * Tests cutting points down for drawing lines.
+ * @author Julian Jocque
+ *
+ */
+public class DownsamplerTests
+{
+	/**
+	 * Tests that M4 keeps the first, last, lowest and highest point of each column
+	 * and the points either side of the range
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testM4() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet("", "", "", -10.0, 100.0, -10.0, 100.0);
+		testSet.add(-5.0, 50.0);
+		for (int i = 0; i < 100; i++)
+		{
+			testSet.add(i * 0.1, (i * 37) % 11 + 0.0);
+		}
+		testSet.add(20.0, 50.0);
+		
+		DataSnapshot line = new Downsampler().downsample(testSet.snapshot(), 0.0, 10.0, 2,
+				Downsampler.Mode.M4);
+		assertEquals(-5.0, line.getX(0), 0.0);
+		assertEquals(20.0, line.getX(line.size() - 1), 0.0);
+		assertEquals(0.0, line.getX(1), 0.0);
+		assertEquals(9.9, line.getX(line.size() - 2), 1e-9);
+		assertTrue(line.size() <= 2 + 2 * 4);
+		
+		double[] lowest = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+		double[] highest = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		for (int i = 1; i < line.size() - 1; i++)
+		{
+			int column = line.getX(i) < 5.0 ? 0 : 1;
+			lowest[column] = Math.min(lowest[column], line.getY(i));
+			highest[column] = Math.max(highest[column], line.getY(i));
+			assertTrue(line.getX(i - 1) < line.getX(i));
+		}
+		for (int column = 0; column < 2; column++)
+		{
+			assertEquals(0.0, lowest[column], 0.0);
+			assertEquals(10.0, highest[column], 0.0);
+		}
+	}
+	
+	/**
+	 * Tests that LTTB keeps the requested number of points including both ends
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testLargestTriangles() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet("", "", "", 0.0, 1000.0, -2.0, 2.0);
+		for (int i = 0; i < 1000; i++)
+		{
+			testSet.add(i + 0.0, Math.sin(i / 50.0));
+		}
+		testSet.add(500.5, 2.0);
+		
+		DataSnapshot line = new Downsampler().downsample(testSet.snapshot(), 0.0, 1000.0, 25,
+				Downsampler.Mode.LTTB);
+		assertEquals(50, line.size());
+		assertEquals(0.0, line.getX(0), 0.0);
+		assertEquals(999.0, line.getX(49), 0.0);
+		boolean keptSpike = false;
+		for (int i = 0; i < line.size(); i++)
+		{
+			keptSpike |= line.getY(i) == 2.0;
+		}
+		assertTrue(keptSpike);
+	}
+	
+	/**
+	 * Tests that the result is reused until the points or the viewport change
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testCached() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet();
+		for (int i = 0; i < 100; i++)
+		{
+			testSet.add(i * 0.1, i * 0.1);
+		}
+		Downsampler downsampler = new Downsampler();
+		
+		DataSnapshot first = downsampler.downsample(testSet.snapshot(), 0.0, 10.0, 10, Downsampler.Mode.M4);
+		assertSame(first, downsampler.downsample(testSet.snapshot(), 0.0, 10.0, 10, Downsampler.Mode.M4));
+		assertNotSame(first, downsampler.downsample(testSet.snapshot(), 0.0, 5.0, 10, Downsampler.Mode.M4));
+		
+		DataSnapshot second = downsampler.downsample(testSet.snapshot(), 0.0, 5.0, 10, Downsampler.Mode.M4);
+		testSet.remove(0.0, 0.0);
+		assertNotSame(second, downsampler.downsample(testSet.snapshot(), 0.0, 5.0, 10, Downsampler.Mode.M4));
+		
+		DataSnapshot points = testSet.snapshot();
+		assertSame(points, downsampler.downsample(points, 0.0, 5.0, 10, Downsampler.Mode.NONE));
+	}
+}
@@ -0,0 +1,47 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import model.DataSet;
+import model.FloatPointStore;
+import model.InvalidRangeException;
+import model.PointStore;
+
+import org.junit.Test;
+
+/**
+ * Tests the PointStore that keeps its points as floats.
+ * @author Julian Jocque
+ *
+ */
+public class FloatPointStoreTests extends PointStoreContractTests
+{
+	@Override
+	protected PointStore createStore(int capacity)
+	{
+		return new FloatPointStore(capacity);
+	}
+
+	/**
+	 * Tests that values are rounded to floats and a DataSet judges duplicates on the rounded values
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testRounding() throws InvalidRangeException
+	{
+		FloatPointStore store = new FloatPointStore();
+		store.insert(0, 0.1, 1e300);
+		assertEquals((double)0.1f, store.getX(0), 0.0);
+		assertEquals(Double.POSITIVE_INFINITY, store.getY(0), 0.0);
+		assertEquals((double)0.1f, store.storedValue(0.1), 0.0);
+
+		DataSet testSet = new DataSet("", "", "", 0.0, 10.0, 0.0, 10.0, new FloatPointStore());
+		assertTrue(testSet.add(1.0, 0.1));
+		assertFalse(testSet.add(1.00000001, 0.1));
+		assertEquals(1, testSet.addAll(new double[] {2.0, 2.00000001}, new double[] {0.5, 0.5}));
+		assertTrue(testSet.move(2.0, 0.5, 3.0, 0.3));
+		assertEquals((double)0.3f, testSet.getY(1), 0.0);
+		testSet.remove(1.0, 0.1);
+		assertEquals(1, testSet.sizeOfData());
+	}
+}
@@ -0,0 +1,200 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import model.DataSet;
+import model.InvalidRangeException;
+import model.MappedPointStore;
+import model.PointStore;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the PointStore that keeps its points in a memory mapped file.
+ * @author Julian Jocque
+ *
+ */
+public class MappedPointStoreTests extends PointStoreContractTests
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Makes a store over a new file in the temporary folder, the file grows as it needs to
+	 */
+	@Override
+	protected PointStore createStore(int capacity)
+	{
+		try
+		{
+			return new MappedPointStore(folder.newFile());
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Tests that points written to a file are there when it is opened again
+	 * @throws IOException If the file cannot be used
+	 */
+	@Test
+	public void testReopen() throws IOException
+	{
+		File path = new File(folder.getRoot(), "points.spp");
+		MappedPointStore store = new MappedPointStore(path);
+		for (int i = 0; i < 5000; i++)
+		{
+			store.insert(i, i, -i);
+		}
+		store.insert(0, -1.0, 1.0);
+		store.remove(2500);
+		store.close();
+
+		store = new MappedPointStore(path);
+		assertEquals(5000, store.size());
+		assertEquals(-1.0, store.getX(0), 0.0);
+		assertEquals(1.0, store.getY(0), 0.0);
+		assertEquals(2500.0, store.getX(2500), 0.0);
+		assertEquals(-4999.0, store.getY(4999), 0.0);
+
+		PointStore copy = store.copy();
+		store.clear();
+		assertEquals(5000, copy.size());
+		assertEquals(2500.0, copy.getX(2500), 0.0);
+		copy.insert(5000, 5000.0, 0.0);
+		assertEquals(5001, copy.size());
+		File copyPath = ((MappedPointStore)copy).getPath();
+		assertTrue(copyPath.exists());
+		copy.close();
+		assertFalse(copyPath.exists());
+		store.close();
+	}
+
+	/**
+	 * Tests that a frozen view keeps the points it was made with while the store changes
+	 * and grows under it, and that no other file is made for it
+	 * @throws IOException If the file cannot be used
+	 * @throws InterruptedException If interrupted while waiting for the reader
+	 */
+	@Test
+	public void testFrozenViewWhileGrowing() throws IOException, InterruptedException
+	{
+		File path = new File(folder.getRoot(), "points.spp");
+		MappedPointStore store = new MappedPointStore(path);
+		final int count = 200000;
+		double[] xs = new double[count];
+		double[] ys = new double[count];
+		for (int i = 0; i < count; i++)
+		{
+			xs[i] = i;
+			ys[i] = -i;
+		}
+		store.setAll(xs, ys, count);
+		final PointStore view = store.frozenView();
+		assertSame(view, view.frozenView());
+
+		final boolean[] readerFailed = new boolean[1];
+		Thread reader = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (int pass = 0; pass < 5; pass++)
+				{
+					for (int i = 0; i < count; i++)
+					{
+						if (view.getX(i) != i || view.getY(i) != -i)
+						{
+							readerFailed[0] = true;
+						}
+					}
+				}
+			}
+		});
+		reader.start();
+		store.removeFirst(1000);
+		store.insert(70000, 0.5, 0.5);
+		for (int i = 0; i < count; i++)
+		{
+			xs[i] = 2.0 * i;
+			ys[i] = 2.0 * i;
+		}
+		store.setAll(xs, ys, count);
+		for (int i = 0; i < 1000000; i++)
+		{
+			store.insert(store.size(), count * 2.0 + i, 0.0);
+		}
+		reader.join();
+
+		assertFalse(readerFailed[0]);
+		assertEquals(count, view.size());
+		assertEquals(123456.0, view.getX(123456), 0.0);
+		assertEquals(-(count - 1.0), view.getY(count - 1), 0.0);
+		assertEquals(1, folder.getRoot().list().length);
+		store.close();
+	}
+
+	/**
+	 * Tests that a frozen view cannot be changed
+	 * @throws IOException If the file cannot be used
+	 */
+	@Test(expected=UnsupportedOperationException.class)
+	public void testFrozenViewReadOnly() throws IOException
+	{
+		MappedPointStore store = new MappedPointStore(new File(folder.getRoot(), "points.spp"));
+		store.insert(0, 1.0, 1.0);
+		PointStore view = store.frozenView();
+		store.close();
+		view.insert(1, 2.0, 2.0);
+	}
+
+	/**
+	 * Tests that a file which is not a point file is refused
+	 * @throws IOException If the file cannot be used
+	 */
+	@Test(expected=IOException.class)
+	public void testNotAPointFile() throws IOException
+	{
+		File path = folder.newFile("other.spp");
+		FileOutputStream out = new FileOutputStream(path);
+		out.write(new byte[32]);
+		out.close();
+		new MappedPointStore(path);
+	}
+
+	/**
+	 * Tests a DataSet over a point file, including adding to it after opening it again
+	 * @throws IOException If the file cannot be used
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testDataSet() throws IOException, InvalidRangeException
+	{
+		File path = new File(folder.getRoot(), "set.spp");
+		DataSet testSet = new DataSet("", "", "", 0.0, 100.0, 0.0, 100.0, new MappedPointStore(path));
+		assertEquals(3, testSet.addAll(new double[] {5.0, 1.0, 3.0}, new double[] {5.0, 1.0, 3.0}));
+		testSet.close();
+
+		testSet = new DataSet("", "", "", 0.0, 100.0, 0.0, 100.0, new MappedPointStore(path));
+		assertEquals(3, testSet.sizeOfData());
+		assertFalse(testSet.add(3.0, 3.0));
+		assertEquals(2, testSet.addAll(new double[] {4.0, 0.5, 5.0}, new double[] {4.0, 0.5, 5.0}));
+		double[] xs = {0.5, 1.0, 3.0, 4.0, 5.0};
+		for (int i = 0; i < xs.length; i++)
+		{
+			assertEquals(xs[i], testSet.getX(i), 0.0);
+		}
+		assertEquals(5, testSet.getStatistics().getCount());
+		assertEquals(2.7, testSet.getStatistics().getMeanY(), 1e-12);
+		testSet.close();
+	}
+}
@@ -0,0 +1,69 @@
+package tests;
+
+import java.util.ArrayList;
+
+import model.DataChangeEvent;
+import view.IncrementalDataView;
+
+
+/**
+ * MockIncrementalView used as a test double for testing the changes DataSet reports.
+ * @author Julian Jocque
+ *
+ */
+public class MockIncrementalView implements IncrementalDataView
+{
+	private ArrayList<DataChangeEvent> events;
+	private int updateCount;
+	
+	public MockIncrementalView()
+	{
+		events = new ArrayList<DataChangeEvent>();
+		updateCount = 0;
+	}
+
+	/**
+	 * Counts plain updates, a DataSet should never send these to this view
+	 */
+	@Override
+	public void update() 
+	{
+		updateCount++;
+	}
+
+	/**
+	 * Records the change this view was told about
+	 */
+	@Override
+	public void dataChanged(DataChangeEvent event) 
+	{
+		events.add(event);
+	}
+
+	/**
+	 * Getter for the plain update count
+	 * @return The number of plain updates this view has received
+	 */
+	public int getUpdateCount()
+	{
+		return updateCount;
+	}
+
+	/**
+	 * Getter for the changes received
+	 * @return Every change this view has been told about, oldest first
+	 */
+	public ArrayList<DataChangeEvent> getEvents()
+	{
+		return events;
+	}
+
+	/**
+	 * Getter for the most recent change received
+	 * @return The last change this view was told about
+	 */
+	public DataChangeEvent getLastEvent()
+	{
+		return events.get(events.size() - 1);
+	}
+}
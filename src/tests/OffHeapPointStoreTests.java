@@ -0,0 +1,141 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import model.DataPoint;
+import model.DataSet;
+import model.InvalidRangeException;
+import model.OffHeapPointStore;
+import model.PointStore;
+import model.PointVisitor;
+
+import org.junit.Test;
+
+/**
+ * Tests the PointStore that keeps its points off the heap.
+ * @author Julian Jocque
+ *
+ */
+public class OffHeapPointStoreTests extends PointStoreContractTests
+{
+	@Override
+	protected PointStore createStore(int capacity)
+	{
+		return new OffHeapPointStore(capacity);
+	}
+
+	/**
+	 * Tests that nearest point and rectangle queries on a DataSet off the heap, which scan
+	 * along X rather than build a spatial index, agree with the same DataSet on the heap
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testDataSetQueries() throws InvalidRangeException
+	{
+		DataSet offHeap = new DataSet("", "", "", 20.0, 80.0, 20.0, 80.0, new OffHeapPointStore());
+		DataSet onHeap = new DataSet("", "", "", 20.0, 80.0, 20.0, 80.0);
+		offHeap.setKeepOutOfRange(true);
+		onHeap.setKeepOutOfRange(true);
+		Random random = new Random(17);
+		double[] xs = new double[20000];
+		double[] ys = new double[20000];
+		for (int i = 0; i < xs.length; i++)
+		{
+			xs[i] = random.nextDouble() * 100;
+			ys[i] = random.nextDouble() * 100;
+		}
+		offHeap.addAll(xs, ys);
+		onHeap.addAll(xs, ys);
+
+		for (int query = 0; query < 200; query++)
+		{
+			double x = random.nextDouble() * 120 - 10;
+			double y = random.nextDouble() * 120 - 10;
+			assertEquals(onHeap.nearest(x, y), offHeap.nearest(x, y));
+			assertEquals(onHeap.nearestVisible(x, y), offHeap.nearestVisible(x, y));
+			DataPoint[] expected = onHeap.kNearest(x, y, 5);
+			DataPoint[] found = offHeap.kNearest(x, y, 5);
+			assertEquals(expected.length, found.length);
+			for (int i = 0; i < found.length; i++)
+			{
+				assertEquals(Math.hypot(expected[i].getX() - x, expected[i].getY() - y),
+						Math.hypot(found[i].getX() - x, found[i].getY() - y), 0.0);
+			}
+		}
+
+		final double[] sums = new double[2];
+		onHeap.withinRect(30.0, 40.0, 35.0, 90.0, new PointVisitor()
+		{
+			@Override
+			public void visit(double x, double y)
+			{
+				sums[0] += x * 3 + y;
+			}
+		});
+		offHeap.withinRect(30.0, 40.0, 35.0, 90.0, new PointVisitor()
+		{
+			@Override
+			public void visit(double x, double y)
+			{
+				sums[1] += x * 3 + y;
+			}
+		});
+		assertEquals(sums[0], sums[1], 1e-6);
+		assertTrue(sums[0] > 0);
+
+		offHeap.setXMin(60.0);
+		offHeap.setXMax(60.0);
+		assertNull(offHeap.nearestVisible(50.0, 50.0));
+		offHeap.close();
+	}
+
+	/**
+	 * Tests moving, removing from the front and copying over more points than fit in one copying pass
+	 */
+	@Test
+	public void testShiftAndCopy()
+	{
+		OffHeapPointStore store = new OffHeapPointStore();
+		int count = 20000;
+		double[] xs = new double[count];
+		double[] ys = new double[count];
+		for (int i = 0; i < count; i++)
+		{
+			xs[i] = i;
+			ys[i] = -i;
+		}
+		store.setAll(xs, ys, count);
+
+		store.move(0, count - 1, count, -count);
+		assertEquals(1.0, store.getX(0), 0.0);
+		assertEquals(count, store.getX(count - 1), 0.0);
+		store.insert(0, 0.0, 0.0);
+		assertEquals(1.0, store.getX(1), 0.0);
+		assertEquals(-(count - 1.0), store.getY(count - 1), 0.0);
+
+		store.removeFirst(10000);
+		assertEquals(10001, store.size());
+		assertEquals(10000.0, store.getX(0), 0.0);
+
+		PointStore copy = store.copy();
+		store.clear();
+		assertEquals(10001, copy.size());
+		assertEquals(count, copy.getX(10000), 0.0);
+		assertTrue(copy.isOffHeap());
+	}
+
+	/**
+	 * Tests that a closed store takes no more points
+	 */
+	@Test(expected=IllegalStateException.class)
+	public void testClosed()
+	{
+		OffHeapPointStore store = new OffHeapPointStore();
+		store.insert(0, 1.0, 1.0);
+		store.close();
+		assertEquals(0, store.size());
+		store.insert(0, 1.0, 1.0);
+	}
+}
@@ -0,0 +1,56 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import model.PersistentPointStore;
+import model.PointStore;
+
+import org.junit.Test;
+
+/**
+ * Tests the PointStore whose versions share structure.
+ * @author Julian Jocque
+ *
+ */
+public class PersistentPointStoreTests extends PointStoreContractTests
+{
+	@Override
+	protected PointStore createStore(int capacity)
+	{
+		return new PersistentPointStore();
+	}
+
+	/**
+	 * Tests that a copy keeps its points however the store changes afterwards
+	 */
+	@Test
+	public void testCopyIsFrozen()
+	{
+		PersistentPointStore store = new PersistentPointStore();
+		double[] xs = new double[5000];
+		double[] ys = new double[5000];
+		for (int i = 0; i < xs.length; i++)
+		{
+			xs[i] = i;
+			ys[i] = 2 * i;
+		}
+		store.setAll(xs, ys, xs.length);
+		PointStore copy = store.copy();
+
+		store.remove(0);
+		store.insert(2500, 0.5, 0.5);
+		store.move(100, 100, -1.0, -1.0);
+		store.removeFirst(1000);
+
+		assertEquals(5000, copy.size());
+		for (int i = 0; i < xs.length; i++)
+		{
+			assertEquals(i, copy.getX(i), 0.0);
+			assertEquals(2.0 * i, copy.getY(i), 0.0);
+		}
+		assertEquals(4000, store.size());
+		store.clear();
+		assertEquals(0, store.size());
+		assertEquals(5000, copy.size());
+	}
+}
@@ -0,0 +1,121 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import model.DataSet;
+import model.InvalidRangeException;
+import model.PointIngestQueue;
+
+import org.junit.Test;
+
+/**
+ * Tests streaming points into a DataSet through a PointIngestQueue.
+ * @author Julian Jocque
+ *
+ */
+public class PointIngestQueueTests
+{
+	/**
+	 * Tests that a drain adds everything queued with one update of the views
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testDrain() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet();
+		MockView testView = new MockView();
+		testSet.attach(testView);
+		PointIngestQueue queue = new PointIngestQueue(testSet, 10);
+
+		assertEquals(16, queue.capacity());
+		assertTrue(queue.offer(3.0, 3.0));
+		assertTrue(queue.offer(1.0, 1.0));
+		assertTrue(queue.offer(2.0, 2.0));
+		assertTrue(queue.offer(2.0, 2.0));
+		assertTrue(queue.offer(20.0, 2.0));
+		assertEquals(5, queue.size());
+
+		assertEquals(5, queue.drain());
+		assertEquals(0, queue.drain());
+		assertEquals(3, testSet.sizeOfData());
+		assertEquals(1.0, testSet.getX(0), 0.0);
+		assertEquals(2, queue.getRejectedCount());
+		assertEquals(1, testView.getUpdateCount());
+	}
+
+	/**
+	 * Tests that offers to a full queue are dropped and counted
+	 * @throws InvalidRangeException If range is invalid
+	 */
+	@Test
+	public void testFullQueueDrops() throws InvalidRangeException
+	{
+		DataSet testSet = new DataSet("", "", "", 0.0, 100.0, 0.0, 100.0);
+		PointIngestQueue queue = new PointIngestQueue(testSet, 4);
+
+		for (int i = 0; i < 6; i++)
+		{
+			assertEquals(i < 4, queue.offer(i, i));
+		}
+		assertEquals(0, queue.remainingCapacity());
+		assertEquals(2, queue.getDroppedCount());
+
+		queue.drain();
+		assertEquals(4, queue.remainingCapacity());
+		assertTrue(queue.offer(50.0, 50.0));
+		queue.drain();
+		assertEquals(5, testSet.sizeOfData());
+	}
+
+	/**
+	 * Tests several producers offering while the consumer drains
+	 * @throws InvalidRangeException If range is invalid
+	 * @throws InterruptedException If interrupted while waiting for the producers
+	 */
+	@Test
+	public void testManyProducers() throws InvalidRangeException, InterruptedException
+	{
+		DataSet testSet = new DataSet("", "", "", 0.0, 1000000.0, 0.0, 1000000.0);
+		final PointIngestQueue queue = new PointIngestQueue(testSet, 1024);
+		final int producers = 4;
+		final int perProducer = 20000;
+		Thread[] threads = new Thread[producers];
+		for (int p = 0; p < producers; p++)
+		{
+			final int offset = p;
+			threads[p] = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					for (int i = 0; i < perProducer; i++)
+					{
+						double value = i * producers + offset;
+						while (!queue.offer(value, value))
+						{
+							Thread.yield();
+						}
+					}
+				}
+			});
+			threads[p].start();
+		}
+
+		int drained = 0;
+		while (drained < producers * perProducer)
+		{
+			drained += queue.drain();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		assertEquals(producers * perProducer, testSet.sizeOfData());
+		assertEquals(0, queue.getRejectedCount());
+		for (int i = 0; i < testSet.sizeOfData(); i++)
+		{
+			assertEquals(i, testSet.getX(i), 0.0);
+		}
+	}
+}
@@ -0,0 +1,248 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import model.ColumnarPointStore;
+import model.PointStore;
+
+import org.junit.Test;
+
+/**
+ * Tests the behaviour every PointStore shares. Each store's own test class extends this one
+ * and says how to make the store, then adds tests for whatever is particular to it.
+ * ColumnarPointStore is the reference the other stores are checked against.
+ * @author Julian Jocque
+ *
+ */
+public abstract class PointStoreContractTests
+{
+	/**
+	 * Makes an empty store of the kind being tested
+	 * @param capacity How many points it should have room for before growing,
+	 * stores that do not grow in steps may ignore it
+	 * @return The new store
+	 */
+	protected abstract PointStore createStore(int capacity);
+
+	/**
+	 * Tests inserting at the front, middle and back of the store
+	 */
+	@Test
+	public void testInsert()
+	{
+		PointStore store = createStore(16);
+
+		store.insert(0, 2.0, 20.0);
+		store.insert(0, 1.0, 10.0);
+		store.insert(2, 4.0, 40.0);
+		store.insert(2, 3.0, 30.0);
+
+		assertEquals(4, store.size());
+		for (int i = 0; i < store.size(); i++)
+		{
+			assertEquals(i + 1.0, store.getX(i), 0.0);
+			assertEquals((i + 1.0) * 10, store.getY(i), 0.0);
+		}
+	}
+
+	/**
+	 * Tests that the store grows past its starting capacity
+	 */
+	@Test
+	public void testGrow()
+	{
+		PointStore store = createStore(1);
+
+		for (int i = 0; i < 1000; i++)
+		{
+			store.insert(i, i, -i);
+		}
+
+		assertEquals(1000, store.size());
+		assertEquals(999.0, store.getX(999), 0.0);
+		assertEquals(-999.0, store.getY(999), 0.0);
+	}
+
+	/**
+	 * Tests removing points and clearing the store
+	 */
+	@Test
+	public void testRemoveAndClear()
+	{
+		PointStore store = createStore(16);
+		store.insert(0, 1.0, 1.5);
+		store.insert(1, 2.0, 2.5);
+		store.insert(2, 3.0, 3.5);
+
+		store.remove(1);
+		assertEquals(2, store.size());
+		assertEquals(3.0, store.getX(1), 0.0);
+		assertEquals(3.5, store.getY(1), 0.0);
+
+		store.clear();
+		assertEquals(0, store.size());
+	}
+
+	/**
+	 * Tests reading past the end of the store
+	 */
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testReadPastEnd()
+	{
+		PointStore store = createStore(16);
+		store.insert(0, 1.0, 1.0);
+		store.getX(1);
+	}
+
+	/**
+	 * Tests filling the store in one go, moving points both ways, searching and
+	 * removing from the front, and that a copy does not follow later changes
+	 */
+	@Test
+	public void testBulkMoveAndCopy()
+	{
+		PointStore store = createStore(16);
+		int count = 3000;
+		double[] xs = new double[count];
+		double[] ys = new double[count];
+		for (int i = 0; i < count; i++)
+		{
+			xs[i] = i / 2;
+			ys[i] = i;
+		}
+		store.setAll(xs, ys, count);
+		assertEquals(count, store.size());
+		assertEquals(20, store.lowerBound(10.0));
+		assertEquals(22, store.upperBound(10.0));
+
+		store.move(0, count - 1, 2000.0, -1.0);
+		assertEquals(1.0, store.getY(0), 0.0);
+		assertEquals(2000.0, store.getX(count - 1), 0.0);
+		store.move(count - 1, 0, -1.0, -2.0);
+		assertEquals(-1.0, store.getX(0), 0.0);
+		assertEquals(1.0, store.getY(1), 0.0);
+
+		PointStore copy = store.copy();
+		store.removeFirst(1000);
+		store.insert(0, -5.0, -5.0);
+		assertEquals(count - 999, store.size());
+		assertEquals(1000.0, store.getY(1), 0.0);
+		assertEquals(count, copy.size());
+		assertEquals(-1.0, copy.getX(0), 0.0);
+		assertEquals(999.0, copy.getY(999), 0.0);
+	}
+
+	/**
+	 * Tests random inserts, removes, moves and binary searches against a plain columnar store,
+	 * and that a copy taken half way through keeps its points. Values are exact in a float
+	 * so that stores keeping less precision hold the same points.
+	 */
+	@Test
+	public void testMatchesColumnar()
+	{
+		Random random = new Random(7);
+		PointStore store = createStore(16);
+		ColumnarPointStore expected = new ColumnarPointStore();
+		PointStore copy = null;
+		PointStore copyExpected = null;
+		for (int step = 0; step < 20000; step++)
+		{
+			int choice = random.nextInt(20);
+			if (choice < 11 || expected.size() == 0)
+			{
+				double x = random.nextInt(5000) / 4.0;
+				double y = random.nextInt(1000) / 8.0;
+				int at = expected.upperBound(x);
+				store.insert(at, x, y);
+				expected.insert(at, x, y);
+			}
+			else if (choice < 15)
+			{
+				int at = random.nextInt(expected.size());
+				store.remove(at);
+				expected.remove(at);
+			}
+			else if (choice < 18)
+			{
+				int from = random.nextInt(expected.size());
+				int to = random.nextInt(expected.size());
+				double x = expected.getX(to);
+				double y = random.nextInt(1000) / 8.0;
+				store.move(from, to, x, y);
+				expected.move(from, to, x, y);
+			}
+			else if (choice < 19)
+			{
+				double x = random.nextInt(5000) / 4.0;
+				assertEquals(expected.lowerBound(x), store.lowerBound(x));
+				assertEquals(expected.upperBound(x), store.upperBound(x));
+			}
+			else
+			{
+				int count = random.nextInt(Math.min(expected.size(), 20) + 1);
+				store.removeFirst(count);
+				expected.removeFirst(count);
+			}
+			if (step == 10000)
+			{
+				copy = store.copy();
+				copyExpected = expected.copy();
+			}
+		}
+		assertSamePoints(expected, store);
+		assertSamePoints(copyExpected, copy);
+	}
+
+	/**
+	 * Tests that a frozen view keeps its points through appends, inserts, moves
+	 * and removals on the store it came from
+	 */
+	@Test
+	public void testFrozenView()
+	{
+		PointStore store = createStore(4);
+		for (int i = 0; i < 100; i++)
+		{
+			store.insert(i, i, -i);
+		}
+		PointStore view = store.frozenView();
+		store.insert(100, 100.0, -100.0);
+		PointStore later = store.frozenView();
+		store.insert(50, 49.5, 0.0);
+		store.move(0, 10, 10.5, 0.0);
+		store.removeFirst(5);
+		for (int i = 101; i < 200; i++)
+		{
+			store.insert(store.size(), i, -i);
+		}
+
+		assertEquals(100, view.size());
+		assertEquals(101, later.size());
+		for (int i = 0; i < 100; i++)
+		{
+			assertEquals(i, view.getX(i), 0.0);
+			assertEquals(-i, view.getY(i), 0.0);
+			assertEquals(i, later.getX(i), 0.0);
+		}
+		assertEquals(100.0, later.getX(100), 0.0);
+		assertEquals(196, store.size());
+		assertEquals(6.0, store.getX(0), 0.0);
+	}
+
+	/**
+	 * Checks that two stores hold the same points in the same order
+	 * @param expected The store holding the right points
+	 * @param actual The store to check
+	 */
+	protected static void assertSamePoints(PointStore expected, PointStore actual)
+	{
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++)
+		{
+			assertEquals(expected.getX(i), actual.getX(i), 0.0);
+			assertEquals(expected.getY(i), actual.getY(i), 0.0);
+		}
+	}
+}
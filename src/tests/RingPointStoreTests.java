@@ -0,0 +1,137 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import model.PointStore;
+import model.RingPointStore;
+
+import org.junit.Test;
+
+/**
+ * Tests the circular buffer PointStore used by bounded DataSets,
+ * mostly that it keeps its order while the points wrap around the end of the buffer.
+ * @author Julian Jocque
+ *
+ */
+public class RingPointStoreTests extends PointStoreContractTests
+{
+	@Override
+	protected PointStore createStore(int capacity)
+	{
+		return new RingPointStore(capacity);
+	}
+
+	/**
+	 * Tests inserting at the front, middle and back while the buffer wraps around
+	 */
+	@Test
+	public void testInsertWrapping()
+	{
+		RingPointStore store = new RingPointStore(8);
+		for (int i = 0; i < 6; i++)
+		{
+			store.insert(i, i, -i);
+		}
+		store.removeFirst(4);
+		store.insert(2, 7.0, -7.0);
+		store.insert(2, 6.0, -6.0);
+		store.insert(0, 3.0, -3.0);
+		store.insert(3, 5.5, -5.5);
+
+		double[] expected = {3.0, 4.0, 5.0, 5.5, 6.0, 7.0};
+		assertEquals(expected.length, store.size());
+		for (int i = 0; i < expected.length; i++)
+		{
+			assertEquals(expected[i], store.getX(i), 0.0);
+			assertEquals(-expected[i], store.getY(i), 0.0);
+		}
+	}
+
+	/**
+	 * Tests removing from either side and moving points across the wrap
+	 */
+	@Test
+	public void testRemoveAndMove()
+	{
+		RingPointStore store = new RingPointStore(4);
+		for (int i = 0; i < 4; i++)
+		{
+			store.insert(i, i, i);
+		}
+		store.removeFirst(2);
+		store.insert(2, 4.0, 4.0);
+		store.insert(3, 5.0, 5.0);
+
+		store.move(0, 3, 6.0, 6.0);
+		assertEquals(3.0, store.getX(0), 0.0);
+		assertEquals(6.0, store.getX(3), 0.0);
+		store.move(3, 0, 2.0, 2.0);
+		assertEquals(2.0, store.getX(0), 0.0);
+		assertEquals(5.0, store.getX(3), 0.0);
+
+		store.remove(3);
+		store.remove(0);
+		assertEquals(2, store.size());
+		assertEquals(3.0, store.getX(0), 0.0);
+		assertEquals(4.0, store.getY(1), 0.0);
+	}
+
+	/**
+	 * Tests that the buffer grows past its capacity while wrapped without losing order
+	 */
+	@Test
+	public void testGrowWrapped()
+	{
+		RingPointStore store = new RingPointStore(2);
+		store.insert(0, 1.0, 1.0);
+		store.insert(1, 2.0, 2.0);
+		store.removeFirst(1);
+		for (int i = 0; i < 100; i++)
+		{
+			store.insert(store.size(), i + 3.0, i + 3.0);
+		}
+
+		assertEquals(101, store.size());
+		for (int i = 0; i < store.size(); i++)
+		{
+			assertEquals(i + 2.0, store.getX(i), 0.0);
+		}
+	}
+
+	/**
+	 * Tests shrinking the buffer after it grew, keeping the points in order
+	 */
+	@Test
+	public void testTrimToCapacity()
+	{
+		RingPointStore store = new RingPointStore(4);
+		for (int i = 0; i < 1000; i++)
+		{
+			store.insert(i, i, -i);
+		}
+		assertEquals(1024, store.getCapacity());
+		store.removeFirst(995);
+
+		store.trimToCapacity(6);
+		assertEquals(8, store.getCapacity());
+		assertEquals(5, store.size());
+		for (int i = 0; i < store.size(); i++)
+		{
+			assertEquals(995.0 + i, store.getX(i), 0.0);
+			assertEquals(-995.0 - i, store.getY(i), 0.0);
+		}
+		store.trimToCapacity(2);
+		assertEquals(8, store.getCapacity());
+	}
+
+	/**
+	 * Tests removing more points than the store holds
+	 */
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testRemoveTooMany()
+	{
+		RingPointStore store = new RingPointStore(4);
+		store.insert(0, 1.0, 1.0);
+		store.removeFirst(2);
+	}
+}
@@ -0,0 +1,17 @@
+package view;
+
+import model.DataChangeEvent;
+
+/**
+ * A DataView that wants to be told what changed so it can update only that.
+ * DataSets call dataChanged instead of update on views implementing this.
+ * @author Julian Jocque
+ */
+public interface IncrementalDataView extends DataView
+{
+	/**
+	 * Updates the view based on a single change to the DataModel it is observing
+	 * @param event What changed
+	 */
+	public void dataChanged(DataChangeEvent event);
+}
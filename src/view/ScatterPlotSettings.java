@@ -2,6 +2,8 @@ package view;
 
 import java.awt.Color;
 
+import model.Downsampler;
+
 /**
  * The settings for a ScatterPlotView
  * @author Julian Jocque
@@ -14,6 +16,7 @@ public class ScatterPlotSettings
 	private int pointRadius;
 	private boolean drawLines;
 	private boolean drawPoints;
+	private Downsampler.Mode downsampleMode;
 	
 	/**
 	 * Default constructor, sets default settings
@@ -25,6 +28,7 @@ public class ScatterPlotSettings
 		setPointRadius(3);
 		drawLines = true;
 		setDrawPoints(true);
+		setDownsampleMode(Downsampler.Mode.M4);
 	}
 
 	/**
@@ -117,4 +121,30 @@ public class ScatterPlotSettings
 		this.drawPoints = drawPoints;
 	}
 
+	/**
+	 * Gets how lines are downsampled when there are more points than pixels
+	 * @return The current downsampling mode
+	 */
+	public Downsampler.Mode getDownsampleMode() 
+	{
+		return downsampleMode;
+	}
+
+	/**
+	 * Sets how lines are downsampled when there are more points than pixels
+	 * Sets NONE if given null
+	 * @param downsampleMode The downsampling mode to use
+	 */
+	public void setDownsampleMode(Downsampler.Mode downsampleMode) 
+	{
+		if (downsampleMode == null)
+		{
+			this.downsampleMode = Downsampler.Mode.NONE;
+		}
+		else
+		{
+			this.downsampleMode = downsampleMode;
+		}
+	}
+
 }
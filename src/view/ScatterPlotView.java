@@ -3,6 +3,7 @@ package view;
 import java.awt.BorderLayout;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
@@ -11,23 +12,39 @@ import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 
+import model.DataChangeEvent;
+import model.DataPoint;
 import model.DataSet;
+import model.DataSnapshot;
+import model.Downsampler;
+import model.LodLevel;
 
 /**
  * ScatterPlot view for displaying a DataModel as a scatter plot.
  * Click to add points to the DataSet.
  * Click and drag to drag points around.
+ * Press Ctrl+Z to undo and Ctrl+Y to redo, when the DataSet keeps its points for undo.
  * Press space to toggle displaying lines.
  * Press period to toggle displaying points.
+ * Press D to change how dense lines are downsampled.
  * @author Julian Jocque
  */
-public class ScatterPlotView extends JPanel implements DataView, MouseListener, MouseMotionListener
+public class ScatterPlotView extends JPanel implements IncrementalDataView, MouseListener, MouseMotionListener
 {
 	private ScatterPlotSettings settings;
+	private Downsampler downsampler;
 	private DataSet dataset;
 	private JFrame mainWindow;
+	private boolean dragging;
+	private double xScale;
+	private double yScale;
+	private double xMin;
+	private double xMax;
+	private double yMin;
+	private double yMax;
     
     private static final int PADDING = 100;
+    private static final int LOD_POINTS_PER_PIXEL = 4;
     private static final int WINDOW_WIDTH = 900;
     private static final int WINDOW_HEIGHT = 800;
     
@@ -40,6 +57,7 @@ public class ScatterPlotView extends JPanel implements DataView, MouseListener,
     	dataset = setToUse;
     	mainWindow = new JFrame();
     	settings = new ScatterPlotSettings();
+    	downsampler = new Downsampler();
 	}
 
 	/**
@@ -50,6 +68,51 @@ public class ScatterPlotView extends JPanel implements DataView, MouseListener,
 	{
 		repaint();
 	}
+	
+	/**
+	 * Repaints only the part of the plot a change to some points touched,
+	 * anything else repaints the whole plot
+	 */
+	@Override
+	public void dataChanged(DataChangeEvent event)
+	{
+		if (event.hasPoints())
+		{
+			repaint(dirtyArea(event));
+		}
+		else
+		{
+			repaint();
+		}
+	}
+	
+	/**
+	 * Works out the area of the plot a change to some points touched. That is every
+	 * position in the change and the points either side of it, since lines are drawn to them.
+	 * @param event The change to some points
+	 * @return The area that needs repainting, in pixels
+	 */
+	private Rectangle dirtyArea(DataChangeEvent event)
+	{
+		DataSnapshot points = dataset.snapshot();
+		updateScale(points);
+		Rectangle area = new Rectangle((int)Math.round(xPointToPixels(event.getMinX())),
+				(int)Math.round(yPointToPixels(event.getMaxY())), 0, 0);
+		area.add((int)Math.round(xPointToPixels(event.getMaxX())),
+				(int)Math.round(yPointToPixels(event.getMinY())));
+		
+		int first = Math.max(Math.min(event.getFromIndex(), event.getToIndex()) - 1, 0);
+		int last = Math.min(Math.max(event.getFromIndex(), event.getToIndex()) + 1,
+				points.size() - 1);
+		for (int i = first; i <= last; i++)
+		{
+			area.add((int)Math.round(xPointToPixels(points.getX(i))),
+					(int)Math.round(yPointToPixels(points.getY(i))));
+		}
+		int pointSize = 2 * settings.getPointRadius() + 1;
+		area.grow(pointSize, pointSize);
+		return area;
+	}
 
 	/**
 	 * Generates the ScatterPlotView GUI then displays it to the screen
@@ -58,7 +121,7 @@ public class ScatterPlotView extends JPanel implements DataView, MouseListener,
 	{
     	mainWindow.addMouseListener(this);
     	mainWindow.addMouseMotionListener(this);
-    	mainWindow.addKeyListener(new ScatterPlotViewKeyListener(settings, this));
+    	mainWindow.addKeyListener(new ScatterPlotViewKeyListener(settings, this, dataset));
     	
 	    mainWindow.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);  
 		mainWindow.setLayout(new BorderLayout());
@@ -69,21 +132,58 @@ public class ScatterPlotView extends JPanel implements DataView, MouseListener,
 	    mainWindow.setVisible(true);  
 	}
 
+	/**
+	 * Paints the plot from one snapshot of the DataSet. Whether the points are dense enough
+	 * to summarise or downsample is decided from every point in the X range, not just those
+	 * in the area being painted, so repainting part of the plot draws it the same way as the rest.
+	 */
 	protected void paintComponent (Graphics g)
     {
         super.paintComponent(g);
         
         Graphics2D graphics = (Graphics2D)g;
+        DataSnapshot points = dataset.snapshot();
+        updateScale(points);
+        int[] plotted = points.indexRange(xMin, xMax);
+        boolean dense = plotted[1] - plotted[0] > LOD_POINTS_PER_PIXEL * getWidth();
+        double[] visibleX = visibleXRange(graphics);
+        int[] visible = points.indexRange(visibleX[0], visibleX[1]);
+        LodLevel summary = null;
+        if (dense)
+        {
+        	summary = points.levelOfDetail(1 / xScale, visibleX[0], visibleX[1]);
+        }
         
         drawAxes(graphics);
         drawLabels(graphics);
+        clipToPlot(graphics);
         if (settings.isDrawingLines())
         {
-        	drawLines(graphics);
+        	if (dense && settings.getDownsampleMode() != Downsampler.Mode.NONE)
+        	{
+        		DataSnapshot line = downsampler.downsample(points, xMin, xMax,
+        				getWidth() - 2*PADDING, settings.getDownsampleMode());
+        		drawLines(graphics, line, line.indexRange(visibleX[0], visibleX[1]));
+        	}
+        	else if (summary != null)
+        	{
+        		drawSummaryLines(graphics, summary, summary.bucketAt(visibleX[0]), summary.bucketAt(visibleX[1]));
+        	}
+        	else
+        	{
+        		drawLines(graphics, points, visible);
+        	}
         }
         if (settings.isDrawingPoints())
         {
-            drawPoints(graphics);
+        	if (summary != null)
+        	{
+        		drawSummaryPoints(graphics, summary, summary.bucketAt(visibleX[0]), summary.bucketAt(visibleX[1]));
+        	}
+        	else
+        	{
+        		drawPoints(graphics, points, visible);
+        	}
         }
         mainWindow.requestFocus();
     }
@@ -151,44 +251,177 @@ public class ScatterPlotView extends JPanel implements DataView, MouseListener,
 		graphics.drawString(dataset.getTitle(), WINDOW_WIDTH/2, PADDING);
 		graphics.drawString(dataset.getXLabel(), WINDOW_WIDTH/2, WINDOW_HEIGHT-((3*PADDING)/2));
 		graphics.drawString(dataset.getYLabel(), 0, WINDOW_HEIGHT/2);
-		graphics.drawString(dataset.getXMin().toString(), PADDING,getHeight()-(3*(PADDING/4)));
-		graphics.drawString(dataset.getXMax().toString(), getWidth()-PADDING,getHeight()-(3*(PADDING/4)));
-		graphics.drawString(dataset.getYMin().toString(), PADDING/4,getHeight()-(PADDING));
-		graphics.drawString(dataset.getYMax().toString(), PADDING/4,PADDING);
+		graphics.drawString(Double.toString(xMin), PADDING,getHeight()-(3*(PADDING/4)));
+		graphics.drawString(Double.toString(xMax), getWidth()-PADDING,getHeight()-(3*(PADDING/4)));
+		graphics.drawString(Double.toString(yMin), PADDING/4,getHeight()-(PADDING));
+		graphics.drawString(Double.toString(yMax), PADDING/4,PADDING);
+	}
+
+	/**
+	 * Works out which X values can show up in the area being painted and inside the X range.
+	 * Points are sorted by X, so the ones to paint can then be found with a binary search,
+	 * and points kept outside the X range are never visited.
+	 * @param graphics The graphics component being painted, its clip is the area
+	 * @return The smallest and largest X value that can show up
+	 */
+	private double[] visibleXRange(Graphics2D graphics)
+	{
+		double[] range = clippedXRange(graphics);
+		return new double[] {Math.max(range[0], xMin), Math.min(range[1], xMax)};
+	}
+	
+	/**
+	 * Limits drawing to the plot and a point's width around it, so lines to points outside
+	 * the ranges stop at the edge of the plot
+	 * @param graphics The graphics component we are drawing to
+	 */
+	private void clipToPlot(Graphics2D graphics)
+	{
+		int pointSize = 2 * settings.getPointRadius() + 1;
+		graphics.clipRect(PADDING - pointSize, PADDING - pointSize,
+				getWidth() - 2*PADDING + 2*pointSize, getHeight() - 2*PADDING + 2*pointSize);
+	}
+	
+	/**
+	 * Works out the X values the area being painted covers, which is only the
+	 * dirty area when just some points changed. The area is widened by a point either side.
+	 * @param graphics The graphics component being painted, its clip is the area
+	 * @return The smallest and largest X value covered
+	 */
+	private double[] clippedXRange(Graphics2D graphics)
+	{
+		Rectangle area = graphics.getClipBounds();
+		if (area == null)
+		{
+			area = new Rectangle(0, 0, getWidth(), getHeight());
+		}
+		int pointSize = 2 * settings.getPointRadius() + 1;
+		double xLo = xMin + (area.x - pointSize - PADDING) / xScale;
+		double xHi = xMin + (area.x + area.width + pointSize - PADDING) / xScale;
+		if (Double.isNaN(xLo) || Double.isNaN(xHi))
+		{
+			return new double[] {Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY};
+		}
+		return new double[] {Math.min(xLo, xHi), Math.max(xLo, xHi)};
+	}
+
+	/**
+	 * Draws a summary of the points in place of the points themselves. Each bucket is
+	 * at most a pixel wide, so its first point, Y extremes and last point are all that show.
+	 * @param graphics The graphics component we are drawing to
+	 * @param summary The summary of the points
+	 * @param firstBucket The first bucket to draw
+	 * @param lastBucket The last bucket to draw
+	 */
+	private void drawSummaryPoints(Graphics2D graphics, LodLevel summary, int firstBucket, int lastBucket)
+	{
+		int pointRadius = settings.getPointRadius();
+		
+		graphics.setPaint(settings.getPointsColor());
+		for (int bucket = firstBucket; bucket <= lastBucket; bucket++)
+		{
+			if (summary.getCount(bucket) == 0)
+			{
+				continue;
+			}
+			int x = (int)(Math.round(xPointToPixels(summary.getFirstX(bucket))));
+			int lastX = (int)(Math.round(xPointToPixels(summary.getLastX(bucket))));
+			int minY = (int)(Math.round(yPointToPixels(summary.getMinY(bucket))));
+			int maxY = (int)(Math.round(yPointToPixels(summary.getMaxY(bucket))));
+			int lastY = (int)(Math.round(yPointToPixels(summary.getLastY(bucket))));
+			int firstY = (int)(Math.round(yPointToPixels(summary.getFirstY(bucket))));
+			graphics.fillOval(x-((3*pointRadius)/2), firstY-pointRadius, 2*pointRadius, 2*pointRadius);
+			graphics.fillOval(x-((3*pointRadius)/2), minY-pointRadius, 2*pointRadius, 2*pointRadius);
+			graphics.fillOval(x-((3*pointRadius)/2), maxY-pointRadius, 2*pointRadius, 2*pointRadius);
+			graphics.fillOval(lastX-((3*pointRadius)/2), lastY-pointRadius, 2*pointRadius, 2*pointRadius);
+		}
+	}
+
+	/**
+	 * Draws the lines through a summary of the points. Within a bucket the line covers
+	 * the Y extremes, and it joins the last point of each bucket to the first of the next.
+	 * @param graphics The graphics component we are drawing to
+	 * @param summary The summary of the points
+	 * @param firstBucket The first bucket to draw
+	 * @param lastBucket The last bucket to draw
+	 */
+	private void drawSummaryLines(Graphics2D graphics, LodLevel summary, int firstBucket, int lastBucket)
+	{
+		int previous = firstBucket - 1;
+		while (previous >= 0 && summary.getCount(previous) == 0)
+		{
+			previous--;
+		}
+		for (int bucket = firstBucket; bucket < summary.size(); bucket++)
+		{
+			if (summary.getCount(bucket) == 0)
+			{
+				continue;
+			}
+			int x = (int)(Math.round(xPointToPixels(summary.getFirstX(bucket))));
+			if (previous >= 0)
+			{
+				graphics.drawLine((int)(Math.round(xPointToPixels(summary.getLastX(previous)))),
+						(int)(Math.round(yPointToPixels(summary.getLastY(previous)))),
+						x, (int)(Math.round(yPointToPixels(summary.getFirstY(bucket)))));
+			}
+			if (bucket > lastBucket)
+			{
+				break;
+			}
+			graphics.drawLine(x, (int)(Math.round(yPointToPixels(summary.getMinY(bucket)))),
+					x, (int)(Math.round(yPointToPixels(summary.getMaxY(bucket)))));
+			previous = bucket;
+		}
 	}
 
 	/**
-	 * Draws the points on to the scatter plot
+	 * Draws the points on to the scatter plot, skipping any outside the Y range
 	 * @param graphics The graphics component we are drawing to
+	 * @param points The points to draw
+	 * @param visible The first index to draw and the index just past the last
 	 */
-	private void drawPoints(Graphics2D graphics) 
+	private void drawPoints(Graphics2D graphics, DataSnapshot points, int[] visible) 
 	{
-		Double[][] data = dataset.getDataAsArray();
 		int pointRadius = settings.getPointRadius();
 		
 		graphics.setPaint(settings.getPointsColor());
-        for (int i = 0; i < data.length; i++)
+        for (int i = visible[0]; i < visible[1]; i++)
         {
-            int x = (int)(Math.round(xPointToPixels(data[i][0])));
-            int y = (int)(Math.round(yPointToPixels(data[i][1])));
+        	if (points.getY(i) < yMin || points.getY(i) > yMax)
+        	{
+        		continue;
+        	}
+            int x = (int)(Math.round(xPointToPixels(points.getX(i))));
+            int y = (int)(Math.round(yPointToPixels(points.getY(i))));
             graphics.fillOval(x-((3*pointRadius)/2), y-pointRadius, 2*pointRadius, 2*pointRadius);
         }
 	}
 
 	/**
-	 * Draws the lines between the points
+	 * Draws the lines between the points, including the lines that leave the visible
+	 * points for the first point either side of them
 	 * @param graphics The graphics component we are drawing to
+	 * @param points The points to draw lines between
+	 * @param visible The first visible index and the index just past the last
 	 */
-	private void drawLines(Graphics2D graphics) 
+	private void drawLines(Graphics2D graphics, DataSnapshot points, int[] visible) 
 	{
-		Double[][] data = dataset.getDataAsArray();
-        for (int i = 0; i < data.length-1; i++)
+		int first = Math.max(visible[0] - 1, 0);
+		int end = Math.min(visible[1] + 1, points.size());
+		if (end - first < 2)
+		{
+			return;
+		}
+        int x1 = (int)(Math.round(xPointToPixels(points.getX(first))));
+        int y1 = (int)(Math.round(yPointToPixels(points.getY(first))));
+        for (int i = first + 1; i < end; i++)
         {
-            int x1 = (int)(Math.round(xPointToPixels(data[i][0])));
-            int y1 = (int)(Math.round(yPointToPixels(data[i][1])));
-            int x2 = (int)(Math.round(xPointToPixels(data[i+1][0])));
-            int y2 = (int)(Math.round(yPointToPixels(data[i+1][1])));
+            int x2 = (int)(Math.round(xPointToPixels(points.getX(i))));
+            int y2 = (int)(Math.round(yPointToPixels(points.getY(i))));
             graphics.drawLine(x1, y1, x2, y2);
+            x1 = x2;
+            y1 = y2;
         }
 	}
 
@@ -204,15 +437,29 @@ public class ScatterPlotView extends JPanel implements DataView, MouseListener,
         graphics.drawLine(PADDING, graphHeight-PADDING, graphWidth-PADDING, graphHeight-PADDING);
 	}
 
+	/**
+	 * Reads the ranges of a snapshot of the DataSet and works out how data maps to pixels.
+	 * Must be called before converting points to pixels.
+	 * @param points The snapshot being drawn
+	 */
+	private void updateScale(DataSnapshot points)
+	{
+		xMin = points.getXMin();
+		xMax = points.getXMax();
+		yMin = points.getYMin();
+		yMax = points.getYMax();
+        xScale = (getWidth() - 2*PADDING) / (xMax-xMin);
+        yScale = (getHeight() - 2*PADDING) / (yMax-yMin);
+	}
+
 	/**
 	 * Converts an x data point to the corresponding x pixel on the graph
 	 * @param point The point we are converting
 	 * @return The pixel value of where this point should go
 	 */
-	private Double yPointToPixels(Double point) 
+	private double yPointToPixels(double point) 
 	{
-        double yScale = (getHeight() - 2*PADDING) / (dataset.getYMax()-dataset.getYMin());
-		return (getHeight()-PADDING) - (yScale * (point - dataset.getYMin()));
+		return (getHeight()-PADDING) - (yScale * (point - yMin));
 	}
 
 	/**
@@ -220,10 +467,9 @@ public class ScatterPlotView extends JPanel implements DataView, MouseListener,
 	 * @param point The point we are converting
 	 * @return The pixel value of where this point should go
 	 */
-	private Double xPointToPixels(Double point) 
+	private double xPointToPixels(double point) 
 	{
-        double xScale = (getWidth() - 2*PADDING) / (dataset.getXMax()-dataset.getXMin());
-		return PADDING + (xScale * (point - dataset.getXMin()));
+		return PADDING + (xScale * (point - xMin));
 	}
 
 	/**
@@ -249,67 +495,20 @@ public class ScatterPlotView extends JPanel implements DataView, MouseListener,
 	}
 
 	/**
-	 * Finds the nearest point to the given x, y pixel values
+	 * Finds the nearest point shown to the given x, y pixel values.
+	 * Points kept outside the ranges are not drawn, so they are never found.
 	 * @param xPix X Value of what we want the nearest of
 	 * @param yPix Y Value of what we want the nearest of
-	 * @return An array of Doubles representing the nearest point found
+	 * @return An array of Doubles representing the nearest point found, or null if no point is shown
 	 */
 	private Double[] findNearestPoint(int xPix, int yPix) 
 	{
-		Double xPoint = xPixelsToPoint(xPix);
-		Double yPoint = yPixelsToPoint(yPix);
-		
-		boolean found = false;
-		Double nearestDist = new Double(Double.MAX_VALUE);
-		Double currentDist;
-		int counter = 0;
-		Double[] nearest = new Double[2];
-		
-		if (dataset.sizeOfData() != 0)
-		{
-			while (!found && counter != dataset.sizeOfData())
-			{
-				currentDist = distanceBetween(dataset.getDataAsArray()[counter][0], xPoint, 
-						dataset.getDataAsArray()[counter][1], yPoint);
-				if (currentDist < nearestDist)
-				{
-					nearestDist = currentDist;
-					nearest = dataset.getDataAsArray()[counter];
-				}
-				else
-				{
-					found = true;
-				}
-				counter++;
-			}
-		}
-		else
+		DataPoint nearest = dataset.nearestVisible(xPixelsToPoint(xPix), yPixelsToPoint(yPix));
+		if (nearest == null)
 		{
-			return new Double[]{0.0,0.0};
-		}
-		
-		if (counter == dataset.sizeOfData()+1)
-		{
-			return dataset.getDataAsArray()[dataset.sizeOfData()-1];
-		}
-		else 
-		{
-			return nearest;
+			return null;
 		}
-	}
-
-	/**
-	 * Calculates the distance between two x, y points
-	 * @param x1 x values of point1
-	 * @param x2 x value of point2
-	 * @param y1 y value of point1
-	 * @param y2 y value of point2
-	 * @return
-	 */
-	private Double distanceBetween(Double x1, Double x2,
-			Double y1, Double y2) 
-	{
-		return Math.sqrt( (Math.pow(x2 - x1,2.0) + (Math.pow(y2 - y1,2.0))));
+		return new Double[]{nearest.getX(), nearest.getY()};
 	}
 
 	/**
@@ -341,8 +540,10 @@ public class ScatterPlotView extends JPanel implements DataView, MouseListener,
 		if (insidePlot)
 		{
 			Double[] nearest = findNearestPoint(mouseX, mouseY);
-			dataset.remove(nearest[0], nearest[1]);
-			dataset.add(xPixelsToPoint(mouseX),yPixelsToPoint(mouseY));
+			if (nearest != null)
+			{
+				dataset.move(nearest[0], nearest[1], xPixelsToPoint(mouseX), yPixelsToPoint(mouseY));
+			}
 		}
 	}
 
@@ -370,19 +571,29 @@ public class ScatterPlotView extends JPanel implements DataView, MouseListener,
 	}
 
 	/**
-	 * Unused, necessary because we implement MouseListener
+	 * Starts an edit so that everything a drag does is undone at once
 	 */
 	@Override
 	public void mousePressed(MouseEvent event) 
 	{
+		if (!dragging)
+		{
+			dragging = true;
+			dataset.beginEdit();
+		}
 	}
 
 	/**
-	 * Unused, necessary because we implement MouseListener
+	 * Ends the edit a drag started
 	 */
 	@Override
 	public void mouseReleased(MouseEvent event) 
 	{
+		if (dragging)
+		{
+			dragging = false;
+			dataset.endEdit();
+		}
 	}
 
 	/**
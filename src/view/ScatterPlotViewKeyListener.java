@@ -3,10 +3,15 @@ package view;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 
+import model.DataSet;
+import model.Downsampler;
+
 /**
  * Key Listener for ScatterPlotView
  * Toggles showing lines when space is pressed.
  * Toggle showing points when perios is pressed.
+ * Cycles how lines are downsampled when D is pressed.
+ * Undoes on Ctrl+Z and redoes on Ctrl+Y.
  * @author jocquej
  *
  */
@@ -14,11 +19,13 @@ public class ScatterPlotViewKeyListener implements KeyListener
 {
 	ScatterPlotSettings settings;
 	ScatterPlotView view;
+	DataSet dataset;
 	
-	public ScatterPlotViewKeyListener(ScatterPlotSettings toEdit, ScatterPlotView toPaint)
+	public ScatterPlotViewKeyListener(ScatterPlotSettings toEdit, ScatterPlotView toPaint, DataSet toUndo)
 	{
 		settings = toEdit;
 		view = toPaint;
+		dataset = toUndo;
 	}
 
 
@@ -26,6 +33,8 @@ public class ScatterPlotViewKeyListener implements KeyListener
 	 * Deals with the user pressing keyboard buttons.
 	 * Toggles showing lines on pressing space.
 	 * Toggles showing points on pressing period.
+	 * Cycles the downsampling mode on pressing D.
+	 * Undoes on pressing Ctrl+Z and redoes on pressing Ctrl+Y.
 	 */
 	@Override
 	public void keyPressed(KeyEvent keyEvent) 
@@ -38,6 +47,19 @@ public class ScatterPlotViewKeyListener implements KeyListener
 		{
 			settings.setDrawPoints(!settings.isDrawingPoints());
 		}
+		if (keyEvent.isControlDown() && keyEvent.getKeyCode() == KeyEvent.VK_Z)
+		{
+			dataset.undo();
+		}
+		else if (keyEvent.isControlDown() && keyEvent.getKeyCode() == KeyEvent.VK_Y)
+		{
+			dataset.redo();
+		}
+		else if (keyEvent.getKeyCode() == KeyEvent.VK_D)
+		{
+			Downsampler.Mode[] modes = Downsampler.Mode.values();
+			settings.setDownsampleMode(modes[(settings.getDownsampleMode().ordinal() + 1) % modes.length]);
+		}
 		view.repaint();
 	}
 
@@ -6,35 +6,44 @@ import java.awt.Color;
 import javax.swing.JFrame;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
+import javax.swing.table.AbstractTableModel;
 
+import model.DataChangeEvent;
 import model.DataSet;
+import model.DataSnapshot;
 
 /**
  * Table view for displaying a DataModel as a table.
+ * The table reads from a snapshot of the DataSet taken at the last change,
+ * changes only touch the rows they affect.
  * @author Julian Jocque
  */
-public class TableView implements DataView
+public class TableView implements IncrementalDataView
 {
 	private DataSet data;
 	private JFrame mainWindow;
 	private JTable mainTable;
 	private	JScrollPane scrollPane;
-	
+	private DataSetTableModel tableModel;
+	private DataSnapshot rows;
+
 	/**
-	 * Default constructor, creates an invisible window and an empty table.
-	 * Uses the provided DataModel.
+	 * Default constructor, creates an invisible window and a table of the given DataModel.
 	 * @param dataToUse The data this table will observe.
 	 */
 	public TableView(DataSet dataToUse)
 	{
-		mainWindow = new JFrame();
-		mainTable = new JTable();
-		
 		data = dataToUse;
-		
+		rows = data.snapshot();
+
+		mainWindow = new JFrame();
+		tableModel = new DataSetTableModel();
+		mainTable = new JTable(tableModel);
+		scrollPane = new JScrollPane(mainTable);
+
 		mainWindow.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 	}
-	
+
 	/**
 	 * Creates the GUI and displays it
 	 */
@@ -45,33 +54,79 @@ public class TableView implements DataView
 		mainWindow.setLocation(1000, 100);
 		mainWindow.setBackground(Color.gray);
 
-		String columns[] = getColumnNames();
-		Double[][] dataAsDoubles = data.getDataAsArray();
-		String[][] rowData = new String[dataAsDoubles.length][2];
-		for (int i = 0; i < dataAsDoubles.length; i++)
-		{
-			rowData[i][0] = dataAsDoubles[i][0].toString();
-			rowData[i][1] = dataAsDoubles[i][1].toString();
-		}
-		mainTable = new JTable(rowData,columns);
-		
-		scrollPane = new JScrollPane(mainTable);
 		mainWindow.add(scrollPane, BorderLayout.CENTER);
-		
+
 		mainWindow.setVisible(true);
 	}
-	
-	private String[] getColumnNames() 
+
+	/**
+	 * Refreshes the whole table, used when we don't know what changed
+	 */
+	@Override
+	public void update()
 	{
-		String[] columnNames;
-		columnNames = new String[] { data.getXLabel(), data.getYLabel() };
-		return columnNames;
+		rows = data.snapshot();
+		mainWindow.setTitle(data.getTitle());
+		tableModel.fireTableStructureChanged();
 	}
 
+	/**
+	 * Refreshes only the rows or headers touched by the given change
+	 */
 	@Override
-	public void update() 
+	public void dataChanged(DataChangeEvent event)
 	{
-		createAndDisplay();
+		rows = data.snapshot();
+		switch (event.getType())
+		{
+		case POINTS_INSERTED:
+			tableModel.fireTableRowsInserted(event.getFromIndex(), event.getToIndex());
+			break;
+		case POINTS_REMOVED:
+			tableModel.fireTableRowsDeleted(event.getFromIndex(), event.getToIndex());
+			break;
+		case POINT_MOVED:
+			tableModel.fireTableRowsUpdated(Math.min(event.getFromIndex(), event.getToIndex()),
+					Math.max(event.getFromIndex(), event.getToIndex()));
+			break;
+		case RANGE_CHANGED:
+			break;
+		default:
+			update();
+			break;
+		}
 	}
 
+	/**
+	 * Table model reading its rows from the DataSet, one row per point.
+	 * The table cannot edit the DataSet.
+	 */
+	private class DataSetTableModel extends AbstractTableModel
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public int getRowCount()
+		{
+			return rows.size();
+		}
+
+		@Override
+		public int getColumnCount()
+		{
+			return 2;
+		}
+
+		@Override
+		public String getColumnName(int column)
+		{
+			return column == 0 ? data.getXLabel() : data.getYLabel();
+		}
+
+		@Override
+		public Object getValueAt(int row, int column)
+		{
+			return column == 0 ? rows.getX(row) : rows.getY(row);
+		}
+	}
 }